@@ -0,0 +1,324 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.common.TooManyRequestsException;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.subscriptions.SubscriptionService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Admission control for story generation in DreamTales AI v3.0
+ * Caps generations running at once (globally and per user). Requests beyond the cap wait in a
+ * bounded queue; when a slot frees up, paid plans go first, then the user with the fewest
+ * running generations, then arrival order. Free-plan requests that have waited longer than
+ * {@code agingAfter} are treated as paid so they cannot starve. A full queue, a user with too
+ * many waiting requests or a wait longer than {@code maxWait} is rejected at once with 429
+ * and a Retry-After estimated from recent generation times.
+ * Optional background work (branch prefetch) runs at the lowest priority: only when nobody is
+ * waiting and fewer than {@code backgroundMaxRunning} generations are running, otherwise it is skipped.
+ */
+@Component
+public class AdmissionControl {
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private final SubscriptionService subscriptionService;
+
+    private final int maxConcurrent;
+    private final int maxPerUser;
+    private final int queueCapacity;
+    private final int maxQueuedPerUser;
+    private final Duration maxWait;
+    private final long agingNanos;
+    private final int backgroundMaxRunning;
+    /** Source of System.nanoTime-style timestamps for aging and hold times */
+    private final LongSupplier nanoClock;
+
+    private final List<Waiter> waiting = new ArrayList<>();
+    private final Map<Long, Integer> runningByUser = new HashMap<>();
+    private final Map<Long, Integer> waitingByUser = new HashMap<>();
+    private int running;
+    private long sequence;
+    /** Moving average of how long a generation holds its slot, for Retry-After */
+    private double averageHoldMillis = 10_000;
+
+    private final Counter queueFullRejections;
+    private final Counter userQueueFullRejections;
+    private final Counter timeoutRejections;
+    private final Counter backgroundSkips;
+    private final Timer waitTimer;
+
+    @Autowired
+    public AdmissionControl(SubscriptionService subscriptionService,
+                            MeterRegistry meterRegistry,
+                            @Value("${ai.admission.maxConcurrent:32}") int maxConcurrent,
+                            @Value("${ai.admission.maxPerUser:2}") int maxPerUser,
+                            @Value("${ai.admission.queueCapacity:100}") int queueCapacity,
+                            @Value("${ai.admission.maxQueuedPerUser:2}") int maxQueuedPerUser,
+                            @Value("${ai.admission.maxWait:PT20S}") Duration maxWait,
+                            @Value("${ai.admission.agingAfter:PT5S}") Duration agingAfter,
+                            @Value("${ai.admission.backgroundMaxRunning:8}") int backgroundMaxRunning) {
+        this(subscriptionService, meterRegistry, maxConcurrent, maxPerUser, queueCapacity, maxQueuedPerUser, maxWait,
+                agingAfter, backgroundMaxRunning, System::nanoTime);
+    }
+
+    /**
+     * Test constructor with a controllable clock
+     */
+    AdmissionControl(SubscriptionService subscriptionService, MeterRegistry meterRegistry, int maxConcurrent,
+                     int maxPerUser, int queueCapacity, int maxQueuedPerUser, Duration maxWait, Duration agingAfter,
+                     int backgroundMaxRunning, LongSupplier nanoClock) {
+        this.subscriptionService = subscriptionService;
+        this.maxConcurrent = maxConcurrent;
+        this.maxPerUser = maxPerUser;
+        this.queueCapacity = queueCapacity;
+        this.maxQueuedPerUser = maxQueuedPerUser;
+        this.maxWait = maxWait;
+        this.agingNanos = agingAfter.toNanos();
+        this.backgroundMaxRunning = backgroundMaxRunning;
+        this.nanoClock = nanoClock;
+
+        this.queueFullRejections = Counter.builder("ai.admission.rejected").tag("reason", "queue_full").register(meterRegistry);
+        this.userQueueFullRejections = Counter.builder("ai.admission.rejected").tag("reason", "user_queue_full").register(meterRegistry);
+        this.timeoutRejections = Counter.builder("ai.admission.rejected").tag("reason", "timeout").register(meterRegistry);
+        this.backgroundSkips = Counter.builder("ai.admission.background.skipped").register(meterRegistry);
+        this.waitTimer = Timer.builder("ai.admission.wait")
+                .description("Time generation requests waited for a slot")
+                .register(meterRegistry);
+        Gauge.builder("ai.admission.running", this, AdmissionControl::getRunning).register(meterRegistry);
+        Gauge.builder("ai.admission.waiting", this, AdmissionControl::getWaiting).register(meterRegistry);
+    }
+
+    /**
+     * Runs the generation once a slot is free; the slot is held until it completes, fails or is cancelled
+     */
+    public <T> Mono<T> admit(UserAccount user, Supplier<Mono<T>> generation) {
+        boolean paid = subscriptionService.hasPaidPlan(user.getId());
+        return Mono.usingWhen(acquire(user.getId(), paid), permit -> generation.get(),
+                Permit::releaseAsync, (permit, error) -> permit.releaseAsync(), Permit::releaseAsync);
+    }
+
+    /**
+     * Streaming counterpart of {@link #admit}
+     */
+    public <T> Flux<T> admitMany(UserAccount user, Supplier<Flux<T>> generation) {
+        boolean paid = subscriptionService.hasPaidPlan(user.getId());
+        return Flux.usingWhen(acquire(user.getId(), paid), permit -> generation.get(),
+                Permit::releaseAsync, (permit, error) -> permit.releaseAsync(), Permit::releaseAsync);
+    }
+
+    /**
+     * Runs background work for the user only if it can start at once without competing with
+     * requests: the queue is empty, fewer than backgroundMaxRunning generations are running and
+     * the user is under maxPerUser. Otherwise completes empty without running it. While it runs
+     * it holds a slot like any generation.
+     */
+    public <T> Flux<T> admitIfIdle(Long userId, Supplier<Flux<T>> work) {
+        return Flux.defer(() -> {
+            Permit permit = tryGrantIdle(userId);
+            if (permit == null) {
+                backgroundSkips.increment();
+                return Flux.empty();
+            }
+            return Flux.usingWhen(Mono.just(permit), p -> work.get(),
+                    Permit::releaseAsync, (p, error) -> p.releaseAsync(), Permit::releaseAsync);
+        });
+    }
+
+    private synchronized Permit tryGrantIdle(Long userId) {
+        if (!waiting.isEmpty() || running >= Math.min(backgroundMaxRunning, maxConcurrent)
+                || userRunning(userId) >= maxPerUser) {
+            return null;
+        }
+        return grant(userId);
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getWaiting() {
+        return waiting.size();
+    }
+
+    private Mono<Permit> acquire(Long userId, boolean paid) {
+        return Mono.<Permit>create(sink -> enqueue(new Waiter(userId, paid, sink, nanoClock.getAsLong())))
+                .timeout(maxWait)
+                .onErrorMap(TimeoutException.class, e -> {
+                    timeoutRejections.increment();
+                    return new TooManyRequestsException(
+                            "Story generation is busy right now. Please try again shortly.", retryAfterSeconds());
+                });
+    }
+
+    private void enqueue(Waiter waiter) {
+        TooManyRequestsException rejection = null;
+        synchronized (this) {
+            if (waiting.size() >= queueCapacity) {
+                queueFullRejections.increment();
+                rejection = new TooManyRequestsException(
+                        "Story generation is at capacity. Please try again shortly.", retryAfterSeconds());
+            } else if (waitingByUser.getOrDefault(waiter.userId, 0) >= maxQueuedPerUser) {
+                userQueueFullRejections.increment();
+                rejection = new TooManyRequestsException(
+                        "You already have stories waiting to be generated. Please try again shortly.", retryAfterSeconds());
+            } else {
+                waiter.sequence = sequence++;
+                waiting.add(waiter);
+                waitingByUser.merge(waiter.userId, 1, Integer::sum);
+                waiter.sink.onCancel(() -> cancel(waiter));
+            }
+        }
+        if (rejection != null) {
+            log.debug("Rejected story generation for user {}: {}", waiter.userId, rejection.getMessage());
+            waiter.sink.error(rejection);
+        } else {
+            // Admitted right away when a slot is free
+            dispatch();
+        }
+    }
+
+    private void cancel(Waiter waiter) {
+        Permit orphan = null;
+        synchronized (this) {
+            if (waiting.remove(waiter)) {
+                waitingByUser.computeIfPresent(waiter.userId, (id, count) -> count > 1 ? count - 1 : null);
+            } else {
+                // Granted just as the waiter gave up
+                orphan = waiter.permit;
+            }
+        }
+        if (orphan != null) {
+            orphan.release();
+        }
+    }
+
+    private void release(Permit permit) {
+        synchronized (this) {
+            running--;
+            runningByUser.computeIfPresent(permit.userId, (id, count) -> count > 1 ? count - 1 : null);
+            long heldMillis = (nanoClock.getAsLong() - permit.grantedAt) / 1_000_000;
+            averageHoldMillis = 0.9 * averageHoldMillis + 0.1 * heldMillis;
+        }
+        dispatch();
+    }
+
+    /**
+     * Hands free slots to the best eligible waiters
+     */
+    private void dispatch() {
+        List<Waiter> admitted = new ArrayList<>();
+        synchronized (this) {
+            long now = nanoClock.getAsLong();
+            while (running < maxConcurrent) {
+                Waiter next = null;
+                for (Waiter candidate : waiting) {
+                    if (userRunning(candidate.userId) >= maxPerUser) {
+                        continue;
+                    }
+                    if (next == null || isBefore(candidate, next, now)) {
+                        next = candidate;
+                    }
+                }
+                if (next == null) {
+                    break;
+                }
+                waiting.remove(next);
+                waitingByUser.computeIfPresent(next.userId, (id, count) -> count > 1 ? count - 1 : null);
+                next.permit = grant(next.userId);
+                admitted.add(next);
+            }
+        }
+        for (Waiter waiter : admitted) {
+            waitTimer.record(Duration.ofNanos(waiter.permit.grantedAt - waiter.enqueuedAt));
+            waiter.sink.success(waiter.permit);
+        }
+    }
+
+    private boolean isBefore(Waiter a, Waiter b, long now) {
+        boolean aPriority = a.paid || now - a.enqueuedAt >= agingNanos;
+        boolean bPriority = b.paid || now - b.enqueuedAt >= agingNanos;
+        if (aPriority != bPriority) {
+            return aPriority;
+        }
+        int aRunning = userRunning(a.userId);
+        int bRunning = userRunning(b.userId);
+        if (aRunning != bRunning) {
+            return aRunning < bRunning;
+        }
+        return a.sequence < b.sequence;
+    }
+
+    private Permit grant(Long userId) {
+        running++;
+        runningByUser.merge(userId, 1, Integer::sum);
+        return new Permit(userId);
+    }
+
+    private int userRunning(Long userId) {
+        return runningByUser.getOrDefault(userId, 0);
+    }
+
+    /**
+     * Rough time until a slot frees up for a newcomer: queue length in "rounds" of the concurrency limit
+     */
+    private synchronized long retryAfterSeconds() {
+        double rounds = (double) (waiting.size() + 1) / maxConcurrent;
+        return Math.max(1, (long) Math.ceil(rounds * averageHoldMillis / 1000));
+    }
+
+    private final class Permit {
+        private final Long userId;
+        private final long grantedAt = nanoClock.getAsLong();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Long userId) {
+            this.userId = userId;
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                AdmissionControl.this.release(this);
+            }
+        }
+
+        private Mono<Void> releaseAsync() {
+            return Mono.fromRunnable(this::release);
+        }
+    }
+
+    private static final class Waiter {
+        private final Long userId;
+        private final boolean paid;
+        private final MonoSink<Permit> sink;
+        private final long enqueuedAt;
+        private long sequence;
+        private Permit permit;
+
+        private Waiter(Long userId, boolean paid, MonoSink<Permit> sink, long enqueuedAt) {
+            this.userId = userId;
+            this.paid = paid;
+            this.sink = sink;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
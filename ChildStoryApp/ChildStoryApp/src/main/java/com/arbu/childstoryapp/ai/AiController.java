@@ -1,32 +1,40 @@
 package com.arbu.childstoryapp.ai;
 
+import com.arbu.childstoryapp.ai.dto.ChooseOptionRequest;
 import com.arbu.childstoryapp.ai.dto.GenerateStoryRequest;
 import com.arbu.childstoryapp.ai.dto.GenerateStoryResponse;
+import com.arbu.childstoryapp.ai.dto.GenerationJobResponse;
+import com.arbu.childstoryapp.ai.dto.StoryBranchResponse;
+import com.arbu.childstoryapp.ai.dto.StoryChoiceResponse;
 import com.arbu.childstoryapp.auth.AuthService;
 import com.arbu.childstoryapp.common.UnauthorizedException;
 import com.arbu.childstoryapp.domain.ChildProfile;
 import com.arbu.childstoryapp.domain.Story;
-import com.arbu.childstoryapp.domain.StoryGenerationLog;
+import com.arbu.childstoryapp.domain.StoryGenerationJob;
 import com.arbu.childstoryapp.domain.UserAccount;
 import com.arbu.childstoryapp.repository.ChildProfileRepository;
-import com.arbu.childstoryapp.repository.StoryGenerationLogRepository;
 import com.arbu.childstoryapp.repository.StoryRepository;
-import com.arbu.childstoryapp.stories.StoryService;
-import com.arbu.childstoryapp.stories.dto.CreateStoryRequest;
 import com.arbu.childstoryapp.subscriptions.SubscriptionService;
 import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.time.Instant;
-import java.util.ArrayList;
+import java.time.Duration;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * AI Controller for DreamTales AI v3.0
@@ -37,36 +45,43 @@ import java.util.List;
 @Validated
 public class AiController {
 
-    private final GeminiAiService geminiAiService;
+    private final StoryGenerationPipeline storyGenerationPipeline;
+    private final GenerationJobService generationJobService;
+    private final StoryDraftService storyDraftService;
+    private final AdmissionControl admissionControl;
+    private final InteractiveStoryService interactiveStoryService;
     private final AuthService authService;
     private final ChildProfileRepository childRepo;
-    private final StoryGenerationLogRepository storyLogRepo;
     private final StoryRepository storyRepo;
-    private final StoryService storyService;
     private final SubscriptionService subscriptionService;
 
-    public AiController(GeminiAiService geminiAiService,
+    public AiController(StoryGenerationPipeline storyGenerationPipeline,
+                        GenerationJobService generationJobService,
+                        StoryDraftService storyDraftService,
+                        AdmissionControl admissionControl,
+                        InteractiveStoryService interactiveStoryService,
                         AuthService authService,
                         ChildProfileRepository childRepo,
-                        StoryGenerationLogRepository storyLogRepo,
                         StoryRepository storyRepo,
-                        StoryService storyService,
                         SubscriptionService subscriptionService) {
-        this.geminiAiService = geminiAiService;
+        this.storyGenerationPipeline = storyGenerationPipeline;
+        this.generationJobService = generationJobService;
+        this.storyDraftService = storyDraftService;
+        this.admissionControl = admissionControl;
+        this.interactiveStoryService = interactiveStoryService;
         this.authService = authService;
         this.childRepo = childRepo;
-        this.storyLogRepo = storyLogRepo;
         this.storyRepo = storyRepo;
-        this.storyService = storyService;
         this.subscriptionService = subscriptionService;
     }
 
     /**
      * Enhanced multimodal story generation endpoint for v3.0
      * Generates story text, scene images, and audio narration using Gemini AI
+     * Returns a Mono so the servlet thread is released while the model is working
      */
     @PostMapping("/generate-story")
-    public ResponseEntity<GenerateStoryResponse> generateStory(
+    public Mono<ResponseEntity<GenerateStoryResponse>> generateStory(
             @RequestHeader(value = "X-Auth-Token", required = false) String token,
             @Valid @RequestBody GenerateStoryRequest request) {
 
@@ -90,144 +105,147 @@ public class AiController {
                     .orElseThrow(() -> new IllegalArgumentException("Parent story not found or does not belong to user"));
         }
 
-        // Step 1: Generate story text using enhanced v3.0 method
-        String storyText = geminiAiService.generateStoryV3(request, childProfile, parentStory);
-
-        // Step 2: Generate scene descriptions using Gemini
-        List<String> sceneDescriptions = new ArrayList<>();
-        List<String> imageUrls = new ArrayList<>();
-        String audioUrl = null;
-
-        // Determine if we should generate images and audio (based on request or subscription level)
-        boolean generateImages = shouldGenerateImages(request);
-        boolean generateAudio = shouldGenerateAudio(request);
-
-        if (generateImages) {
-            try {
-                // Use Gemini to extract scene descriptions from the story
-                int sceneCount = determineSceneCount(request);
-                sceneDescriptions = geminiAiService.generateSceneDescriptions(
-                        storyText, 
-                        childProfile.getName(), 
-                        sceneCount
-                );
-
-                // Generate an image for each scene description
-                String quality = request.getQuality() != null ? request.getQuality() : "standard";
-                for (String sceneDesc : sceneDescriptions) {
-                    String imageUrl = geminiAiService.generateImage(sceneDesc, quality);
-                    imageUrls.add(imageUrl);
-                }
-            } catch (Exception e) {
-                // Log error but don't fail the entire request
-                System.err.println("Failed to generate images: " + e.getMessage());
-            }
+        // Serve a pre-generated draft when one matches (plain Quick mode only)
+        Optional<GenerateStoryResponse> drafted = storyDraftService.claim(user, request, childProfile, parentStory);
+        if (drafted.isPresent()) {
+            return Mono.just(new ResponseEntity<>(drafted.get(), HttpStatus.OK));
         }
 
-        if (generateAudio) {
-            try {
-                // Generate audio narration using TTS
-                String languageCode = "tr-TR"; // Turkish by default
-                String voiceName = determineVoiceName(request);
-                audioUrl = geminiAiService.generateAudio(storyText, languageCode, voiceName);
-            } catch (Exception e) {
-                // Log error but don't fail the entire request
-                System.err.println("Failed to generate audio: " + e.getMessage());
-            }
-        }
+        // Text first, then audio and scene images in parallel, then log and save.
+        // Waits for a generation slot; rejected with 429 when the wait queue is full
+        Story parent = parentStory;
+        return admissionControl.admit(user, () -> storyGenerationPipeline.generateAsync(user, request, childProfile, parent))
+                .map(response -> new ResponseEntity<>(response, HttpStatus.OK));
+    }
+
+    /**
+     * Streaming story generation endpoint (Server-Sent Events)
+     * Pushes story text chunks while the model writes them, then page boundaries,
+     * scene descriptions, media URLs and the saved story ID as later events
+     */
+    @PostMapping(value = "/generate-story/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> generateStoryStream(
+            @RequestHeader(value = "X-Auth-Token", required = false) String token,
+            @Valid @RequestBody GenerateStoryRequest request) {
 
-        // Step 3: Log the generation for statistics
-        StoryGenerationLog log = new StoryGenerationLog();
-        log.setUser(user);
-        log.setChild(childProfile);
-        log.setTheme(request.getTheme());
-        log.setLesson(request.getLesson());
-        log.setModel(geminiAiService.getModelName());
-        log.setCreatedAt(Instant.now());
-        storyLogRepo.save(log);
-
-        // Step 4: Build and return the response
-        GenerateStoryResponse response = new GenerateStoryResponse(storyText, imageUrls, audioUrl);
-        if (!sceneDescriptions.isEmpty()) {
-            response.setSceneDescriptions(sceneDescriptions);
+        // Authenticate user
+        UserAccount user = authService.authenticate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
+
+        // Check subscription limits (v3.0 enhancement)
+        if (!subscriptionService.canGenerateStory(user.getId())) {
+            throw new IllegalStateException("Daily story limit reached. Please upgrade your subscription or try again tomorrow.");
         }
 
-        // Step 5: Save the story to database (v3.0 enhancement)
-        try {
-            CreateStoryRequest createStoryRequest = new CreateStoryRequest();
-            createStoryRequest.setChildProfileId(childProfile.getId());
-            createStoryRequest.setTitle(generateStoryTitle(childProfile.getName(), request.getTheme()));
-            createStoryRequest.setContent(storyText);
-            createStoryRequest.setImageUrls(imageUrls);
-            createStoryRequest.setAudioUrl(audioUrl);
-            createStoryRequest.setMode(request.getMode() != null ? request.getMode() : "quick");
-            createStoryRequest.setTheme(request.getTheme());
-            createStoryRequest.setIsInteractive(false); // TODO: Set based on request when interactive mode is implemented
-            createStoryRequest.setParentStoryId(request.getParentStoryId());
-
-            Story savedStory = storyService.saveStory(createStoryRequest, user);
-            response.setStoryId(savedStory.getId());
-            
-            // Increment story generation counter (v3.0 enhancement)
-            subscriptionService.incrementStoryCount(user.getId());
-        } catch (Exception e) {
-            // Log error but don't fail the request - story generation was successful
-            System.err.println("Failed to save story to database: " + e.getMessage());
+        // Load child profile
+        ChildProfile childProfile = childRepo.findByIdAndUser_Id(request.getChildProfileId(), user.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Child profile not found or does not belong to user"));
+
+        // Load parent story if this is a series continuation
+        Story parentStory = null;
+        if (request.getParentStoryId() != null) {
+            parentStory = storyRepo.findByIdAndUser_Id(request.getParentStoryId(), user.getId())
+                    .orElseThrow(() -> new IllegalArgumentException("Parent story not found or does not belong to user"));
         }
 
-        return new ResponseEntity<>(response, HttpStatus.OK);
+        Story parent = parentStory;
+        return admissionControl.admitMany(user, () -> storyGenerationPipeline.stream(user, request, childProfile, parent));
     }
 
     /**
-     * Determines if images should be generated based on request parameters
-     * In production, this would also check user's subscription level
+     * Asynchronous story generation: queues the request and returns a job ID immediately
+     * Poll GET /generate-story/jobs/{jobId} (or subscribe to its events) for the result
      */
-    private boolean shouldGenerateImages(GenerateStoryRequest request) {
-        // For now, always generate images
-        // In production, check: user.getSubscription().hasImageGeneration()
-        return true;
+    @PostMapping("/generate-story/jobs")
+    public ResponseEntity<GenerationJobResponse> submitGenerationJob(
+            @RequestHeader(value = "X-Auth-Token", required = false) String token,
+            @Valid @RequestBody GenerateStoryRequest request) {
+
+        // Authenticate user
+        UserAccount user = authService.authenticate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
+
+        // Validate ownership up front so the client gets a 400 instead of a failed job
+        childRepo.findByIdAndUser_Id(request.getChildProfileId(), user.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Child profile not found or does not belong to user"));
+
+        // Reserves today's story (daily limit) and a per-user queue slot before queueing
+        StoryGenerationJob job = generationJobService.submit(user, request);
+        GenerationJobResponse response = generationJobService.getJob(job.getId(), user.getId())
+                .orElseThrow(() -> new IllegalStateException("Job was not persisted"));
+
+        return new ResponseEntity<>(response, HttpStatus.ACCEPTED);
     }
 
     /**
-     * Determines if audio should be generated based on request parameters
-     * In production, this would also check user's subscription level
+     * Get the status (and result, once finished) of a generation job
      */
-    private boolean shouldGenerateAudio(GenerateStoryRequest request) {
-        // For now, always generate audio
-        // In production, check: user.getSubscription().hasAudioGeneration()
-        return true;
+    @GetMapping("/generate-story/jobs/{jobId}")
+    public ResponseEntity<GenerationJobResponse> getGenerationJob(
+            @PathVariable Long jobId,
+            @RequestHeader(value = "X-Auth-Token", required = false) String token) {
+
+        UserAccount user = authService.authenticate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
+
+        GenerationJobResponse response = generationJobService.getJob(jobId, user.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+
+        return ResponseEntity.ok(response);
     }
 
     /**
-     * Determines how many scenes/images to generate based on request and subscription
+     * Subscribe to a generation job's status changes (Server-Sent Events)
+     * Emits a "status" event whenever the status changes and completes when the job finishes
      */
-    private int determineSceneCount(GenerateStoryRequest request) {
-        // Standard: 3 scenes, High quality: 5 scenes
-        if ("high".equalsIgnoreCase(request.getQuality())) {
-            return 5;
-        }
-        return 3;
+    @GetMapping(value = "/generate-story/jobs/{jobId}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<GenerationJobResponse>> streamGenerationJob(
+            @PathVariable Long jobId,
+            @RequestHeader(value = "X-Auth-Token", required = false) String token) {
+
+        UserAccount user = authService.authenticate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
+
+        generationJobService.getJob(jobId, user.getId())
+                .orElseThrow(() -> new IllegalArgumentException("Job not found"));
+
+        return Flux.interval(Duration.ZERO, Duration.ofSeconds(1), Schedulers.boundedElastic())
+                .concatMap(tick -> Mono.justOrEmpty(generationJobService.getJob(jobId, user.getId())))
+                .distinctUntilChanged(job -> job.getStatus() + ":" + job.getQueuePosition())
+                .takeUntil(job -> GenerationJobService.STATUS_SUCCEEDED.equals(job.getStatus())
+                        || GenerationJobService.STATUS_FAILED.equals(job.getStatus()))
+                .map(job -> ServerSentEvent.builder(job).event("status").build());
     }
 
     /**
-     * Determines voice name for TTS based on voice clone ID or default
+     * Choice points of an interactive story generated so far
      */
-    private String determineVoiceName(GenerateStoryRequest request) {
-        // TODO: If voiceCloneId is provided, load the voice clone data and use custom voice
-        // For now, use default Turkish voice
-        return "tr-TR-Wavenet-A";
+    @GetMapping("/interactive/{storyId}/choices")
+    public ResponseEntity<List<StoryChoiceResponse>> getStoryChoices(
+            @PathVariable Long storyId,
+            @RequestHeader(value = "X-Auth-Token", required = false) String token) {
+
+        UserAccount user = authService.authenticate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
+
+        return ResponseEntity.ok(interactiveStoryService.getChoices(user.getId(), storyId));
     }
 
     /**
-     * Generate a story title from child name and theme
-     * Format: "{ChildName}'in {Theme} Macerası" or "{ChildName}'s {Theme} Adventure"
+     * Picks an option at a choice point of an interactive story and returns the branch it leads to
+     * Branches are written the first time they are picked and served from the story afterwards
      */
-    private String generateStoryTitle(String childName, String theme) {
-        if (theme == null || theme.isEmpty()) {
-            return childName + "'in Uyku Vakti Hikayesi";
-        }
-        // Capitalize first letter of theme
-        String capitalizedTheme = theme.substring(0, 1).toUpperCase() + theme.substring(1);
-        return childName + "'in " + capitalizedTheme + " Macerası";
+    @PostMapping("/interactive/{storyId}/choices/{choiceId}")
+    public Mono<ResponseEntity<StoryBranchResponse>> chooseStoryOption(
+            @PathVariable Long storyId,
+            @PathVariable Long choiceId,
+            @RequestHeader(value = "X-Auth-Token", required = false) String token,
+            @Valid @RequestBody ChooseOptionRequest request) {
+
+        UserAccount user = authService.authenticate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
+
+        return interactiveStoryService.choose(user, storyId, choiceId, request.getOption())
+                .map(ResponseEntity::ok);
     }
 }
@@ -0,0 +1,141 @@
+package com.arbu.childstoryapp.ai;
+
+import java.time.Duration;
+import java.util.function.LongSupplier;
+
+/**
+ * Count-based circuit breaker for one upstream model.
+ * Opens when the failure rate over the last {@code windowSize} calls reaches the threshold,
+ * rejects calls while open, then lets a single probe through (half-open) to decide
+ * whether to close again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration) {
+        this(windowSize, minimumCalls, failureRateThreshold, openDuration, System::nanoTime);
+    }
+
+    /**
+     * @param nanoClock Source of System.nanoTime-style timestamps for the open period
+     */
+    public CircuitBreaker(int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                          LongSupplier nanoClock) {
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = openDuration.toNanos();
+        this.outcomes = new boolean[windowSize];
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Whether a call may proceed. In half-open state only one probe is admitted at a time.
+     */
+    public synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (nanoClock.getAsLong() - openedAt < openNanos) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probeInFlight) {
+                return false;
+            }
+            probeInFlight = true;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            reset();
+            return;
+        }
+        record(false);
+    }
+
+    public synchronized void onFailure() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+            open();
+            return;
+        }
+        record(true);
+        if (recorded >= minimumCalls && (double) failures / recorded >= failureRateThreshold) {
+            open();
+        }
+    }
+
+    /**
+     * Releases a half-open probe whose outcome says nothing about the upstream (e.g. cancelled)
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probeInFlight = false;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    /**
+     * Seconds until an open breaker admits a probe; 0 when not open
+     */
+    public synchronized long getRetryAfterSeconds() {
+        if (state != State.OPEN) {
+            return 0;
+        }
+        long remaining = openNanos - (nanoClock.getAsLong() - openedAt);
+        return Math.max(1, Duration.ofNanos(remaining).toSeconds() + 1);
+    }
+
+    private void record(boolean failure) {
+        if (recorded == windowSize) {
+            if (outcomes[next]) {
+                failures--;
+            }
+        } else {
+            recorded++;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % windowSize;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void reset() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+    }
+}
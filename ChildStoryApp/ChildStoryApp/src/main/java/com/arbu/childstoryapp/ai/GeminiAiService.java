@@ -1,32 +1,121 @@
 package com.arbu.childstoryapp.ai;
 
 import com.arbu.childstoryapp.ai.dto.GenerateStoryRequest;
+import com.arbu.childstoryapp.common.UpstreamUnavailableException;
 import com.arbu.childstoryapp.domain.ChildProfile;
 import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.narration.Narration;
+import com.arbu.childstoryapp.narration.NarrationService;
+import com.arbu.childstoryapp.stories.StoryService;
 import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Enhanced Gemini AI Service for DreamTales AI v3.0
  * Supports deep profile-based personalization, Quick/Creative modes, and advanced features
+ * Every model call has a non-blocking Mono/Flux variant; the blocking methods delegate to them
+ * Story and scene prompts for cacheable modes are served from {@link PromptCache} when possible
+ * Model calls go through {@link ModelResilience} (retry, circuit breaker, bulkhead)
+ * and {@link ModelRouter} picks the model per kind of work, with fallback
  */
 @Service
 public class GeminiAiService {
+    private static final Logger log = LoggerFactory.getLogger(GeminiAiService.class);
 
     @Value("${ai.gemini.model:gemini-2.5-flash}")
     private String modelName;
 
-    private final WebClient webClient = WebClient.builder()
-            .baseUrl("https://generativelanguage.googleapis.com/v1beta")
-            .build();
+    @Value("${ai.gemini.timeout:PT45S}")
+    private Duration callTimeout;
 
+    /**
+     * generationConfig for structured story output; propertyOrdering makes the title and pages
+     * stream first so they can be shown before the scene descriptions arrive
+     */
+    private static final Map<String, Object> STRUCTURED_STORY_CONFIG = Map.of(
+            "responseMimeType", "application/json",
+            "responseSchema", Map.of(
+                    "type", "OBJECT",
+                    "properties", Map.of(
+                            StructuredStoryParser.TITLE, Map.of("type", "STRING"),
+                            StructuredStoryParser.PAGES, Map.of("type", "ARRAY", "items", Map.of("type", "STRING")),
+                            StructuredStoryParser.SCENES, Map.of("type", "ARRAY", "items", Map.of("type", "STRING")),
+                            StructuredStoryParser.VOCABULARY, Map.of("type", "ARRAY", "items", Map.of("type", "STRING")),
+                            StructuredStoryParser.SUMMARY, Map.of("type", "STRING"),
+                            StructuredStoryParser.CHOICE_PROMPT, Map.of("type", "STRING"),
+                            StructuredStoryParser.CHOICE_OPTIONS, Map.of("type", "ARRAY", "items", Map.of("type", "STRING"))
+                    ),
+                    "required", List.of(StructuredStoryParser.TITLE, StructuredStoryParser.PAGES,
+                            StructuredStoryParser.SCENES),
+                    "propertyOrdering", List.of(StructuredStoryParser.TITLE, StructuredStoryParser.PAGES,
+                            StructuredStoryParser.SCENES, StructuredStoryParser.VOCABULARY,
+                            StructuredStoryParser.SUMMARY, StructuredStoryParser.CHOICE_PROMPT,
+                            StructuredStoryParser.CHOICE_OPTIONS)
+            )
+    );
+
+    /**
+     * generationConfig for one interactive branch: its pages, one scene to illustrate it and,
+     * unless it ends the story, the next choice point
+     */
+    private static final Map<String, Object> BRANCH_CONFIG = Map.of(
+            "responseMimeType", "application/json",
+            "responseSchema", Map.of(
+                    "type", "OBJECT",
+                    "properties", Map.of(
+                            StructuredStoryParser.PAGES, Map.of("type", "ARRAY", "items", Map.of("type", "STRING")),
+                            StructuredStoryParser.SCENES, Map.of("type", "ARRAY", "items", Map.of("type", "STRING")),
+                            StructuredStoryParser.CHOICE_PROMPT, Map.of("type", "STRING"),
+                            StructuredStoryParser.CHOICE_OPTIONS, Map.of("type", "ARRAY", "items", Map.of("type", "STRING"))
+                    ),
+                    "required", List.of(StructuredStoryParser.PAGES),
+                    "propertyOrdering", List.of(StructuredStoryParser.PAGES, StructuredStoryParser.SCENES,
+                            StructuredStoryParser.CHOICE_PROMPT, StructuredStoryParser.CHOICE_OPTIONS)
+            )
+    );
+
+    private final WebClient webClient;
+    private final PromptCache promptCache;
+    private final ImageService imageService;
+    private final ModelResilience resilience;
+    private final ModelRouter modelRouter;
+    private final PromptCompiler promptCompiler;
+    private final NarrationService narrationService;
+
+    public GeminiAiService(WebClient.Builder aiWebClientBuilder, PromptCache promptCache,
+                           ImageService imageService, ModelResilience resilience, ModelRouter modelRouter,
+                           PromptCompiler promptCompiler, NarrationService narrationService) {
+        this.webClient = aiWebClientBuilder
+                .baseUrl("https://generativelanguage.googleapis.com/v1beta")
+                .build();
+        this.promptCache = promptCache;
+        this.imageService = imageService;
+        this.resilience = resilience;
+        this.modelRouter = modelRouter;
+        this.promptCompiler = promptCompiler;
+        this.narrationService = narrationService;
+    }
+
+    /**
+     * Default model, used by the legacy endpoint and when routing is disabled
+     */
     public String getModelName() {
         return modelName;
     }
@@ -36,40 +125,16 @@ public class GeminiAiService {
      * Generates a short bedtime story text using Google Gemini based on child name, theme and lesson.
      */
     public String generateStory(String childName, String theme, String lesson) {
-        String apiKey = System.getenv("GEMINI_API_KEY");
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("GEMINI_API_KEY environment variable is not set. Please set it to your Google AI Studio API key.");
-        }
-
-        String prompt = buildPrompt(childName, theme, lesson);
-
-        Map<String, Object> body = Map.of(
-                "contents", List.of(Map.of(
-                        "role", "user",
-                        "parts", List.of(Map.of("text", prompt))
-                ))
-        );
-
-        try {
-            JsonNode json = webClient.post()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/models/" + modelName + ":generateContent")
-                            .queryParam("key", apiKey)
-                            .build())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(BodyInserters.fromValue(body))
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .block();
+        return generateStoryAsync(childName, theme, lesson).block();
+    }
 
-            String text = extractText(json);
-            if (text == null || text.isBlank()) {
-                throw new RuntimeException("Empty response from Gemini model");
-            }
-            return text.trim();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate story with Gemini: " + e.getMessage(), e);
-        }
+    /**
+     * Non-blocking variant of {@link #generateStory(String, String, String)}
+     */
+    public Mono<String> generateStoryAsync(String childName, String theme, String lesson) {
+        return callModel(buildPrompt(childName, theme, lesson), modelName)
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to generate story with Gemini: " + e.getMessage(), e));
     }
 
     /**
@@ -78,40 +143,97 @@ public class GeminiAiService {
      * Supports Quick/Creative modes, series continuity, and advanced features
      */
     public String generateStoryV3(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory) {
-        String apiKey = System.getenv("GEMINI_API_KEY");
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("GEMINI_API_KEY environment variable is not set.");
-        }
+        return generateStoryV3Async(request, childProfile, parentStory).block();
+    }
 
-        String prompt = buildEnhancedPrompt(request, childProfile, parentStory);
+    /**
+     * Non-blocking variant of {@link #generateStoryV3(GenerateStoryRequest, ChildProfile, Story)}
+     * No thread is held while waiting for the model
+     */
+    public Mono<String> generateStoryV3Async(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory) {
+        return generateStoryV3ReplyAsync(request, childProfile, parentStory).map(ModelReply::getText);
+    }
 
-        Map<String, Object> body = Map.of(
-                "contents", List.of(Map.of(
-                        "role", "user",
-                        "parts", List.of(Map.of("text", prompt))
-                ))
-        );
+    /**
+     * Same as {@link #generateStoryV3Async} but also reports which model wrote the story
+     * The model is chosen by {@link ModelRouter} from the request's mode and quality
+     */
+    public Mono<ModelReply> generateStoryV3ReplyAsync(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory) {
+        return Mono.fromCallable(() -> buildEnhancedPrompt(request, childProfile, parentStory))
+                .flatMap(prompt -> callRoutedCached(modelRouter.forStory(request), prompt, request.getMode(), null))
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to generate story with Gemini: " + e.getMessage(), e));
+    }
 
-        try {
-            JsonNode json = webClient.post()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/models/" + modelName + ":generateContent")
-                            .queryParam("key", apiKey)
-                            .build())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(BodyInserters.fromValue(body))
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .block();
+    /**
+     * Streams the v3.0 story text as the model produces it (streamGenerateContent)
+     * Each element is a text chunk; concatenated they form the full story
+     */
+    public Flux<String> streamStoryV3(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory) {
+        return streamStoryV3Replies(request, childProfile, parentStory).map(ModelReply::getText);
+    }
 
-            String text = extractText(json);
-            if (text == null || text.isBlank()) {
-                throw new RuntimeException("Empty response from Gemini model");
-            }
-            return text.trim();
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate story with Gemini: " + e.getMessage(), e);
-        }
+    /**
+     * Same as {@link #streamStoryV3} but each chunk carries the model that produced it
+     */
+    public Flux<ModelReply> streamStoryV3Replies(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory) {
+        return Mono.fromCallable(() -> buildEnhancedPrompt(request, childProfile, parentStory))
+                .flatMapMany(prompt -> streamRoutedCached(modelRouter.forStory(request), prompt, request.getMode(), null))
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to stream story from Gemini: " + e.getMessage(), e));
+    }
+
+    /**
+     * Structured generation: one model call returns title, pages, scene descriptions and
+     * vocabulary as JSON (responseSchema), so no separate scene-extraction call is needed
+     *
+     * @param sceneCount Number of scene descriptions to ask for
+     */
+    public Mono<StructuredStory> generateStructuredStoryAsync(GenerateStoryRequest request, ChildProfile childProfile,
+                                                              Story parentStory, int sceneCount) {
+        return Mono.fromCallable(() -> buildEnhancedPrompt(request, childProfile, parentStory, sceneCount))
+                .flatMap(prompt -> callRoutedCached(modelRouter.forStory(request), prompt, request.getMode(),
+                        STRUCTURED_STORY_CONFIG))
+                .map(reply -> {
+                    StructuredStory story = StructuredStoryParser.parse(reply.getText());
+                    story.setModel(reply.getModel());
+                    return story;
+                })
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to generate story with Gemini: " + e.getMessage(), e));
+    }
+
+    /**
+     * Streams the raw JSON of {@link #generateStructuredStoryAsync}; feed the chunks to a
+     * {@link StructuredStoryParser} to get pages as they complete
+     */
+    public Flux<ModelReply> streamStructuredStory(GenerateStoryRequest request, ChildProfile childProfile,
+                                                  Story parentStory, int sceneCount) {
+        return Mono.fromCallable(() -> buildEnhancedPrompt(request, childProfile, parentStory, sceneCount))
+                .flatMapMany(prompt -> streamRoutedCached(modelRouter.forStory(request), prompt, request.getMode(),
+                        STRUCTURED_STORY_CONFIG))
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to stream story from Gemini: " + e.getMessage(), e));
+    }
+
+    /**
+     * Writes the continuation of an interactive story after the child picked an option
+     *
+     * @param storyMode Mode of the story being continued; picks the model tier like the opening
+     * @param ending    Whether this branch ends the story instead of stopping at another choice point
+     */
+    public Mono<StructuredStory> generateBranchAsync(ChildProfile childProfile, String storyMode, String storySoFar,
+                                                     String choicePrompt, String chosenOption, boolean ending) {
+        return Mono.fromCallable(() -> promptCompiler.compileBranchPrompt(childProfile, storySoFar, choicePrompt,
+                        chosenOption, ending))
+                .flatMap(prompt -> callRouted(modelRouter.forBranch(storyMode), prompt, BRANCH_CONFIG))
+                .map(reply -> {
+                    StructuredStory branch = StructuredStoryParser.parse(reply.getText());
+                    branch.setModel(reply.getModel());
+                    return branch;
+                })
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to generate story branch with Gemini: " + e.getMessage(), e));
     }
 
     private String buildPrompt(String childName, String theme, String lesson) {
@@ -124,89 +246,193 @@ public class GeminiAiService {
     }
 
     /**
-     * Builds sophisticated prompt with full profile integration for v3.0
+     * Builds sophisticated prompt with full profile integration for v3.0 (see {@link PromptCompiler})
      */
     private String buildEnhancedPrompt(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory) {
-        StringBuilder prompt = new StringBuilder();
-        
-        // System instruction
-        prompt.append("You are DreamTales AI, an expert at creating personalized bedtime stories for children ages 3-10. ");
-        prompt.append("Create a calm, soothing, age-appropriate story in Turkish.\n\n");
-
-        // Profile information integration
-        prompt.append("=== CHILD PROFILE ===\n");
-        prompt.append("Hero Name: ").append(childProfile.getName()).append("\n");
-        
-        if (childProfile.getLikes() != null && !childProfile.getLikes().isBlank()) {
-            prompt.append("Favorite Things (incorporate these naturally): ").append(childProfile.getLikes()).append("\n");
+        return promptCompiler.compileStoryPrompt(request, childProfile, parentStory, null);
+    }
+
+    private String buildEnhancedPrompt(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory,
+                                       int structuredSceneCount) {
+        return promptCompiler.compileStoryPrompt(request, childProfile, parentStory, structuredSceneCount);
+    }
+
+    /**
+     * {@link #callRouted} behind the prompt cache when the story mode opts in
+     * Entries are keyed by the route's primary model; fallback replies are not cached
+     */
+    private Mono<ModelReply> callRoutedCached(ModelRouter.Route route, String prompt, String mode,
+                                              Map<String, Object> generationConfig) {
+        if (!promptCache.isEnabledFor(mode)) {
+            return callRouted(route, prompt, generationConfig);
         }
-        
-        if (childProfile.getDislikes() != null && !childProfile.getDislikes().isBlank()) {
-            prompt.append("Dislikes (avoid these): ").append(childProfile.getDislikes()).append("\n");
+        return promptCache.getOrLoad(promptCache.key(route.getPrimary(), prompt),
+                () -> callRouted(route, prompt, generationConfig),
+                reply -> route.getPrimary().equals(reply.getModel()) ? reply.getText() : null,
+                text -> new ModelReply(text, route.getPrimary()));
+    }
+
+    /**
+     * {@link #streamRouted} behind the prompt cache when the story mode opts in
+     */
+    private Flux<ModelReply> streamRoutedCached(ModelRouter.Route route, String prompt, String mode,
+                                               Map<String, Object> generationConfig) {
+        if (!promptCache.isEnabledFor(mode)) {
+            return streamRouted(route, prompt, generationConfig);
         }
-        
-        if (childProfile.getFears() != null && !childProfile.getFears().isBlank()) {
-            prompt.append("Fears (IMPORTANT - address these sensitively if relevant, but NEVER trigger or scare): ");
-            prompt.append(childProfile.getFears()).append("\n");
-            prompt.append("If a fear is relevant to the story, help the child overcome it gently and supportively. Never make fears scary.\n");
+        return promptCache.getOrStream(promptCache.key(route.getPrimary(), prompt),
+                () -> streamRouted(route, prompt, generationConfig),
+                reply -> route.getPrimary().equals(reply.getModel()) ? reply.getText() : null,
+                text -> new ModelReply(text, route.getPrimary()));
+    }
+
+    /**
+     * Calls the route's primary model; if it misses its latency budget or is unavailable,
+     * calls the fallback model instead
+     */
+    private Mono<ModelReply> callRouted(ModelRouter.Route route, String prompt, Map<String, Object> generationConfig) {
+        Mono<ModelReply> primary = callModel(prompt, route.getPrimary(), generationConfig)
+                .map(text -> new ModelReply(text, route.getPrimary()));
+        if (!route.hasFallback()) {
+            return primary;
         }
-        
-        if (childProfile.getRelationships() != null && !childProfile.getRelationships().isBlank()) {
-            prompt.append("Supporting Characters (friends, siblings, pets - include these): ");
-            prompt.append(childProfile.getRelationships()).append("\n");
+        return primary
+                .timeout(route.getBudget())
+                .onErrorResume(ModelRouter::shouldFallBack, e -> {
+                    log.warn("Model {} failed or exceeded {} ms, falling back to {}: {}", route.getPrimary(),
+                            route.getBudget().toMillis(), route.getFallback(), e.getMessage());
+                    return callModel(prompt, route.getFallback(), generationConfig)
+                            .map(text -> new ModelReply(text, route.getFallback()));
+                });
+    }
+
+    /**
+     * Streaming counterpart of {@link #callRouted}. The budget applies to the first chunk, and
+     * the fallback is only used while nothing has been streamed yet.
+     */
+    private Flux<ModelReply> streamRouted(ModelRouter.Route route, String prompt, Map<String, Object> generationConfig) {
+        Flux<ModelReply> primary = streamModel(prompt, route.getPrimary(), generationConfig)
+                .map(text -> new ModelReply(text, route.getPrimary()));
+        if (!route.hasFallback()) {
+            return primary;
         }
+        return Flux.defer(() -> {
+            AtomicBoolean emitted = new AtomicBoolean();
+            return primary
+                    .timeout(Mono.delay(route.getBudget()), chunk -> Mono.never())
+                    .doOnNext(chunk -> emitted.set(true))
+                    .onErrorResume(e -> !emitted.get() && ModelRouter.shouldFallBack(e), e -> {
+                        log.warn("Model {} failed or exceeded {} ms, falling back to {}: {}", route.getPrimary(),
+                                route.getBudget().toMillis(), route.getFallback(), e.getMessage());
+                        return streamModel(prompt, route.getFallback(), generationConfig)
+                                .map(text -> new ModelReply(text, route.getFallback()));
+                    });
+        });
+    }
 
-        prompt.append("\n=== STORY REQUIREMENTS ===\n");
-
-        // Mode-specific instructions
-        if ("creative".equalsIgnoreCase(request.getMode()) && request.getCustomPrompt() != null) {
-            prompt.append("Mode: Creative (Detailed Custom)\n");
-            prompt.append("User's Custom Scenario: ").append(request.getCustomPrompt()).append("\n");
-            prompt.append("Enrich this scenario using the profile information above.\n");
-        } else {
-            prompt.append("Mode: Quick (AI Auto-Generate)\n");
-            if (request.getTheme() != null) {
-                prompt.append("Theme: ").append(request.getTheme()).append("\n");
+    /**
+     * Sends a single-turn prompt to the given model and emits the trimmed response text
+     * The whole call is bounded by ai.gemini.timeout
+     */
+    private Mono<String> callModel(String prompt, String model) {
+        return callModel(prompt, model, null);
+    }
+
+    /**
+     * {@link #callModel(String, String)} with an optional generationConfig (e.g. a JSON response schema)
+     */
+    private Mono<String> callModel(String prompt, String model, Map<String, Object> generationConfig) {
+        // Each attempt waits locally for RPM/TPM quota before it is admitted
+        return resilience.call(model, TokenEstimator.estimate(prompt), lease -> Mono.defer(() -> {
+            String apiKey = requireApiKey();
+            Map<String, Object> body = requestBody(prompt, generationConfig);
+
+            return webClient.post()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/models/" + model + ":generateContent")
+                            .queryParam("key", apiKey)
+                            .build())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromValue(body))
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .timeout(callTimeout)
+                    .doOnNext(json -> lease.complete(totalTokens(json)))
+                    .doOnError(lease::fail);
+        })).handle((json, sink) -> {
+            String text = extractText(json);
+            if (text == null || text.isBlank()) {
+                sink.error(new RuntimeException("Empty response from Gemini model"));
+                return;
             }
-        }
+            sink.next(text.trim());
+        });
+    }
 
-        if (request.getLesson() != null && !request.getLesson().isBlank()) {
-            prompt.append("Behavioral Lesson (weave subtly into the story): ").append(request.getLesson()).append("\n");
-        }
+    /**
+     * Same as {@link #callModel(String, String, Map)} but uses the streaming method with alt=sse,
+     * emitting text chunks as they arrive
+     */
+    private Flux<String> streamModel(String prompt, String model, Map<String, Object> generationConfig) {
+        return resilience.stream(model, TokenEstimator.estimate(prompt), lease -> Flux.defer(() -> {
+            String apiKey = requireApiKey();
+            Map<String, Object> body = requestBody(prompt, generationConfig);
+            AtomicInteger usedTokens = new AtomicInteger();
 
-        // Series continuity
-        if (parentStory != null) {
-            prompt.append("\n=== SERIES CONTINUITY ===\n");
-            prompt.append("This is a continuation of a previous story. Previous story summary:\n");
-            prompt.append(parentStory.getContent().substring(0, Math.min(500, parentStory.getContent().length())));
-            prompt.append("...\nContinue the adventure naturally, referencing what happened before.\n");
-        }
+            return webClient.post()
+                    .uri(uriBuilder -> uriBuilder
+                            .path("/models/" + model + ":streamGenerateContent")
+                            .queryParam("alt", "sse")
+                            .queryParam("key", apiKey)
+                            .build())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.TEXT_EVENT_STREAM)
+                    .body(BodyInserters.fromValue(body))
+                    .retrieve()
+                    .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<JsonNode>>() {})
+                    // Usage is reported on the last chunk
+                    .doOnNext(event -> usedTokens.accumulateAndGet(totalTokens(event.data()), Math::max))
+                    .doOnComplete(() -> lease.complete(usedTokens.get()))
+                    .doOnError(lease::fail);
+        })).mapNotNull(event -> extractText(event.data()));
+    }
 
-        // Language learning mode
-        if (Boolean.TRUE.equals(request.getEnableLanguageLearning()) && request.getLearningLanguage() != null) {
-            prompt.append("\n=== LANGUAGE LEARNING ===\n");
-            prompt.append("Integrate simple ").append(request.getLearningLanguage()).append(" words with contextual teaching.\n");
-            prompt.append("Example: 'The owl said, \"blue renge İngilizce'de 'blue' denir.\"'\n");
+    private Map<String, Object> requestBody(String prompt, Map<String, Object> generationConfig) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("contents", List.of(Map.of(
+                "role", "user",
+                "parts", List.of(Map.of("text", prompt))
+        )));
+        if (generationConfig != null) {
+            body.put("generationConfig", generationConfig);
         }
+        return body;
+    }
 
-        // Interactive mode
-        if (Boolean.TRUE.equals(request.getIsInteractive())) {
-            prompt.append("\n=== INTERACTIVE MODE ===\n");
-            prompt.append("Create a branching story with 2 choice points. At each point, present 2 options.\n");
-            prompt.append("Format: [CHOICE 1: Description] Option A: ... | Option B: ...\n");
-        }
+    /**
+     * Errors that should be wrapped as a generic model failure (502); configuration errors (500)
+     * and upstream unavailability (503) keep their own status
+     */
+    private static boolean isUnexpected(Throwable e) {
+        return !(e instanceof IllegalStateException || e instanceof UpstreamUnavailableException);
+    }
 
-        // Constraints
-        prompt.append("\n=== CONSTRAINTS ===\n");
-        prompt.append("- Length: 8-12 sentences (longer if interactive)\n");
-        prompt.append("- Vocabulary: Simple, for ages 3-10\n");
-        prompt.append("- Tone: Calm, gentle, soothing, bedtime-appropriate\n");
-        prompt.append("- NO scary elements, violence, or nightmares\n");
-        prompt.append("- End with a peaceful, sleepy closure\n");
-        prompt.append("- Make ").append(childProfile.getName()).append(" the hero/protagonist\n");
-        prompt.append("- Only return the story text, no titles or markdown formatting\n");
+    private String requireApiKey() {
+        String apiKey = System.getenv("GEMINI_API_KEY");
+        if (apiKey == null || apiKey.isBlank()) {
+            throw new IllegalStateException("GEMINI_API_KEY environment variable is not set.");
+        }
+        return apiKey;
+    }
 
-        return prompt.toString();
+    /**
+     * Prompt + output tokens reported in usageMetadata, or 0 when absent
+     */
+    private static int totalTokens(JsonNode node) {
+        if (node == null) return 0;
+        JsonNode usage = node.get("usageMetadata");
+        if (usage == null) return 0;
+        return usage.path("totalTokenCount").asInt(0);
     }
 
     private String extractText(JsonNode node) {
@@ -239,103 +465,90 @@ public class GeminiAiService {
      * @return List of detailed scene descriptions suitable for image generation
      */
     public List<String> generateSceneDescriptions(String storyText, String childName, int sceneCount) {
-        String apiKey = System.getenv("GEMINI_API_KEY");
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("GEMINI_API_KEY environment variable is not set.");
-        }
-
-        String prompt = buildSceneDescriptionPrompt(storyText, childName, sceneCount);
-
-        Map<String, Object> body = Map.of(
-                "contents", List.of(Map.of(
-                        "role", "user",
-                        "parts", List.of(Map.of("text", prompt))
-                ))
-        );
-
-        try {
-            JsonNode json = webClient.post()
-                    .uri(uriBuilder -> uriBuilder
-                            .path("/models/" + modelName + ":generateContent")
-                            .queryParam("key", apiKey)
-                            .build())
-                    .contentType(MediaType.APPLICATION_JSON)
-                    .body(BodyInserters.fromValue(body))
-                    .retrieve()
-                    .bodyToMono(JsonNode.class)
-                    .block();
-
-            String text = extractText(json);
-            if (text == null || text.isBlank()) {
-                throw new RuntimeException("Empty response from Gemini for scene descriptions");
-            }
+        return generateSceneDescriptionsAsync(storyText, childName, sceneCount).collectList().block();
+    }
 
-            // Parse the response - expecting one description per line
-            return List.of(text.trim().split("\n"))
-                    .stream()
-                    .map(String::trim)
-                    .filter(s -> !s.isEmpty())
-                    .limit(sceneCount)
-                    .toList();
+    /**
+     * Non-blocking variant of {@link #generateSceneDescriptions(String, String, int)}
+     * Emits one scene description per element, in story order
+     */
+    public Flux<String> generateSceneDescriptionsAsync(String storyText, String childName, int sceneCount) {
+        return generateSceneDescriptionsAsync(storyText, childName, sceneCount, null);
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate scene descriptions: " + e.getMessage(), e);
-        }
+    /**
+     * Scene descriptions for a story generated in the given mode; cacheable modes reuse
+     * earlier descriptions of the same story text
+     */
+    public Flux<String> generateSceneDescriptionsAsync(String storyText, String childName, int sceneCount, String mode) {
+        return callRoutedCached(modelRouter.forScenes(), buildSceneDescriptionPrompt(storyText, childName, sceneCount), mode, null)
+                .map(ModelReply::getText)
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to generate scene descriptions: " + e.getMessage(), e))
+                // Parse the response - expecting one description per line
+                .flatMapMany(text -> Flux.fromArray(text.split("\n")))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .take(sceneCount);
     }
 
     /**
-     * Generates an image using Gemini's Imagen API
-     * Note: This is a placeholder for actual Imagen API integration
-     * In production, this would call Google's Imagen API via vertex AI
-     * 
+     * Generates an image for a single scene
+     * Delegates to {@link ImageService} as a batch of one
+     *
      * @param sceneDescription Detailed description of the scene to generate
      * @param quality "standard" or "high"
-     * @return URL of the generated image (placeholder in MVP)
+     * @return URL of the stored image
      */
     public String generateImage(String sceneDescription, String quality) {
-        // TODO: Implement actual Imagen API call
-        // For now, return a placeholder URL that indicates image generation is pending
-        // In production, this would call:
-        // - Google Cloud Vertex AI Imagen API
-        // - POST to https://REGION-aiplatform.googleapis.com/v1/projects/PROJECT_ID/locations/REGION/publishers/google/models/imagegeneration:predict
-        
-        String apiKey = System.getenv("GEMINI_API_KEY");
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("GEMINI_API_KEY environment variable is not set.");
-        }
+        return generateImageAsync(sceneDescription, quality).block();
+    }
 
-        // Placeholder implementation
-        // Returns a mock URL - in production, this would be the actual generated image URL
-        String sanitizedDescription = sceneDescription.replaceAll("[^a-zA-Z0-9]", "_").substring(0, Math.min(50, sceneDescription.length()));
-        return "https://storage.googleapis.com/dreamtales-ai-images/" + sanitizedDescription + "_" + quality + ".jpg";
+    /**
+     * Non-blocking variant of {@link #generateImage(String, String)}
+     */
+    public Mono<String> generateImageAsync(String sceneDescription, String quality) {
+        return generateImagesAsync(List.of(sceneDescription), quality, null)
+                .flatMap(urls -> urls.isEmpty()
+                        ? Mono.error(new RuntimeException("Failed to generate image"))
+                        : Mono.just(urls.get(0)));
     }
 
     /**
-     * Generates audio narration using Google Cloud Text-to-Speech
-     * Note: This is a placeholder for actual TTS integration
-     * In production, this would call Google Cloud TTS API
-     * 
+     * Generates images for all scenes of a story
+     * Scenes already in the image store are reused; the rest are rendered in batches of at most
+     * ai.image.batchSize (and the backend's own limit), ai.image.concurrency batches at a time.
+     * Scenes whose batch failed, or was still rendering at the deadline, are left out.
+     *
+     * @param sceneDescriptions Scene descriptions in story order
+     * @param quality "standard" or "high"
+     * @param deadline Time after which unfinished batches are dropped, or null for none
+     * @return Image URLs in scene order
+     */
+    public Mono<List<String>> generateImagesAsync(List<String> sceneDescriptions, String quality, Duration deadline) {
+        return imageService.render(sceneDescriptions, quality, deadline)
+                .onErrorMap(GeminiAiService::isUnexpected,
+                        e -> new RuntimeException("Failed to generate images: " + e.getMessage(), e));
+    }
+
+    /**
+     * Generates audio narration with the configured TTS backend (see {@link NarrationService})
+     *
      * @param storyText The complete story text to narrate
      * @param languageCode Language code (e.g., "tr-TR" for Turkish)
      * @param voiceName Optional voice name (e.g., "tr-TR-Wavenet-A")
-     * @return URL of the generated audio file (placeholder in MVP)
+     * @return URL of the narration of the whole story
      */
     public String generateAudio(String storyText, String languageCode, String voiceName) {
-        // TODO: Implement actual Google Cloud TTS API call
-        // For now, return a placeholder URL that indicates audio generation is pending
-        // In production, this would call:
-        // - Google Cloud Text-to-Speech API
-        // - POST to https://texttospeech.googleapis.com/v1/text:synthesize
-        
-        String apiKey = System.getenv("GEMINI_API_KEY");
-        if (apiKey == null || apiKey.isBlank()) {
-            throw new IllegalStateException("GEMINI_API_KEY environment variable is not set.");
-        }
+        return generateAudioAsync(storyText, languageCode, voiceName).block();
+    }
 
-        // Placeholder implementation
-        // Returns a mock URL - in production, this would be the actual generated audio URL
-        String sanitizedText = String.valueOf(storyText.hashCode());
-        return "https://storage.googleapis.com/dreamtales-ai-audio/story_" + sanitizedText + "_" + languageCode + ".mp3";
+    /**
+     * Non-blocking variant of {@link #generateAudio(String, String, String)}
+     */
+    public Mono<String> generateAudioAsync(String storyText, String languageCode, String voiceName) {
+        return narrationService.narrate(StoryService.splitIntoPages(storyText), languageCode, voiceName)
+                .map(Narration::getAudioUrl);
     }
 
     /**
@@ -0,0 +1,36 @@
+package com.arbu.childstoryapp.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Media produced for a story by the generation pipeline.
+ * Image URLs are empty when the image batch failed or missed the stage deadline.
+ * Page audio URLs are index-aligned with the story pages (empty without narration).
+ */
+public class GeneratedMedia {
+    private List<String> sceneDescriptions = new ArrayList<>();
+    private List<String> imageUrls = new ArrayList<>();
+    private String audioUrl;
+    private List<String> pageAudioUrls = new ArrayList<>();
+
+    public GeneratedMedia() {}
+
+    public GeneratedMedia(List<String> sceneDescriptions, List<String> imageUrls, String audioUrl) {
+        this.sceneDescriptions = sceneDescriptions;
+        this.imageUrls = imageUrls;
+        this.audioUrl = audioUrl;
+    }
+
+    public List<String> getSceneDescriptions() { return sceneDescriptions; }
+    public void setSceneDescriptions(List<String> sceneDescriptions) { this.sceneDescriptions = sceneDescriptions; }
+
+    public List<String> getImageUrls() { return imageUrls; }
+    public void setImageUrls(List<String> imageUrls) { this.imageUrls = imageUrls; }
+
+    public String getAudioUrl() { return audioUrl; }
+    public void setAudioUrl(String audioUrl) { this.audioUrl = audioUrl; }
+
+    public List<String> getPageAudioUrls() { return pageAudioUrls; }
+    public void setPageAudioUrls(List<String> pageAudioUrls) { this.pageAudioUrls = pageAudioUrls; }
+}
@@ -0,0 +1,325 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.ai.dto.GenerateStoryRequest;
+import com.arbu.childstoryapp.ai.dto.GenerateStoryResponse;
+import com.arbu.childstoryapp.ai.dto.GenerationJobResponse;
+import com.arbu.childstoryapp.common.TooManyRequestsException;
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.domain.StoryGenerationJob;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.repository.ChildProfileRepository;
+import com.arbu.childstoryapp.repository.StoryGenerationJobRepository;
+import com.arbu.childstoryapp.repository.StoryRepository;
+import com.arbu.childstoryapp.repository.UserAccountRepository;
+import com.arbu.childstoryapp.subscriptions.SubscriptionService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Asynchronous story generation jobs for DreamTales AI v3.0
+ * Submitting returns a job ID immediately; a bounded pool of workers runs the
+ * text -> scenes -> images -> audio -> save pipeline. Jobs are persisted, and
+ * queued or interrupted jobs are resumed when the application starts.
+ * A job's story is counted against the daily limit when it is submitted (and given back
+ * if the job fails), so a burst of submissions cannot get past the limit; each user may
+ * have at most ai.jobs.maxPerUser jobs queued or running.
+ */
+@Service
+public class GenerationJobService {
+    private static final Logger log = LoggerFactory.getLogger(GenerationJobService.class);
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_SUCCEEDED = "succeeded";
+    public static final String STATUS_FAILED = "failed";
+
+    private final StoryGenerationJobRepository jobRepo;
+    private final UserAccountRepository userRepo;
+    private final ChildProfileRepository childRepo;
+    private final StoryRepository storyRepo;
+    private final StoryGenerationPipeline storyGenerationPipeline;
+    private final SubscriptionService subscriptionService;
+    private final ObjectMapper objectMapper;
+
+    private final BlockingQueue<Long> pending;
+    /** Queued or running jobs per user id */
+    private final Map<Long, Integer> unfinishedJobsPerUser = new ConcurrentHashMap<>();
+    private final ExecutorService workers;
+    private final int maxAttempts;
+    private final int maxJobsPerUser;
+
+    public GenerationJobService(StoryGenerationJobRepository jobRepo,
+                                UserAccountRepository userRepo,
+                                ChildProfileRepository childRepo,
+                                StoryRepository storyRepo,
+                                StoryGenerationPipeline storyGenerationPipeline,
+                                SubscriptionService subscriptionService,
+                                ObjectMapper objectMapper,
+                                @Value("${ai.jobs.workers:4}") int workerCount,
+                                @Value("${ai.jobs.queueCapacity:100}") int queueCapacity,
+                                @Value("${ai.jobs.maxAttempts:2}") int maxAttempts,
+                                @Value("${ai.jobs.maxPerUser:3}") int maxJobsPerUser) {
+        this.jobRepo = jobRepo;
+        this.userRepo = userRepo;
+        this.childRepo = childRepo;
+        this.storyRepo = storyRepo;
+        this.storyGenerationPipeline = storyGenerationPipeline;
+        this.subscriptionService = subscriptionService;
+        this.objectMapper = objectMapper;
+        this.pending = new LinkedBlockingQueue<>(queueCapacity);
+        this.maxAttempts = maxAttempts;
+        this.maxJobsPerUser = maxJobsPerUser;
+
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, "story-job-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::workLoop);
+        }
+    }
+
+    /**
+     * Queue a generation request and count its story against today's limit.
+     * Rejects with 429 when the queue is full or the user already has ai.jobs.maxPerUser
+     * unfinished jobs, which is the backpressure signal to clients.
+     */
+    public StoryGenerationJob submit(UserAccount user, GenerateStoryRequest request) {
+        Long userId = user.getId();
+        if (!takeUserSlot(userId)) {
+            throw new TooManyRequestsException("You already have " + maxJobsPerUser
+                    + " stories in progress. Please wait for one to finish.", 30);
+        }
+        if (!subscriptionService.reserveStory(userId)) {
+            releaseUserSlot(userId);
+            throw new IllegalStateException("Daily story limit reached. Please upgrade your subscription or try again tomorrow.");
+        }
+
+        StoryGenerationJob job = new StoryGenerationJob();
+        job.setUser(user);
+        job.setStatus(STATUS_QUEUED);
+        job.setAttempts(0);
+        job.setQuotaReservedOn(LocalDate.now());
+        job.setCreatedAt(Instant.now());
+        try {
+            job.setRequestPayload(writeJson(request));
+            job = jobRepo.save(job);
+        } catch (RuntimeException e) {
+            subscriptionService.releaseStory(userId, job.getQuotaReservedOn());
+            releaseUserSlot(userId);
+            throw e;
+        }
+
+        if (!pending.offer(job.getId())) {
+            fail(job, "Story generation queue is full");
+            throw new TooManyRequestsException("Story generation queue is full. Please try again shortly.", 30);
+        }
+        return job;
+    }
+
+    /**
+     * Get a job's current status (must belong to user)
+     */
+    public Optional<GenerationJobResponse> getJob(Long jobId, Long userId) {
+        return jobRepo.findByIdAndUser_Id(jobId, userId).map(this::toResponse);
+    }
+
+    /**
+     * Re-queue jobs that were waiting or running when the application stopped
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedJobs() {
+        List<StoryGenerationJob> unfinished = jobRepo.findByStatusInOrderByCreatedAtAsc(
+                List.of(STATUS_QUEUED, STATUS_RUNNING));
+        for (StoryGenerationJob job : unfinished) {
+            if (!STATUS_QUEUED.equals(job.getStatus())) {
+                job.setStatus(STATUS_QUEUED);
+                job = jobRepo.save(job);
+            }
+            unfinishedJobsPerUser.merge(job.getUser().getId(), 1, Integer::sum);
+            if (!pending.offer(job.getId())) {
+                fail(job, "Story generation queue was full after a restart");
+            }
+        }
+        if (!unfinished.isEmpty()) {
+            log.info("Resumed {} unfinished story generation jobs", unfinished.size());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // Running jobs stay "running" in the database and are resumed on next start
+        workers.shutdownNow();
+    }
+
+    private void workLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Long jobId = pending.take();
+                runJob(jobId);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                log.error("Story generation worker error: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    private void runJob(Long jobId) {
+        StoryGenerationJob job = jobRepo.findById(jobId).orElse(null);
+        if (job == null || !STATUS_QUEUED.equals(job.getStatus())) {
+            return;
+        }
+
+        int attempts = job.getAttempts() != null ? job.getAttempts() : 0;
+        if (attempts >= maxAttempts) {
+            fail(job, "Job was interrupted too many times");
+            return;
+        }
+
+        // Re-check the limit before paying for the model calls
+        Long userId = job.getUser().getId();
+        LocalDate today = LocalDate.now();
+        if (!today.equals(job.getQuotaReservedOn())) {
+            // Reserved on an earlier day (resumed after a restart): count it against today instead
+            if (!subscriptionService.reserveStory(userId)) {
+                job.setQuotaReservedOn(null);
+                fail(job, "Daily story limit reached");
+                return;
+            }
+            job.setQuotaReservedOn(today);
+        } else if (!subscriptionService.isActive(userId)) {
+            fail(job, "Subscription is not active");
+            return;
+        }
+
+        job.setStatus(STATUS_RUNNING);
+        job.setAttempts(attempts + 1);
+        job.setStartedAt(Instant.now());
+        job = jobRepo.save(job);
+
+        try {
+            GenerateStoryRequest request = objectMapper.readValue(job.getRequestPayload(), GenerateStoryRequest.class);
+            UserAccount user = userRepo.findById(userId)
+                    .orElseThrow(() -> new IllegalArgumentException("User not found"));
+            ChildProfile childProfile = childRepo.findByIdAndUser_Id(request.getChildProfileId(), userId)
+                    .orElseThrow(() -> new IllegalArgumentException("Child profile not found or does not belong to user"));
+            Story parentStory = null;
+            if (request.getParentStoryId() != null) {
+                parentStory = storyRepo.findByIdAndUser_Id(request.getParentStoryId(), userId)
+                        .orElseThrow(() -> new IllegalArgumentException("Parent story not found or does not belong to user"));
+            }
+
+            // Already counted against the daily limit when reserved
+            GenerateStoryResponse response = storyGenerationPipeline.generate(user, request, childProfile, parentStory, false);
+            job.setStoryId(response.getStoryId());
+            finish(job, STATUS_SUCCEEDED, writeJson(response), null);
+            releaseUserSlot(userId);
+        } catch (Exception e) {
+            log.warn("Story generation job {} failed: {}", jobId, e.getMessage());
+            fail(job, e.getMessage());
+        }
+    }
+
+    /**
+     * Marks the job failed and gives back its daily quota and per-user slot
+     */
+    private void fail(StoryGenerationJob job, String errorMessage) {
+        Long userId = job.getUser().getId();
+        try {
+            finish(job, STATUS_FAILED, null, errorMessage);
+            subscriptionService.releaseStory(userId, job.getQuotaReservedOn());
+        } finally {
+            releaseUserSlot(userId);
+        }
+    }
+
+    private boolean takeUserSlot(Long userId) {
+        boolean[] taken = {false};
+        unfinishedJobsPerUser.compute(userId, (id, count) -> {
+            int current = count != null ? count : 0;
+            if (current >= maxJobsPerUser) {
+                return count;
+            }
+            taken[0] = true;
+            return current + 1;
+        });
+        return taken[0];
+    }
+
+    private void releaseUserSlot(Long userId) {
+        unfinishedJobsPerUser.computeIfPresent(userId, (id, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private void finish(StoryGenerationJob job, String status, String resultPayload, String errorMessage) {
+        job.setStatus(status);
+        job.setResultPayload(resultPayload);
+        job.setErrorMessage(errorMessage);
+        job.setFinishedAt(Instant.now());
+        jobRepo.save(job);
+    }
+
+    private GenerationJobResponse toResponse(StoryGenerationJob job) {
+        GenerationJobResponse response = new GenerationJobResponse();
+        response.setJobId(job.getId());
+        response.setStatus(job.getStatus());
+        response.setStoryId(job.getStoryId());
+        response.setError(job.getErrorMessage());
+        response.setCreatedAt(job.getCreatedAt());
+        response.setStartedAt(job.getStartedAt());
+        response.setFinishedAt(job.getFinishedAt());
+
+        if (STATUS_QUEUED.equals(job.getStatus())) {
+            response.setQueuePosition(queuePosition(job.getId()));
+        }
+        if (job.getResultPayload() != null) {
+            try {
+                response.setResult(objectMapper.readValue(job.getResultPayload(), GenerateStoryResponse.class));
+            } catch (JsonProcessingException e) {
+                log.warn("Failed to read result of job {}: {}", job.getId(), e.getMessage());
+            }
+        }
+        return response;
+    }
+
+    private Integer queuePosition(Long jobId) {
+        int position = 1;
+        for (Long id : pending) {
+            if (id.equals(jobId)) {
+                return position;
+            }
+            position++;
+        }
+        return null;
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to serialize story generation job: " + e.getMessage(), e);
+        }
+    }
+}
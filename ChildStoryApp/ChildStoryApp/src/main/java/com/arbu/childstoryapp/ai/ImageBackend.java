@@ -0,0 +1,30 @@
+package com.arbu.childstoryapp.ai;
+
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Image generation backend for DreamTales AI v3.0
+ * Renders several prompts in one request; implementations must return one PNG image per
+ * prompt, in the same order. Storage and caching are handled by {@link ImageService}.
+ */
+public interface ImageBackend {
+
+    /**
+     * Identifies the backend (and any setting that changes its output) in image cache keys
+     */
+    String name();
+
+    /**
+     * @param prompts Image prompts to render, in story order
+     * @param quality "standard" or "high"
+     * @return PNG images, index-aligned with {@code prompts}
+     */
+    Mono<List<byte[]>> generateImages(List<String> prompts, String quality);
+
+    /**
+     * Largest number of prompts the backend accepts in a single request
+     */
+    int maxBatchSize();
+}
@@ -0,0 +1,233 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.media.MediaStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Scene image rendering for DreamTales AI v3.0
+ * Images are content-addressed in the media store by a hash of (backend, prompt, quality, style),
+ * so a scene prompt that was rendered before (for any user) is served from the store instead of
+ * being rendered again. Missing scenes are sent to the {@link ImageBackend} in batches, with at
+ * most {@code concurrency} batches in flight. Every new image also gets a small JPEG thumbnail
+ * for story lists.
+ */
+@Service
+public class ImageService {
+    private static final Logger log = LoggerFactory.getLogger(ImageService.class);
+
+    private static final String IMAGE_EXTENSION = ".png";
+    private static final String THUMBNAIL_SUFFIX = "-thumb.jpg";
+
+    private final ImageBackend imageBackend;
+    private final MediaStore mediaStore;
+    private final int batchSize;
+    private final int concurrency;
+    private final String style;
+    private final int thumbnailSize;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer renderTimer;
+
+    public ImageService(ImageBackend imageBackend,
+                        MediaStore mediaStore,
+                        MeterRegistry meterRegistry,
+                        @Value("${ai.image.batchSize:5}") int batchSize,
+                        @Value("${ai.image.concurrency:4}") int concurrency,
+                        @Value("${ai.image.style:children's book illustration, soft colors, gentle light}") String style,
+                        @Value("${ai.image.thumbnail.size:256}") int thumbnailSize) {
+        this.imageBackend = imageBackend;
+        this.mediaStore = mediaStore;
+        this.batchSize = Math.max(1, Math.min(batchSize, imageBackend.maxBatchSize()));
+        this.concurrency = concurrency;
+        this.style = style;
+        this.thumbnailSize = thumbnailSize;
+
+        this.cacheHits = Counter.builder("ai.image.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("ai.image.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.renderTimer = Timer.builder("ai.image.render")
+                .description("Time for one image backend request")
+                .tag("backend", imageBackend.name())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Image URLs for the scenes, in scene order. Stored scenes are reused; the rest are rendered.
+     * Scenes whose batch failed are left out, so the result can be shorter than the input.
+     *
+     * @param sceneDescriptions Scene descriptions in story order
+     * @param quality "standard" or "high"
+     */
+    public Mono<List<String>> render(List<String> sceneDescriptions, String quality) {
+        return render(sceneDescriptions, quality, null);
+    }
+
+    /**
+     * Like {@link #render(List, String)}, but batches still rendering after {@code deadline} are
+     * cancelled and left out instead of failing the whole story
+     */
+    public Mono<List<String>> render(List<String> sceneDescriptions, String quality, Duration deadline) {
+        if (sceneDescriptions.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        List<String> names = sceneDescriptions.stream().map(scene -> imageName(scene, quality)).toList();
+        return Flux.fromIterable(names)
+                .flatMapSequential(name -> mediaStore.findUrl(MediaStore.IMAGES, name)
+                        .map(Optional::of)
+                        .defaultIfEmpty(Optional.empty()))
+                .collectList()
+                .flatMap(stored -> {
+                    // Scenes to render, without duplicates within the story
+                    Map<String, String> missing = new LinkedHashMap<>();
+                    for (int i = 0; i < names.size(); i++) {
+                        if (stored.get(i).isEmpty()) {
+                            missing.putIfAbsent(names.get(i), sceneDescriptions.get(i));
+                        }
+                    }
+                    cacheHits.increment(names.size() - missing.size());
+                    cacheMisses.increment(missing.size());
+                    return renderMissing(missing, quality, deadline)
+                            .map(rendered -> {
+                                List<String> urls = new ArrayList<>(names.size());
+                                for (int i = 0; i < names.size(); i++) {
+                                    String name = names.get(i);
+                                    String url = stored.get(i).orElseGet(() -> rendered.get(name));
+                                    if (url != null) {
+                                        urls.add(url);
+                                    }
+                                }
+                                return urls;
+                            });
+                });
+    }
+
+    /**
+     * Thumbnail URL for an image URL returned by {@link #render}. Falls back to the image itself
+     * when there is no stored thumbnail (its creation failed, or the image is not ours).
+     */
+    public String thumbnailUrl(String imageUrl) {
+        String name = mediaStore.nameOf(MediaStore.IMAGES, imageUrl);
+        if (name == null || !name.endsWith(IMAGE_EXTENSION)) {
+            return imageUrl;
+        }
+        String thumbnail = thumbnailName(name);
+        return mediaStore.resolve(MediaStore.IMAGES, thumbnail).isPresent()
+                ? mediaStore.url(MediaStore.IMAGES, thumbnail)
+                : imageUrl;
+    }
+
+    /**
+     * Renders the scenes batch by batch; a failed batch is logged and its scenes are missing from the result
+     */
+    private Mono<Map<String, String>> renderMissing(Map<String, String> missing, String quality, Duration deadline) {
+        if (missing.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        Flux<Tuple2<String, String>> rendered = Flux.fromIterable(missing.entrySet())
+                .buffer(batchSize)
+                .flatMap(batch -> renderBatch(batch, quality)
+                        .onErrorResume(e -> {
+                            log.warn("Failed to render {} of {} scenes: {}", batch.size(), missing.size(), e.getMessage());
+                            return Flux.empty();
+                        }), concurrency);
+        if (deadline != null) {
+            rendered = rendered.take(deadline);
+        }
+        return rendered.collectMap(Tuple2::getT1, Tuple2::getT2);
+    }
+
+    private Flux<Tuple2<String, String>> renderBatch(List<Map.Entry<String, String>> batch, String quality) {
+        List<String> prompts = batch.stream().map(entry -> prompt(entry.getValue())).toList();
+        long started = System.nanoTime();
+        return imageBackend.generateImages(prompts, quality)
+                .doOnNext(images -> renderTimer.record(Duration.ofNanos(System.nanoTime() - started)))
+                .flatMapMany(images -> {
+                    if (images.size() != batch.size()) {
+                        return Flux.error(new RuntimeException("Image backend returned " + images.size()
+                                + " images for " + batch.size() + " scenes"));
+                    }
+                    return Flux.range(0, batch.size())
+                            .flatMap(i -> store(batch.get(i).getKey(), images.get(i))
+                                    .map(url -> Tuples.of(batch.get(i).getKey(), url)));
+                });
+    }
+
+    /**
+     * Stores the image and its thumbnail; a failed thumbnail does not fail the image
+     */
+    private Mono<String> store(String name, byte[] png) {
+        return mediaStore.put(MediaStore.IMAGES, name, png)
+                .flatMap(url -> Mono.fromCallable(() -> thumbnail(png))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .flatMap(jpeg -> mediaStore.put(MediaStore.IMAGES, thumbnailName(name), jpeg))
+                        .onErrorResume(e -> {
+                            log.warn("Failed to create thumbnail for {}: {}", name, e.getMessage());
+                            return Mono.empty();
+                        })
+                        .thenReturn(url));
+    }
+
+    /**
+     * Scales the image down to fit {@code thumbnailSize} and encodes it as JPEG
+     */
+    private byte[] thumbnail(byte[] image) throws IOException {
+        BufferedImage source = ImageIO.read(new ByteArrayInputStream(image));
+        if (source == null) {
+            throw new IOException("Unsupported image format");
+        }
+        double scale = Math.min(1.0, (double) thumbnailSize / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        // JPEG has no alpha channel, so draw onto an RGB canvas
+        BufferedImage target = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(target, "jpg", jpeg);
+        return jpeg.toByteArray();
+    }
+
+    private String prompt(String sceneDescription) {
+        return style.isBlank() ? sceneDescription : sceneDescription + "\nArt style: " + style;
+    }
+
+    private String imageName(String sceneDescription, String quality) {
+        return MediaStore.key(imageBackend.name(), sceneDescription.trim(), quality, style) + IMAGE_EXTENSION;
+    }
+
+    private static String thumbnailName(String imageName) {
+        return imageName.substring(0, imageName.length() - IMAGE_EXTENSION.length()) + THUMBNAIL_SUFFIX;
+    }
+}
@@ -0,0 +1,109 @@
+package com.arbu.childstoryapp.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Imagen backend (models/{model}:predict on the Gemini API).
+ * Imagen renders one prompt per request, so the batch size is 1 and {@link ImageService}
+ * runs the scenes of a story in parallel. "high" quality uses the full model, "standard"
+ * the fast one. Calls go through the shared AI HTTP client and the resilience layer, and
+ * wait for the model's per-minute request quota ({@link ModelRateLimiter}).
+ * Images come back base64-encoded in JSON, so responses may be larger than the shared
+ * client's buffer limit allows; {@code ai.image.maxResponseSize} applies instead.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.image.backend", havingValue = "imagen")
+public class ImagenBackend implements ImageBackend {
+
+    private final WebClient webClient;
+    private final ModelResilience resilience;
+    private final String apiKey;
+    private final String standardModel;
+    private final String highModel;
+    private final String aspectRatio;
+    private final Duration timeout;
+
+    public ImagenBackend(WebClient.Builder aiWebClientBuilder,
+                         ModelResilience resilience,
+                         @Value("${ai.image.imagen.baseUrl:https://generativelanguage.googleapis.com/v1beta}") String baseUrl,
+                         @Value("${ai.image.imagen.apiKey:${GEMINI_API_KEY:}}") String apiKey,
+                         @Value("${ai.image.imagen.model.standard:imagen-4.0-fast-generate-001}") String standardModel,
+                         @Value("${ai.image.imagen.model.high:imagen-4.0-generate-001}") String highModel,
+                         @Value("${ai.image.imagen.aspectRatio:1:1}") String aspectRatio,
+                         @Value("${ai.image.imagen.timeout:PT60S}") Duration timeout,
+                         @Value("${ai.image.maxResponseSize:16MB}") DataSize maxResponseSize) {
+        // The builder is a prototype, so this limit only applies to Imagen
+        this.webClient = aiWebClientBuilder
+                .baseUrl(baseUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxResponseSize.toBytes()))
+                .build();
+        this.resilience = resilience;
+        this.apiKey = apiKey;
+        this.standardModel = standardModel;
+        this.highModel = highModel;
+        this.aspectRatio = aspectRatio;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String name() {
+        return "imagen:" + standardModel + ":" + highModel + ":" + aspectRatio;
+    }
+
+    @Override
+    public Mono<List<byte[]>> generateImages(List<String> prompts, String quality) {
+        String model = "high".equalsIgnoreCase(quality) ? highModel : standardModel;
+        // maxBatchSize is 1, but stay correct if called with more
+        return Flux.fromIterable(prompts)
+                .concatMap(prompt -> predict(model, prompt))
+                .collectList();
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return 1;
+    }
+
+    private Mono<byte[]> predict(String model, String prompt) {
+        return resilience.callPerRequest(model, lease -> Mono.defer(() -> {
+            if (apiKey == null || apiKey.isBlank()) {
+                return Mono.error(new IllegalStateException("GEMINI_API_KEY environment variable is not set."));
+            }
+            Map<String, Object> body = Map.of(
+                    "instances", List.of(Map.of("prompt", prompt)),
+                    "parameters", Map.of("sampleCount", 1, "aspectRatio", aspectRatio));
+
+            return webClient.post()
+                    .uri(uriBuilder -> uriBuilder.path("/models/{model}:predict").queryParam("key", apiKey).build(model))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromValue(body))
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .timeout(timeout)
+                    .doOnNext(json -> lease.complete(0))
+                    .doOnError(lease::fail);
+        })).handle((json, sink) -> {
+            String image = json.path("predictions").path(0).path("bytesBase64Encoded").asText(null);
+            if (image == null || image.isEmpty()) {
+                // Prompts blocked by the safety filter come back without predictions
+                sink.error(new RuntimeException("Image model returned no image"));
+                return;
+            }
+            sink.next(Base64.getDecoder().decode(image));
+        });
+    }
+}
@@ -0,0 +1,358 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.ai.dto.StoryBranchResponse;
+import com.arbu.childstoryapp.ai.dto.StoryChoiceResponse;
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.InteractiveStoryChoice;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.repository.ChildProfileRepository;
+import com.arbu.childstoryapp.repository.InteractiveStoryChoiceRepository;
+import com.arbu.childstoryapp.repository.StoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Interactive ("Choose Your Own Adventure") stories for DreamTales AI v3.0
+ * Only the opening is generated with the story; it stops at the first choice point. A branch
+ * is written when a child picks it and stored on its {@link InteractiveStoryChoice}, so picking
+ * it again (or going back and re-reading) costs nothing. After a pick, the options not taken
+ * at that point are generated in the background, one at a time and only while admission control
+ * has idle capacity, so switching branches is usually instant too; a pick
+ * that arrives while its branch is still being prefetched joins that generation.
+ */
+@Service
+public class InteractiveStoryService {
+    private static final Logger log = LoggerFactory.getLogger(InteractiveStoryService.class);
+
+    private static final List<String> OPTIONS = List.of("A", "B", "C");
+
+    private final InteractiveStoryChoiceRepository choiceRepo;
+    private final StoryRepository storyRepo;
+    private final ChildProfileRepository childRepo;
+    private final GeminiAiService geminiAiService;
+    private final ImageService imageService;
+    private final AdmissionControl admissionControl;
+    private final Scheduler persistenceScheduler;
+
+    /** Branch generations in progress, by choice id and option */
+    private final Map<String, Mono<StoryBranchResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final boolean prefetchSiblings;
+    private final Duration imageTimeout;
+
+    private final Counter branchHits;
+    private final Counter branchMisses;
+    private final Counter prefetches;
+    private final Timer branchTimer;
+
+    public InteractiveStoryService(InteractiveStoryChoiceRepository choiceRepo,
+                                   StoryRepository storyRepo,
+                                   ChildProfileRepository childRepo,
+                                   GeminiAiService geminiAiService,
+                                   ImageService imageService,
+                                   AdmissionControl admissionControl,
+                                   MeterRegistry meterRegistry,
+                                   @Qualifier("aiTaskExecutor") Executor executor,
+                                   @Value("${ai.interactive.prefetchSiblings:true}") boolean prefetchSiblings,
+                                   @Value("${ai.pipeline.images.timeoutMs:30000}") long imageTimeoutMs) {
+        this.choiceRepo = choiceRepo;
+        this.storyRepo = storyRepo;
+        this.childRepo = childRepo;
+        this.geminiAiService = geminiAiService;
+        this.imageService = imageService;
+        this.admissionControl = admissionControl;
+        this.persistenceScheduler = Schedulers.fromExecutor(executor);
+        this.prefetchSiblings = prefetchSiblings;
+        this.imageTimeout = Duration.ofMillis(imageTimeoutMs);
+
+        this.branchHits = Counter.builder("ai.interactive.branch.requests").tag("result", "hit").register(meterRegistry);
+        this.branchMisses = Counter.builder("ai.interactive.branch.requests").tag("result", "miss").register(meterRegistry);
+        this.prefetches = Counter.builder("ai.interactive.branch.prefetched").register(meterRegistry);
+        this.branchTimer = Timer.builder("ai.interactive.branch.generate")
+                .description("Time to write and illustrate one story branch")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Stores the first choice point of a freshly saved interactive story
+     */
+    public StoryChoiceResponse saveOpening(Story story, StructuredStory opening) {
+        return StoryChoiceResponse.fromEntity(saveChoice(story, "", opening));
+    }
+
+    /**
+     * Choice points generated so far, in order (several per level once more than one path was read)
+     */
+    public List<StoryChoiceResponse> getChoices(Long userId, Long storyId) {
+        requireStory(userId, storyId);
+        return choiceRepo.findByStory_IdOrderByChoicePointAsc(storyId).stream()
+                .map(StoryChoiceResponse::fromEntity)
+                .toList();
+    }
+
+    /**
+     * Records the pick and returns its branch: from the choice point when it was written before,
+     * otherwise generated now (behind admission control, like a story). The other options at
+     * this point are then prefetched.
+     */
+    public Mono<StoryBranchResponse> choose(UserAccount user, Long storyId, Long choiceId, String option) {
+        String picked = option.toUpperCase(Locale.ROOT);
+        return Mono.fromCallable(() -> {
+                    Story story = requireStory(user.getId(), storyId);
+                    InteractiveStoryChoice choice = choiceRepo.findByIdAndStory_Id(choiceId, storyId)
+                            .orElseThrow(() -> new IllegalArgumentException("Choice not found"));
+                    if (optionText(choice, picked) == null) {
+                        throw new IllegalArgumentException("Choice has no option " + picked);
+                    }
+                    choiceRepo.select(choiceId, picked, Instant.now());
+                    return new Context(story, choice);
+                })
+                .subscribeOn(persistenceScheduler)
+                .flatMap(context -> {
+                    if (continuation(context.choice, picked) != null) {
+                        branchHits.increment();
+                        return Mono.fromCallable(() -> storedBranch(context, picked)).subscribeOn(persistenceScheduler);
+                    }
+                    branchMisses.increment();
+                    return admissionControl.admit(user, () -> branch(context, picked));
+                })
+                .doOnSuccess(branch -> prefetchSiblings(user.getId(), storyId, choiceId, picked));
+    }
+
+    /**
+     * Background generation of the options not taken, each only if admission control has idle
+     * capacity (skipped at busy times, never queued ahead of story requests)
+     */
+    private void prefetchSiblings(Long userId, Long storyId, Long choiceId, String picked) {
+        if (!prefetchSiblings) {
+            return;
+        }
+        // Reload so branches stored since the pick was read are not generated twice
+        Mono.fromCallable(() -> {
+                    Story story = storyRepo.findById(storyId).orElseThrow();
+                    InteractiveStoryChoice choice = choiceRepo.findById(choiceId).orElseThrow();
+                    return new Context(story, choice);
+                })
+                .subscribeOn(persistenceScheduler)
+                .flatMapMany(context -> Flux.fromIterable(OPTIONS)
+                        .filter(option -> !option.equals(picked))
+                        .filter(option -> optionText(context.choice, option) != null
+                                && continuation(context.choice, option) == null)
+                        .concatMap(option -> admissionControl.admitIfIdle(userId, () -> {
+                            prefetches.increment();
+                            return branch(context, option).flux();
+                        })))
+                .subscribe(branch -> log.debug("Prefetched branch {} of choice {}", branch.getOption(), choiceId),
+                        e -> log.warn("Failed to prefetch branches of choice {}: {}", choiceId, e.getMessage()));
+    }
+
+    /**
+     * Generates a branch, or joins the generation already running for it
+     */
+    private Mono<StoryBranchResponse> branch(Context context, String option) {
+        String key = context.choice.getId() + ":" + option;
+        return inFlight.computeIfAbsent(key, k -> generate(context, option)
+                .doFinally(signal -> inFlight.remove(k))
+                .cache());
+    }
+
+    private Mono<StoryBranchResponse> generate(Context context, String option) {
+        InteractiveStoryChoice choice = context.choice;
+        boolean ending = choice.getChoicePoint() >= PromptCompiler.CHOICE_POINTS;
+        long started = System.nanoTime();
+        return Mono.fromCallable(() -> storySoFar(context))
+                .subscribeOn(persistenceScheduler)
+                .flatMap(soFar -> geminiAiService.generateBranchAsync(soFar.child, context.story.getMode(),
+                        soFar.text, choice.getPrompt(), optionText(choice, option), ending))
+                .flatMap(generated -> illustrate(generated)
+                        .publishOn(persistenceScheduler)
+                        .map(imageUrl -> {
+                            branchTimer.record(Duration.ofNanos(System.nanoTime() - started));
+                            return store(context, option, generated, imageUrl.orElse(null), ending);
+                        }));
+    }
+
+    /**
+     * One image for the branch; the branch is still served without it if rendering fails
+     */
+    private Mono<Optional<String>> illustrate(StructuredStory branch) {
+        if (branch.getSceneDescriptions().isEmpty()) {
+            return Mono.just(Optional.empty());
+        }
+        return imageService.render(branch.getSceneDescriptions().subList(0, 1), "standard")
+                .timeout(imageTimeout)
+                .map(urls -> urls.isEmpty() ? Optional.<String>empty() : Optional.of(urls.get(0)))
+                .onErrorResume(e -> {
+                    log.warn("Failed to illustrate story branch: {}", e.getMessage());
+                    return Mono.just(Optional.empty());
+                });
+    }
+
+    private StoryBranchResponse store(Context context, String option, StructuredStory generated,
+                                      String imageUrl, boolean ending) {
+        InteractiveStoryChoice choice = context.choice;
+        String text = generated.getContent();
+        choiceRepo.storeContinuation(choice.getId(), option, text, imageUrl);
+
+        StoryBranchResponse response = branchResponse(choice, option, text, imageUrl);
+        if (!ending && generated.hasChoice()) {
+            InteractiveStoryChoice next = saveChoice(context.story, choice.getBranchPath() + option, generated);
+            response.setNextChoice(StoryChoiceResponse.fromEntity(next));
+        } else {
+            response.setEnding(true);
+        }
+        return response;
+    }
+
+    private StoryBranchResponse storedBranch(Context context, String option) {
+        InteractiveStoryChoice choice = context.choice;
+        StoryBranchResponse response = branchResponse(choice, option, continuation(choice, option), imageUrl(choice, option));
+        Optional<InteractiveStoryChoice> next = choiceRepo.findByStory_IdAndBranchPath(context.story.getId(),
+                choice.getBranchPath() + option);
+        next.ifPresentOrElse(n -> response.setNextChoice(StoryChoiceResponse.fromEntity(n)),
+                () -> response.setEnding(true));
+        return response;
+    }
+
+    private StoryBranchResponse branchResponse(InteractiveStoryChoice choice, String option, String text, String imageUrl) {
+        StoryBranchResponse response = new StoryBranchResponse();
+        response.setChoiceId(choice.getId());
+        response.setOption(option);
+        response.setContinuation(text);
+        response.setImageUrl(imageUrl);
+        return response;
+    }
+
+    /**
+     * Inserts the choice point at the end of a branch path. Another instance may have stored the
+     * same branch concurrently; then its row is used.
+     */
+    private InteractiveStoryChoice saveChoice(Story story, String branchPath, StructuredStory segment) {
+        List<String> options = segment.getChoiceOptions();
+        InteractiveStoryChoice choice = new InteractiveStoryChoice();
+        choice.setStory(story);
+        choice.setBranchPath(branchPath);
+        choice.setChoicePoint(branchPath.length() + 1);
+        choice.setPrompt(segment.getChoicePrompt());
+        choice.setOptionA(truncate(options.get(0)));
+        choice.setOptionB(truncate(options.get(1)));
+        if (options.size() > 2) {
+            choice.setOptionC(truncate(options.get(2)));
+        }
+        choice.setCreatedAt(Instant.now());
+        try {
+            return choiceRepo.save(choice);
+        } catch (DataIntegrityViolationException e) {
+            return choiceRepo.findByStory_IdAndBranchPath(story.getId(), branchPath).orElseThrow(() -> e);
+        }
+    }
+
+    /**
+     * The opening followed by the continuations along the choice point's branch path
+     */
+    private StorySoFar storySoFar(Context context) {
+        Story story = context.story;
+        if (story.getChild() == null) {
+            throw new IllegalStateException("Interactive story " + story.getId() + " has no child profile");
+        }
+        ChildProfile child = childRepo.findById(story.getChild().getId())
+                .orElseThrow(() -> new IllegalStateException("Child profile of story " + story.getId() + " not found"));
+
+        Map<String, InteractiveStoryChoice> byPath = new HashMap<>();
+        for (InteractiveStoryChoice choice : choiceRepo.findByStory_IdOrderByChoicePointAsc(story.getId())) {
+            byPath.put(choice.getBranchPath(), choice);
+        }
+        StringBuilder text = new StringBuilder(story.getContent());
+        String path = context.choice.getBranchPath();
+        for (int i = 0; i < path.length(); i++) {
+            InteractiveStoryChoice passed = byPath.get(path.substring(0, i));
+            String option = path.substring(i, i + 1);
+            if (passed != null && continuation(passed, option) != null) {
+                text.append("\n\n").append(continuation(passed, option));
+            }
+        }
+        return new StorySoFar(child, text.toString());
+    }
+
+    private Story requireStory(Long userId, Long storyId) {
+        Story story = storyRepo.findByIdAndUser_Id(storyId, userId)
+                .orElseThrow(() -> new IllegalArgumentException("Story not found"));
+        if (!Boolean.TRUE.equals(story.getIsInteractive())) {
+            throw new IllegalArgumentException("Story is not interactive");
+        }
+        return story;
+    }
+
+    private static String optionText(InteractiveStoryChoice choice, String option) {
+        return switch (option) {
+            case "A" -> choice.getOptionA();
+            case "B" -> choice.getOptionB();
+            case "C" -> choice.getOptionC();
+            default -> null;
+        };
+    }
+
+    private static String continuation(InteractiveStoryChoice choice, String option) {
+        return switch (option) {
+            case "A" -> choice.getContinuationA();
+            case "B" -> choice.getContinuationB();
+            case "C" -> choice.getContinuationC();
+            default -> null;
+        };
+    }
+
+    private static String imageUrl(InteractiveStoryChoice choice, String option) {
+        return switch (option) {
+            case "A" -> choice.getImageUrlA();
+            case "B" -> choice.getImageUrlB();
+            case "C" -> choice.getImageUrlC();
+            default -> null;
+        };
+    }
+
+    private static String truncate(String option) {
+        return option.length() > 200 ? option.substring(0, 200) : option;
+    }
+
+    private static final class Context {
+        private final Story story;
+        private final InteractiveStoryChoice choice;
+
+        private Context(Story story, InteractiveStoryChoice choice) {
+            this.story = story;
+            this.choice = choice;
+        }
+    }
+
+    private static final class StorySoFar {
+        private final ChildProfile child;
+        private final String text;
+
+        private StorySoFar(ChildProfile child, String text) {
+            this.child = child;
+            this.text = text;
+        }
+    }
+}
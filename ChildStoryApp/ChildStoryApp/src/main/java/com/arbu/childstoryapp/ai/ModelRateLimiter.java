@@ -0,0 +1,272 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.common.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Client-side quota limiter for model calls in DreamTales AI v3.0
+ * Keeps a requests-per-minute and a tokens-per-minute token bucket per model, seeded from
+ * ai.ratelimit.* (with per-model overrides). Each call reserves one request and its estimated
+ * prompt + output tokens; when a bucket is short the call waits locally instead of being sent
+ * and rejected upstream. The estimate is corrected with the usage the model reports.
+ * Limits adapt AIMD-style: a 429 halves the effective rate, each success restores a little of it.
+ */
+@Component
+public class ModelRateLimiter {
+    private static final Logger log = LoggerFactory.getLogger(ModelRateLimiter.class);
+
+    /** Minimum time between two rate decreases, so a burst of 429s counts as one signal */
+    private static final long DECREASE_INTERVAL_NANOS = Duration.ofSeconds(2).toNanos();
+
+    private final Environment environment;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+    private final boolean enabled;
+    private final int defaultRpm;
+    private final int defaultTpm;
+    private final int expectedOutputTokens;
+    private final Duration maxWait;
+    private final double minRateFactor;
+    private final double recoveryStep;
+    /** Source of System.nanoTime-style timestamps for the buckets */
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public ModelRateLimiter(Environment environment,
+                            MeterRegistry meterRegistry,
+                            @Value("${ai.ratelimit.enabled:true}") boolean enabled,
+                            @Value("${ai.ratelimit.default.rpm:60}") int defaultRpm,
+                            @Value("${ai.ratelimit.default.tpm:250000}") int defaultTpm,
+                            @Value("${ai.ratelimit.expectedOutputTokens:800}") int expectedOutputTokens,
+                            @Value("${ai.ratelimit.maxWait:PT10S}") Duration maxWait,
+                            @Value("${ai.ratelimit.minRateFactor:0.1}") double minRateFactor,
+                            @Value("${ai.ratelimit.recoveryStep:0.02}") double recoveryStep) {
+        this(environment, meterRegistry, enabled, defaultRpm, defaultTpm, expectedOutputTokens, maxWait,
+                minRateFactor, recoveryStep, System::nanoTime);
+    }
+
+    /**
+     * Test constructor with a controllable clock
+     */
+    ModelRateLimiter(Environment environment, MeterRegistry meterRegistry, boolean enabled, int defaultRpm,
+                     int defaultTpm, int expectedOutputTokens, Duration maxWait, double minRateFactor,
+                     double recoveryStep, LongSupplier nanoClock) {
+        this.environment = environment;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.defaultRpm = defaultRpm;
+        this.defaultTpm = defaultTpm;
+        this.expectedOutputTokens = expectedOutputTokens;
+        this.maxWait = maxWait;
+        this.minRateFactor = minRateFactor;
+        this.recoveryStep = recoveryStep;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Reserves quota for one call and completes once the call may be sent.
+     * Fails with {@link UpstreamUnavailableException} when the wait would exceed ai.ratelimit.maxWait.
+     *
+     * @param promptTokens Estimated prompt tokens; expected output tokens are added
+     */
+    public Mono<Lease> acquire(String model, int promptTokens) {
+        return reserve(model, promptTokens + expectedOutputTokens);
+    }
+
+    /**
+     * Like {@link #acquire}, but reserves only one request and no tokens, for per-request
+     * quotas such as image generation
+     */
+    public Mono<Lease> acquireRequest(String model) {
+        return reserve(model, 0);
+    }
+
+    private Mono<Lease> reserve(String model, int tokens) {
+        if (!enabled) {
+            return Mono.just(Lease.NONE);
+        }
+        return Mono.defer(() -> {
+            Bucket bucket = bucket(model);
+            long waitNanos = bucket.reserve(tokens);
+            if (waitNanos > maxWait.toNanos()) {
+                bucket.refund(tokens);
+                bucket.rejected.increment();
+                long retryAfter = Math.max(1, Duration.ofNanos(waitNanos).toSeconds());
+                return Mono.error(new UpstreamUnavailableException(
+                        "Rate limit for model " + model + " reached", retryAfter));
+            }
+            bucket.waits.record(Duration.ofNanos(waitNanos));
+            Lease lease = new Lease(bucket, tokens);
+            return waitNanos == 0 ? Mono.just(lease) : Mono.delay(Duration.ofNanos(waitNanos)).thenReturn(lease);
+        });
+    }
+
+    private Bucket bucket(String model) {
+        return buckets.computeIfAbsent(model, this::newBucket);
+    }
+
+    private Bucket newBucket(String model) {
+        // Keys are literal, e.g. ai.ratelimit.models.gemini-2.5-pro.rpm
+        int rpm = environment.getProperty("ai.ratelimit.models." + model + ".rpm", Integer.class, defaultRpm);
+        int tpm = environment.getProperty("ai.ratelimit.models." + model + ".tpm", Integer.class, defaultTpm);
+        Bucket bucket = new Bucket(model, rpm, tpm,
+                Counter.builder("ai.ratelimit.throttled").tag("model", model).register(meterRegistry),
+                Counter.builder("ai.ratelimit.rejected").tag("model", model).register(meterRegistry),
+                Timer.builder("ai.ratelimit.wait").tag("model", model).register(meterRegistry));
+        Gauge.builder("ai.ratelimit.rate.factor", bucket, Bucket::getRateFactor)
+                .description("Share of the configured RPM/TPM currently used (lowered after 429s)")
+                .tag("model", model)
+                .register(meterRegistry);
+        log.info("Rate limits for model {}: {} requests/min, {} tokens/min", model, rpm, tpm);
+        return bucket;
+    }
+
+    /**
+     * Quota reserved for one call. Report the outcome with {@link #complete} or {@link #fail}.
+     */
+    public static class Lease {
+        static final Lease NONE = new Lease(null, 0);
+
+        private final Bucket bucket;
+        private final int reservedTokens;
+        private boolean settled;
+
+        private Lease(Bucket bucket, int reservedTokens) {
+            this.bucket = bucket;
+            this.reservedTokens = reservedTokens;
+        }
+
+        /**
+         * The call succeeded; {@code usedTokens} is the model-reported total (0 if unknown)
+         */
+        public synchronized void complete(int usedTokens) {
+            if (bucket == null || settled) {
+                return;
+            }
+            settled = true;
+            bucket.onSuccess(usedTokens > 0 ? usedTokens - reservedTokens : 0);
+        }
+
+        /**
+         * The call was never sent (rejected before it started): give the reserved quota back
+         */
+        public synchronized void cancel() {
+            if (bucket == null || settled) {
+                return;
+            }
+            settled = true;
+            bucket.refund(reservedTokens);
+        }
+
+        public synchronized void fail(Throwable e) {
+            if (bucket == null || settled) {
+                return;
+            }
+            settled = true;
+            if (e instanceof WebClientResponseException response && response.getStatusCode().value() == 429) {
+                bucket.onThrottled();
+            }
+        }
+    }
+
+    private final class Bucket {
+        private final String model;
+        private final double requestsPerMinute;
+        private final double tokensPerMinute;
+        private final Counter throttled;
+        private final Counter rejected;
+        private final Timer waits;
+
+        private double requests;
+        private double tokens;
+        private double rateFactor = 1.0;
+        private long refilledAt = nanoClock.getAsLong();
+        private long decreasedAt = refilledAt - DECREASE_INTERVAL_NANOS;
+
+        private Bucket(String model, int rpm, int tpm, Counter throttled, Counter rejected, Timer waits) {
+            this.model = model;
+            this.requestsPerMinute = rpm;
+            this.tokensPerMinute = tpm;
+            this.throttled = throttled;
+            this.rejected = rejected;
+            this.waits = waits;
+            this.requests = rpm;
+            this.tokens = tpm;
+        }
+
+        /**
+         * Takes the quota now (possibly going into debt) and returns how long the caller must
+         * wait for the debt to be repaid. Later callers queue behind earlier ones.
+         */
+        private synchronized long reserve(int callTokens) {
+            refill();
+            requests -= 1;
+            tokens -= Math.min(callTokens, tokensPerMinute * rateFactor);
+            double requestWait = requests < 0 ? -requests / (requestsPerMinute * rateFactor) : 0;
+            double tokenWait = tokens < 0 ? -tokens / (tokensPerMinute * rateFactor) : 0;
+            return (long) (Math.max(requestWait, tokenWait) * 60e9);
+        }
+
+        private synchronized void refund(int callTokens) {
+            requests += 1;
+            tokens += Math.min(callTokens, tokensPerMinute * rateFactor);
+        }
+
+        /**
+         * Success: charge (or credit) the difference between actual and reserved tokens, and
+         * step the rate back up towards the configured limit
+         */
+        private synchronized void onSuccess(int tokenCorrection) {
+            refill();
+            tokens -= tokenCorrection;
+            rateFactor = Math.min(1.0, rateFactor + recoveryStep);
+        }
+
+        /**
+         * Upstream said 429: halve the rate and drop any burst allowance
+         */
+        private synchronized void onThrottled() {
+            throttled.increment();
+            long now = nanoClock.getAsLong();
+            if (now - decreasedAt < DECREASE_INTERVAL_NANOS) {
+                return;
+            }
+            refill();
+            decreasedAt = now;
+            rateFactor = Math.max(minRateFactor, rateFactor / 2);
+            requests = Math.min(requests, 0);
+            tokens = Math.min(tokens, 0);
+            log.warn("Model {} returned 429; local rate lowered to {}% of configured limits",
+                    model, Math.round(rateFactor * 100));
+        }
+
+        private void refill() {
+            long now = nanoClock.getAsLong();
+            double minutes = (now - refilledAt) / 60e9;
+            refilledAt = now;
+            requests = Math.min(requestsPerMinute * rateFactor, requests + minutes * requestsPerMinute * rateFactor);
+            tokens = Math.min(tokensPerMinute * rateFactor, tokens + minutes * tokensPerMinute * rateFactor);
+        }
+
+        private synchronized double getRateFactor() {
+            return rateFactor;
+        }
+    }
+}
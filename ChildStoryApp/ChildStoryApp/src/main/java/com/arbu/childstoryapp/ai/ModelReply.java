@@ -0,0 +1,20 @@
+package com.arbu.childstoryapp.ai;
+
+/**
+ * Text returned by a model call together with the model that actually produced it
+ * (which may be a fallback rather than the routed primary).
+ * For streamed calls each chunk is a reply carrying part of the text.
+ */
+public class ModelReply {
+    private final String text;
+    private final String model;
+
+    public ModelReply(String text, String model) {
+        this.text = text;
+        this.model = model;
+    }
+
+    public String getText() { return text; }
+
+    public String getModel() { return model; }
+}
@@ -0,0 +1,345 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.common.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Resilience layer for model calls in DreamTales AI v3.0
+ * Every call is guarded per model by a bulkhead (cap on in-flight calls) and a circuit breaker,
+ * and transient upstream failures (429, 5xx, timeouts, connection errors) are retried with
+ * full-jitter exponential backoff, honouring Retry-After. When retries are exhausted, the breaker
+ * is open or the bulkhead is full, callers get {@link UpstreamUnavailableException} (503).
+ * Rate-limited calls wait for {@link ModelRateLimiter} quota before each attempt takes its
+ * bulkhead permit and breaker permission, so a call queued for quota holds neither.
+ * A call and all its retries share one deadline ({@code totalTimeout}); no retry is started
+ * unless at least {@code minAttemptTime} of it is left after the backoff.
+ */
+@Component
+public class ModelResilience {
+    private static final Logger log = LoggerFactory.getLogger(ModelResilience.class);
+
+    private final MeterRegistry meterRegistry;
+    private final ModelRateLimiter rateLimiter;
+    private final Map<String, Guard> guards = new ConcurrentHashMap<>();
+
+    private final int maxRetries;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration totalTimeout;
+    private final Duration minAttemptTime;
+    private final int maxConcurrentCalls;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration openDuration;
+    /** Source of System.nanoTime-style timestamps for deadlines and circuit breakers */
+    private final LongSupplier nanoClock;
+
+    @Autowired
+    public ModelResilience(MeterRegistry meterRegistry,
+                           ModelRateLimiter rateLimiter,
+                           @Value("${ai.resilience.retry.maxRetries:3}") int maxRetries,
+                           @Value("${ai.resilience.retry.initialBackoff:PT0.5S}") Duration initialBackoff,
+                           @Value("${ai.resilience.retry.maxBackoff:PT8S}") Duration maxBackoff,
+                           @Value("${ai.resilience.totalTimeout:PT60S}") Duration totalTimeout,
+                           @Value("${ai.resilience.retry.minAttemptTime:PT15S}") Duration minAttemptTime,
+                           @Value("${ai.resilience.bulkhead.maxConcurrentCalls:20}") int maxConcurrentCalls,
+                           @Value("${ai.resilience.circuit.windowSize:20}") int windowSize,
+                           @Value("${ai.resilience.circuit.minimumCalls:10}") int minimumCalls,
+                           @Value("${ai.resilience.circuit.failureRateThreshold:0.5}") double failureRateThreshold,
+                           @Value("${ai.resilience.circuit.openDuration:PT30S}") Duration openDuration) {
+        this(meterRegistry, rateLimiter, maxRetries, initialBackoff, maxBackoff, totalTimeout, minAttemptTime,
+                maxConcurrentCalls, windowSize, minimumCalls, failureRateThreshold, openDuration, System::nanoTime);
+    }
+
+    /**
+     * Test constructor with a controllable clock
+     */
+    ModelResilience(MeterRegistry meterRegistry, ModelRateLimiter rateLimiter, int maxRetries, Duration initialBackoff,
+                    Duration maxBackoff, Duration totalTimeout, Duration minAttemptTime, int maxConcurrentCalls,
+                    int windowSize, int minimumCalls, double failureRateThreshold, Duration openDuration,
+                    LongSupplier nanoClock) {
+        this.meterRegistry = meterRegistry;
+        this.rateLimiter = rateLimiter;
+        this.maxRetries = maxRetries;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.totalTimeout = totalTimeout;
+        this.minAttemptTime = minAttemptTime;
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDuration = openDuration;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs an idempotent single-response call through bulkhead, circuit breaker and retry
+     */
+    public <T> Mono<T> call(String model, Supplier<Mono<T>> call) {
+        return guardedCall(model, () -> Mono.just(ModelRateLimiter.Lease.NONE), lease -> call.get());
+    }
+
+    /**
+     * {@link #call(String, Supplier)} with RPM/TPM quota: every attempt (retries included) first
+     * waits for quota for {@code promptTokens}, then is admitted. The lease is passed to the call
+     * to be settled with the reported usage; it is refunded if the attempt is rejected before sending.
+     */
+    public <T> Mono<T> call(String model, int promptTokens, Function<ModelRateLimiter.Lease, Mono<T>> call) {
+        return guardedCall(model, () -> rateLimiter.acquire(model, promptTokens), call);
+    }
+
+    /**
+     * {@link #call(String, int, Function)} for models with a per-request quota (RPM only), such as
+     * image generation: each attempt waits for one request of quota and reserves no tokens
+     */
+    public <T> Mono<T> callPerRequest(String model, Function<ModelRateLimiter.Lease, Mono<T>> call) {
+        return guardedCall(model, () -> rateLimiter.acquireRequest(model), call);
+    }
+
+    /**
+     * Streaming counterpart of {@link #call(String, int, Function)}. A failed stream is only retried
+     * while it has not emitted anything, so clients never see duplicated chunks.
+     */
+    public <T> Flux<T> stream(String model, int promptTokens, Function<ModelRateLimiter.Lease, Flux<T>> call) {
+        Guard guard = guard(model);
+        return Flux.defer(() -> {
+            AtomicBoolean emitted = new AtomicBoolean();
+            long deadline = nanoClock.getAsLong() + totalTimeout.toNanos();
+            return Flux.defer(() -> rateLimiter.acquire(model, promptTokens)
+                            .flatMapMany(lease -> {
+                                UpstreamUnavailableException rejection = admit(guard, model, lease);
+                                if (rejection != null) {
+                                    return Flux.error(rejection);
+                                }
+                                return call.apply(lease)
+                                        .doOnNext(item -> emitted.set(true))
+                                        .doOnComplete(guard.breaker::onSuccess)
+                                        .doOnError(guard::onError)
+                                        .doFinally(signal -> guard.release(signal));
+                            }))
+                    .retryWhen(retrySpec(model, guard, () -> !emitted.get(), deadline))
+                    // The deadline applies until the first chunk; a stream that is flowing is not cut off
+                    .timeout(Mono.delay(totalTimeout), item -> Mono.never())
+                    .onErrorMap(TimeoutException.class, e -> deadlineExceeded(model))
+                    .onErrorMap(e -> translate(model, e));
+        });
+    }
+
+    private <T> Mono<T> guardedCall(String model, Supplier<Mono<ModelRateLimiter.Lease>> quota,
+                                    Function<ModelRateLimiter.Lease, Mono<T>> call) {
+        Guard guard = guard(model);
+        return Mono.defer(() -> {
+            long deadline = nanoClock.getAsLong() + totalTimeout.toNanos();
+            return Mono.defer(() -> quota.get()
+                            .flatMap(lease -> {
+                                UpstreamUnavailableException rejection = admit(guard, model, lease);
+                                if (rejection != null) {
+                                    return Mono.<T>error(rejection);
+                                }
+                                return call.apply(lease)
+                                        .doOnSuccess(value -> guard.breaker.onSuccess())
+                                        .doOnError(guard::onError)
+                                        .doFinally(signal -> guard.release(signal));
+                            }))
+                    .retryWhen(retrySpec(model, guard, () -> true, deadline))
+                    .timeout(totalTimeout, Mono.error(() -> deadlineExceeded(model)))
+                    .onErrorMap(e -> translate(model, e));
+        });
+    }
+
+    private UpstreamUnavailableException deadlineExceeded(String model) {
+        return new UpstreamUnavailableException("Model " + model + " did not answer within "
+                + totalTimeout.toSeconds() + "s", 5);
+    }
+
+    /**
+     * Takes the bulkhead permit and breaker permission once quota is held; on rejection the
+     * quota is refunded and the rejection returned (nothing is sent)
+     */
+    private static UpstreamUnavailableException admit(Guard guard, String model, ModelRateLimiter.Lease lease) {
+        try {
+            guard.admit(model);
+            return null;
+        } catch (UpstreamUnavailableException e) {
+            lease.cancel();
+            return e;
+        }
+    }
+
+    /**
+     * @param deadline nanoClock time by which the whole call must be done
+     */
+    private Retry retrySpec(String model, Guard guard, Supplier<Boolean> canRetry, long deadline) {
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            Throwable failure = signal.failure();
+            long attempt = signal.totalRetries();
+            if (attempt >= maxRetries || !isTransient(failure) || !canRetry.get()) {
+                return Mono.error(failure);
+            }
+            Duration delay = retryAfter(failure);
+            if (delay == null) {
+                // Full jitter: uniform in [0, min(max, initial * 2^attempt)]
+                long ceiling = Math.min(maxBackoff.toMillis(), initialBackoff.toMillis() << Math.min(attempt, 20));
+                delay = Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            } else if (delay.compareTo(maxBackoff) > 0) {
+                // Upstream asked us to wait longer than we are willing to hold the request
+                return Mono.error(failure);
+            }
+            if (deadline - nanoClock.getAsLong() < delay.toNanos() + minAttemptTime.toNanos()) {
+                // Not enough of the call's time budget left for another attempt
+                return Mono.error(failure);
+            }
+            guard.retries.increment();
+            log.debug("Retrying {} call in {} ms after: {}", model, delay.toMillis(), failure.getMessage());
+            return Mono.delay(delay);
+        }));
+    }
+
+    private Throwable translate(String model, Throwable e) {
+        if (e instanceof UpstreamUnavailableException) {
+            return e;
+        }
+        if (isTransient(e)) {
+            Duration retryAfter = retryAfter(e);
+            long seconds = retryAfter != null ? Math.max(1, retryAfter.toSeconds()) : 5;
+            return new UpstreamUnavailableException(
+                    "Model " + model + " is temporarily unavailable: " + e.getMessage(), seconds, e);
+        }
+        return e;
+    }
+
+    /**
+     * Failures worth retrying and counting against the upstream's health
+     */
+    static boolean isTransient(Throwable e) {
+        if (e instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 429 || status == 500 || status == 502 || status == 503 || status == 504;
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+
+    /**
+     * Delay requested by the upstream's Retry-After header (seconds or HTTP date), if any
+     */
+    static Duration retryAfter(Throwable e) {
+        if (!(e instanceof WebClientResponseException response)) {
+            return null;
+        }
+        String value = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim())));
+        } catch (NumberFormatException ignored) {
+            // Not delta-seconds; try HTTP-date
+        }
+        try {
+            Duration until = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+            return until.isNegative() ? Duration.ZERO : until;
+        } catch (DateTimeParseException ignored) {
+            return null;
+        }
+    }
+
+    private Guard guard(String model) {
+        return guards.computeIfAbsent(model, this::newGuard);
+    }
+
+    private Guard newGuard(String model) {
+        Guard guard = new Guard(new Semaphore(maxConcurrentCalls),
+                new CircuitBreaker(windowSize, minimumCalls, failureRateThreshold, openDuration, nanoClock),
+                Counter.builder("ai.model.retries").tag("model", model).register(meterRegistry),
+                Counter.builder("ai.model.rejected").tag("model", model).tag("reason", "circuit_open").register(meterRegistry),
+                Counter.builder("ai.model.rejected").tag("model", model).tag("reason", "bulkhead_full").register(meterRegistry));
+        Gauge.builder("ai.model.circuit.state", guard.breaker, breaker -> breaker.getState().ordinal())
+                .description("0 = closed, 1 = open, 2 = half-open")
+                .tag("model", model)
+                .register(meterRegistry);
+        Gauge.builder("ai.model.bulkhead.available", guard.bulkhead, Semaphore::availablePermits)
+                .tag("model", model)
+                .register(meterRegistry);
+        return guard;
+    }
+
+    private static final class Guard {
+        private final Semaphore bulkhead;
+        private final CircuitBreaker breaker;
+        private final Counter retries;
+        private final Counter circuitRejections;
+        private final Counter bulkheadRejections;
+
+        private Guard(Semaphore bulkhead, CircuitBreaker breaker, Counter retries,
+                      Counter circuitRejections, Counter bulkheadRejections) {
+            this.bulkhead = bulkhead;
+            this.breaker = breaker;
+            this.retries = retries;
+            this.circuitRejections = circuitRejections;
+            this.bulkheadRejections = bulkheadRejections;
+        }
+
+        /**
+         * Takes a bulkhead permit and a breaker permission, or throws without calling upstream
+         */
+        private void admit(String model) {
+            if (!bulkhead.tryAcquire()) {
+                bulkheadRejections.increment();
+                throw new UpstreamUnavailableException("Too many concurrent requests to model " + model, 2);
+            }
+            if (!breaker.tryAcquirePermission()) {
+                bulkhead.release();
+                circuitRejections.increment();
+                throw new UpstreamUnavailableException("Model " + model + " is temporarily unavailable",
+                        Math.max(1, breaker.getRetryAfterSeconds()));
+            }
+        }
+
+        private void onError(Throwable e) {
+            if (isTransient(e)) {
+                breaker.onFailure();
+            } else {
+                // Client-side errors (bad request, missing key) say nothing about upstream health
+                breaker.onIgnored();
+            }
+        }
+
+        private void release(SignalType signal) {
+            if (signal == SignalType.CANCEL) {
+                breaker.onIgnored();
+            }
+            bulkhead.release();
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.ai.dto.GenerateStoryRequest;
+import com.arbu.childstoryapp.common.UpstreamUnavailableException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Picks the Gemini model for each kind of work in DreamTales AI v3.0
+ * Cheap or fast work (Quick mode stories, scene extraction) goes to a light model; Creative and
+ * high-quality stories go to a strong model. Each route has a latency budget after which, or on
+ * upstream unavailability, the call falls back to a secondary model.
+ */
+@Component
+public class ModelRouter {
+
+    public enum Tier { LIGHT, STRONG }
+
+    private final Route light;
+    private final Route strong;
+
+    public ModelRouter(@Value("${ai.gemini.model:gemini-2.5-flash}") String defaultModel,
+                       @Value("${ai.gemini.routing.enabled:true}") boolean enabled,
+                       @Value("${ai.gemini.routing.light.model:gemini-2.5-flash-lite}") String lightModel,
+                       @Value("${ai.gemini.routing.light.fallback:}") String lightFallback,
+                       @Value("${ai.gemini.routing.light.budget:PT15S}") Duration lightBudget,
+                       @Value("${ai.gemini.routing.strong.model:gemini-2.5-pro}") String strongModel,
+                       @Value("${ai.gemini.routing.strong.fallback:}") String strongFallback,
+                       @Value("${ai.gemini.routing.strong.budget:PT40S}") Duration strongBudget) {
+        if (enabled) {
+            this.light = new Route(Tier.LIGHT, lightModel, blankToNull(lightFallback), lightBudget);
+            this.strong = new Route(Tier.STRONG, strongModel, blankToNull(strongFallback), strongBudget);
+        } else {
+            // Single-model behaviour: everything goes to ai.gemini.model with no fallback
+            this.light = new Route(Tier.LIGHT, defaultModel, null, null);
+            this.strong = new Route(Tier.STRONG, defaultModel, null, null);
+        }
+    }
+
+    /**
+     * Route for the story text of a generation request
+     */
+    public Route forStory(GenerateStoryRequest request) {
+        boolean creative = "creative".equalsIgnoreCase(request.getMode()) && request.getCustomPrompt() != null;
+        boolean highQuality = "high".equalsIgnoreCase(request.getQuality());
+        return creative || highQuality ? strong : light;
+    }
+
+    /**
+     * Route for a branch of an interactive story; same tier as a story of that mode
+     */
+    public Route forBranch(String storyMode) {
+        return "creative".equalsIgnoreCase(storyMode) ? strong : light;
+    }
+
+    /**
+     * Route for scene extraction, which only restates an existing story
+     */
+    public Route forScenes() {
+        return light;
+    }
+
+    public Route route(Tier tier) {
+        return tier == Tier.STRONG ? strong : light;
+    }
+
+    /**
+     * Failures after which the fallback model is tried: the latency budget ran out or the
+     * primary is rate limited, failing or shedding load
+     */
+    public static boolean shouldFallBack(Throwable e) {
+        return e instanceof TimeoutException || e instanceof UpstreamUnavailableException;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    /**
+     * A primary model, an optional fallback and the primary's latency budget
+     */
+    public static final class Route {
+        private final Tier tier;
+        private final String primary;
+        private final String fallback;
+        private final Duration budget;
+
+        public Route(Tier tier, String primary, String fallback, Duration budget) {
+            this.tier = tier;
+            this.primary = primary;
+            this.fallback = fallback != null && !fallback.equals(primary) ? fallback : null;
+            this.budget = budget;
+        }
+
+        public Tier getTier() { return tier; }
+
+        public String getPrimary() { return primary; }
+
+        public String getFallback() { return fallback; }
+
+        public Duration getBudget() { return budget; }
+
+        public boolean hasFallback() { return fallback != null && budget != null; }
+    }
+}
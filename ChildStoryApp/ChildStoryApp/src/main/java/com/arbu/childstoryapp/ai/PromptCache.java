@@ -0,0 +1,325 @@
+package com.arbu.childstoryapp.ai;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Prompt-keyed response cache for DreamTales AI v3.0
+ * Entries are addressed by SHA-256(model + prompt). A size-bounded LRU tier lives in memory;
+ * an optional on-disk tier (one file per hash) survives restarts. Both tiers honour the TTL.
+ * Caching is opt-in per story mode so Creative mode always reaches the model.
+ */
+@Component
+public class PromptCache {
+    private static final Logger log = LoggerFactory.getLogger(PromptCache.class);
+
+    private final boolean enabled;
+    private final Set<String> cachedModes;
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Path diskDir;
+    private final int diskMaxEntries;
+    private final int diskPruneEvery;
+    /** Disk writes since the disk tier was last pruned */
+    private final AtomicInteger diskWrites = new AtomicInteger();
+
+    private final Map<String, Entry> memory;
+
+    private final Counter memoryHits;
+    private final Counter diskHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public PromptCache(@Value("${ai.cache.enabled:true}") boolean enabled,
+                       @Value("${ai.cache.modes:quick}") List<String> cachedModes,
+                       @Value("${ai.cache.ttl:PT24H}") Duration ttl,
+                       @Value("${ai.cache.maxEntries:500}") int maxEntries,
+                       @Value("${ai.cache.disk.dir:}") String diskDir,
+                       @Value("${ai.cache.disk.maxEntries:5000}") int diskMaxEntries,
+                       @Value("${ai.cache.disk.pruneEvery:100}") int diskPruneEvery,
+                       MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.cachedModes = cachedModes.stream()
+                .map(mode -> mode.trim().toLowerCase(Locale.ROOT))
+                .filter(mode -> !mode.isEmpty())
+                .collect(Collectors.toSet());
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.diskDir = diskDir == null || diskDir.isBlank() ? null : Paths.get(diskDir);
+        this.diskMaxEntries = diskMaxEntries;
+        this.diskPruneEvery = Math.max(1, diskPruneEvery);
+
+        this.memory = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > PromptCache.this.maxEntries) {
+                    PromptCache.this.evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        this.memoryHits = Counter.builder("ai.prompt.cache.requests")
+                .tag("result", "hit").tag("tier", "memory").register(meterRegistry);
+        this.diskHits = Counter.builder("ai.prompt.cache.requests")
+                .tag("result", "hit").tag("tier", "disk").register(meterRegistry);
+        this.misses = Counter.builder("ai.prompt.cache.requests")
+                .tag("result", "miss").tag("tier", "none").register(meterRegistry);
+        this.evictions = Counter.builder("ai.prompt.cache.evictions").register(meterRegistry);
+        Gauge.builder("ai.prompt.cache.size", this, PromptCache::size).register(meterRegistry);
+
+        if (this.diskDir != null) {
+            try {
+                Files.createDirectories(this.diskDir);
+            } catch (IOException e) {
+                throw new IllegalStateException("Cannot create prompt cache directory " + this.diskDir, e);
+            }
+        }
+    }
+
+    /**
+     * Whether responses for this story mode may be served from the cache.
+     * A missing mode means Quick, matching the prompt builder.
+     */
+    public boolean isEnabledFor(String mode) {
+        String normalized = mode == null || mode.isBlank() ? "quick" : mode.trim().toLowerCase(Locale.ROOT);
+        return enabled && cachedModes.contains(normalized);
+    }
+
+    /**
+     * Content address of a prompt sent to a model
+     */
+    public String key(String model, String prompt) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(model.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(prompt.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Returns the cached response for the key, or subscribes to the loader and caches its result.
+     * {@code toCached} extracts the text to store, or returns null when the value must not be
+     * cached; {@code fromCached} rebuilds a value from cached text. Errors are not cached.
+     */
+    public <T> Mono<T> getOrLoad(String key, Supplier<Mono<T>> loader,
+                                 Function<T, String> toCached, Function<String, T> fromCached) {
+        return lookup(key)
+                .map(fromCached)
+                .switchIfEmpty(Mono.defer(() -> {
+                    misses.increment();
+                    return loader.get().flatMap(value -> {
+                        String text = toCached.apply(value);
+                        return text == null ? Mono.just(value) : store(key, text).thenReturn(value);
+                    });
+                }));
+    }
+
+    /**
+     * Streaming counterpart of {@link #getOrLoad}: a hit is emitted as a single chunk, a miss
+     * streams from the loader and caches the concatenated chunks once the stream completes
+     * (unless {@code toCached} rejected any chunk).
+     */
+    public <T> Flux<T> getOrStream(String key, Supplier<Flux<T>> loader,
+                                   Function<T, String> toCached, Function<String, T> fromCached) {
+        return lookup(key).map(fromCached).flux()
+                .switchIfEmpty(Flux.defer(() -> {
+                    misses.increment();
+                    StringBuilder text = new StringBuilder();
+                    AtomicBoolean cacheable = new AtomicBoolean(true);
+                    return loader.get()
+                            .doOnNext(chunk -> {
+                                String chunkText = toCached.apply(chunk);
+                                if (chunkText == null) {
+                                    cacheable.set(false);
+                                } else {
+                                    text.append(chunkText);
+                                }
+                            })
+                            .concatWith(Mono.defer(() -> cacheable.get()
+                                    ? store(key, text.toString().trim())
+                                    : Mono.<Void>empty()).then(Mono.empty()));
+                }));
+    }
+
+    /**
+     * Looks the key up in memory first, then on disk. Disk hits are promoted to memory and keep
+     * the file's timestamp, so the TTL still counts from when the response was first stored.
+     */
+    public Mono<String> lookup(String key) {
+        return Mono.defer(() -> {
+            String cached = getFromMemory(key);
+            if (cached != null) {
+                memoryHits.increment();
+                return Mono.just(cached);
+            }
+            if (diskDir == null) {
+                return Mono.empty();
+            }
+            return Mono.fromCallable(() -> readFromDisk(key))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .doOnNext(entry -> {
+                        diskHits.increment();
+                        putInMemory(key, entry.value, entry.storedAt);
+                    })
+                    .map(entry -> entry.value);
+        });
+    }
+
+    /**
+     * Stores a response in both tiers
+     */
+    public Mono<Void> store(String key, String value) {
+        putInMemory(key, value, Instant.now());
+        if (diskDir == null) {
+            return Mono.empty();
+        }
+        return Mono.fromRunnable(() -> writeToDisk(key, value))
+                .subscribeOn(Schedulers.boundedElastic())
+                .then();
+    }
+
+    public int size() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private String getFromMemory(String key) {
+        synchronized (memory) {
+            Entry entry = memory.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (isExpired(entry.storedAt)) {
+                memory.remove(key);
+                evictions.increment();
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private void putInMemory(String key, String value, Instant storedAt) {
+        synchronized (memory) {
+            memory.put(key, new Entry(value, storedAt));
+        }
+    }
+
+    private Entry readFromDisk(String key) {
+        Path file = diskDir.resolve(key + ".txt");
+        try {
+            if (!Files.exists(file)) {
+                return null;
+            }
+            Instant storedAt = Files.getLastModifiedTime(file).toInstant();
+            if (isExpired(storedAt)) {
+                Files.deleteIfExists(file);
+                evictions.increment();
+                return null;
+            }
+            return new Entry(Files.readString(file, StandardCharsets.UTF_8), storedAt);
+        } catch (IOException e) {
+            log.warn("Failed to read prompt cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, String value) {
+        Path file = diskDir.resolve(key + ".txt");
+        try {
+            // Write then rename so readers never see a partial entry
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            Files.writeString(tmp, value, StandardCharsets.UTF_8);
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            // Listing the directory costs O(files), so it is only done every diskPruneEvery writes
+            if (diskWrites.incrementAndGet() >= diskPruneEvery) {
+                diskWrites.set(0);
+                pruneDisk();
+            }
+        } catch (IOException e) {
+            log.warn("Failed to write prompt cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * Drops the oldest files once the disk tier grows past its bound. Between prunes the tier may
+     * hold up to {@code diskPruneEvery} files more than the bound.
+     */
+    private void pruneDisk() throws IOException {
+        Path[] files;
+        try (Stream<Path> listing = Files.list(diskDir)) {
+            files = listing.filter(path -> path.getFileName().toString().endsWith(".txt")).toArray(Path[]::new);
+        }
+        int excess = files.length - diskMaxEntries;
+        if (excess <= 0) {
+            return;
+        }
+        Arrays.sort(files, Comparator.comparing(PromptCache::lastModified));
+        for (int i = 0; i < excess; i++) {
+            Files.deleteIfExists(files[i]);
+            evictions.increment();
+        }
+    }
+
+    private boolean isExpired(Instant storedAt) {
+        return storedAt.plus(ttl).isBefore(Instant.now());
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static final class Entry {
+        private final String value;
+        private final Instant storedAt;
+
+        private Entry(String value, Instant storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.ai.dto.GenerateStoryRequest;
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.stories.StoryService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prompt compiler for DreamTales AI v3.0
+ * Assembles story prompts from static instruction blocks (built once) and a pre-rendered
+ * child profile fragment, cached per profile version (id + updatedAt). Free-text inputs
+ * (profile fields, custom scenario, series context) are capped by per-section token budgets,
+ * so prompt size stays bounded however long the stored text grows.
+ */
+@Component
+public class PromptCompiler {
+
+    private static final String SYSTEM_BLOCK =
+            "You are DreamTales AI, an expert at creating personalized bedtime stories for children ages 3-10. "
+                    + "Create a calm, soothing, age-appropriate story in Turkish.\n\n";
+
+    private static final String FEARS_GUIDANCE =
+            "If a fear is relevant to the story, help the child overcome it gently and supportively. Never make fears scary.\n";
+
+    /** Choice points in an interactive story; the branch after the last one ends the story */
+    public static final int CHOICE_POINTS = 2;
+
+    private static final String INTERACTIVE_BLOCK = "\n=== INTERACTIVE MODE ===\n"
+            + "This is a branching story with " + CHOICE_POINTS + " choice points, each with 2 options. "
+            + "Write ONLY the opening, up to the first choice point, where the hero must decide what to do next. "
+            + "Do not write what happens after the choice; each option is continued later.\n"
+            + "- The opening is 4-6 sentences and does not end the story, so leave out the sleepy closure\n";
+
+    private static final String INTERACTIVE_PLAIN_FORMAT =
+            "- End with the choice on its own line: [CHOICE 1: question for the child] Option A: ... | Option B: ...\n";
+
+    private static final String CHOICE_OUTPUT_LINES =
+            "- choicePrompt: the question asked at the choice point, addressed to the child\n"
+                    + "- choiceOptions: exactly 2 short options of a few words each\n";
+
+    private static final String BRANCH_NEXT_CHOICE =
+            "Continue the story from the chosen option in 3-5 sentences and stop at the next choice point, "
+                    + "where the hero must decide again. Do not write what happens after it.\n";
+
+    private static final String BRANCH_ENDING =
+            "Continue the story from the chosen option and bring it to a happy end in 4-6 sentences.\n";
+
+    private static final String BRANCH_CONSTRAINTS_BLOCK = "\n=== CONSTRAINTS ===\n"
+            + "- Stay consistent with the story so far: same characters, names and setting\n"
+            + "- Vocabulary: Simple, for ages 3-10\n"
+            + "- Tone: Calm, gentle, soothing, bedtime-appropriate\n"
+            + "- NO scary elements, violence, or nightmares\n";
+
+    private static final String CONSTRAINTS_BLOCK = "\n=== CONSTRAINTS ===\n"
+            + "- Length: 8-12 sentences (longer if interactive)\n"
+            + "- Vocabulary: Simple, for ages 3-10\n"
+            + "- Tone: Calm, gentle, soothing, bedtime-appropriate\n"
+            + "- NO scary elements, violence, or nightmares\n"
+            + "- End with a peaceful, sleepy closure\n";
+
+    private static final String PLAIN_OUTPUT_LINE = "- Only return the story text, no titles or markdown formatting\n";
+
+    private static final String STRUCTURED_OUTPUT_HEAD = "\n=== OUTPUT FORMAT ===\n"
+            + "Return JSON matching the response schema:\n"
+            + "- title: a short, warm Turkish title for the story\n"
+            + "- pages: the story split into 3-6 pages of 2-3 sentences each, in order, no markdown\n"
+            + "- sceneDescriptions: exactly ";
+
+    private static final String STRUCTURED_OUTPUT_SCENES =
+            " key visual scenes in story order, each 2-3 sentences in English describing ";
+
+    private static final String SCENE_STYLE =
+            "'s appearance and action, the setting, mood (calm, warm, magical) and the art style "
+                    + "(children's book illustration, colorful, gentle); nothing scary or dark\n";
+
+    private static final String STRUCTURED_OUTPUT_TAIL =
+            "- vocabulary: every learning-language word used in the story (empty if none)\n"
+                    + "- summary: one or two sentences summarizing what happens in this story, for continuing the series later\n";
+
+    private static final String BRANCH_OUTPUT_HEAD = "\n=== OUTPUT FORMAT ===\n"
+            + "Return JSON matching the response schema:\n"
+            + "- pages: the continuation split into 1-3 pages of 2-3 sentences each, in order, no markdown\n"
+            + "- sceneDescriptions: exactly 1 key visual scene of the continuation, 2-3 sentences in English describing ";
+
+    private final int profileBudget;
+    private final int profileFieldBudget;
+    private final int customPromptBudget;
+    private final int seriesBudget;
+    private final int shortFieldBudget;
+    private final int storySoFarBudget;
+    private final int profileCacheSize;
+
+    private final Map<String, String> profileFragments;
+    private final DistributionSummary promptTokens;
+
+    public PromptCompiler(@Value("${ai.prompt.budget.profile:240}") int profileBudget,
+                          @Value("${ai.prompt.budget.profileField:80}") int profileFieldBudget,
+                          @Value("${ai.prompt.budget.customPrompt:300}") int customPromptBudget,
+                          @Value("${ai.prompt.budget.series:240}") int seriesBudget,
+                          @Value("${ai.prompt.budget.shortField:40}") int shortFieldBudget,
+                          @Value("${ai.prompt.budget.storySoFar:600}") int storySoFarBudget,
+                          @Value("${ai.prompt.profileCache.maxEntries:1000}") int profileCacheSize,
+                          MeterRegistry meterRegistry) {
+        this.profileBudget = profileBudget;
+        this.profileFieldBudget = profileFieldBudget;
+        this.customPromptBudget = customPromptBudget;
+        this.seriesBudget = seriesBudget;
+        this.shortFieldBudget = shortFieldBudget;
+        this.storySoFarBudget = storySoFarBudget;
+        this.profileCacheSize = profileCacheSize;
+        this.profileFragments = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > PromptCompiler.this.profileCacheSize;
+            }
+        };
+        this.promptTokens = DistributionSummary.builder("ai.prompt.tokens")
+                .description("Estimated tokens per compiled story prompt")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Builds the story prompt with full profile integration
+     *
+     * @param structuredSceneCount When set, asks for the structured JSON output with this many scenes
+     *                             instead of plain story text
+     */
+    public String compileStoryPrompt(GenerateStoryRequest request, ChildProfile childProfile, Story parentStory,
+                                     Integer structuredSceneCount) {
+        StringBuilder prompt = new StringBuilder(2048);
+
+        prompt.append(SYSTEM_BLOCK);
+        prompt.append(profileFragment(childProfile));
+
+        prompt.append("\n=== STORY REQUIREMENTS ===\n");
+
+        // Mode-specific instructions
+        if ("creative".equalsIgnoreCase(request.getMode()) && request.getCustomPrompt() != null) {
+            prompt.append("Mode: Creative (Detailed Custom)\n");
+            prompt.append("User's Custom Scenario: ")
+                    .append(TokenEstimator.truncate(request.getCustomPrompt(), customPromptBudget)).append("\n");
+            prompt.append("Enrich this scenario using the profile information above.\n");
+        } else {
+            prompt.append("Mode: Quick (AI Auto-Generate)\n");
+            if (request.getTheme() != null) {
+                prompt.append("Theme: ").append(TokenEstimator.truncate(request.getTheme(), shortFieldBudget)).append("\n");
+            }
+        }
+
+        if (request.getLesson() != null && !request.getLesson().isBlank()) {
+            prompt.append("Behavioral Lesson (weave subtly into the story): ")
+                    .append(TokenEstimator.truncate(request.getLesson(), shortFieldBudget)).append("\n");
+        }
+
+        // Series continuity
+        if (parentStory != null) {
+            prompt.append("\n=== SERIES CONTINUITY ===\n");
+            prompt.append("This is a continuation of a series. Summary of the series so far:\n");
+            prompt.append(TokenEstimator.truncate(StoryService.seriesSummaryOf(parentStory), seriesBudget));
+            prompt.append("\nContinue the adventure naturally, referencing what happened before.\n");
+        }
+
+        // Language learning mode
+        if (Boolean.TRUE.equals(request.getEnableLanguageLearning()) && request.getLearningLanguage() != null) {
+            prompt.append("\n=== LANGUAGE LEARNING ===\n");
+            prompt.append("Integrate simple ")
+                    .append(TokenEstimator.truncate(request.getLearningLanguage(), shortFieldBudget))
+                    .append(" words with contextual teaching.\n");
+            prompt.append("Example: 'The owl said, \"blue renge İngilizce'de 'blue' denir.\"'\n");
+        }
+
+        // Interactive mode: only the opening is written now, branches are generated when picked
+        boolean interactive = Boolean.TRUE.equals(request.getIsInteractive());
+        if (interactive) {
+            prompt.append(INTERACTIVE_BLOCK);
+        }
+
+        // Constraints
+        prompt.append(CONSTRAINTS_BLOCK);
+        prompt.append("- Make ").append(childProfile.getName()).append(" the hero/protagonist\n");
+        if (structuredSceneCount == null) {
+            prompt.append(PLAIN_OUTPUT_LINE);
+            if (interactive) {
+                prompt.append(INTERACTIVE_PLAIN_FORMAT);
+            }
+        } else {
+            prompt.append(STRUCTURED_OUTPUT_HEAD).append(structuredSceneCount)
+                    .append(STRUCTURED_OUTPUT_SCENES).append(childProfile.getName())
+                    .append(SCENE_STYLE).append(STRUCTURED_OUTPUT_TAIL);
+            if (interactive) {
+                prompt.append(CHOICE_OUTPUT_LINES);
+            }
+        }
+
+        promptTokens.record(TokenEstimator.estimate(prompt));
+        return prompt.toString();
+    }
+
+    /**
+     * Builds the prompt for one branch of an interactive story: the story so far, the choice
+     * and the picked option. The branch stops at the next choice point unless it is the ending.
+     */
+    public String compileBranchPrompt(ChildProfile childProfile, String storySoFar, String choicePrompt,
+                                      String chosenOption, boolean ending) {
+        StringBuilder prompt = new StringBuilder(2048);
+
+        prompt.append(SYSTEM_BLOCK);
+        prompt.append(profileFragment(childProfile));
+
+        prompt.append("\n=== INTERACTIVE STORY SO FAR ===\n");
+        prompt.append(TokenEstimator.truncate(storySoFar, storySoFarBudget)).append("\n");
+
+        prompt.append("\n=== CHILD'S CHOICE ===\n");
+        prompt.append("Question: ").append(TokenEstimator.truncate(choicePrompt, customPromptBudget)).append("\n");
+        prompt.append("Chosen option: ").append(TokenEstimator.truncate(chosenOption, shortFieldBudget)).append("\n");
+        prompt.append(ending ? BRANCH_ENDING : BRANCH_NEXT_CHOICE);
+
+        prompt.append(BRANCH_CONSTRAINTS_BLOCK);
+        if (ending) {
+            prompt.append("- End with a peaceful, sleepy closure\n");
+        }
+        prompt.append(BRANCH_OUTPUT_HEAD).append(childProfile.getName()).append(SCENE_STYLE);
+        if (!ending) {
+            prompt.append(CHOICE_OUTPUT_LINES);
+        }
+
+        promptTokens.record(TokenEstimator.estimate(prompt));
+        return prompt.toString();
+    }
+
+    /**
+     * The "CHILD PROFILE" section. Rendered once per profile version and reused until the
+     * profile is edited (which bumps updatedAt).
+     */
+    public String profileFragment(ChildProfile childProfile) {
+        if (childProfile.getId() == null) {
+            return renderProfile(childProfile);
+        }
+        Instant version = childProfile.getUpdatedAt() != null ? childProfile.getUpdatedAt() : childProfile.getCreatedAt();
+        String key = childProfile.getId() + ":" + (version != null ? version.toEpochMilli() : 0);
+        synchronized (profileFragments) {
+            String cached = profileFragments.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        String fragment = renderProfile(childProfile);
+        synchronized (profileFragments) {
+            profileFragments.put(key, fragment);
+        }
+        return fragment;
+    }
+
+    private String renderProfile(ChildProfile childProfile) {
+        List<String> fields = new ArrayList<>(4);
+        for (String value : List.of(nullToEmpty(childProfile.getLikes()), nullToEmpty(childProfile.getDislikes()),
+                nullToEmpty(childProfile.getFears()), nullToEmpty(childProfile.getRelationships()))) {
+            if (!value.isBlank()) {
+                fields.add(value);
+            }
+        }
+        // Share the section budget between the fields that are present
+        int fieldBudget = fields.isEmpty() ? profileFieldBudget
+                : Math.min(profileFieldBudget, profileBudget / fields.size());
+
+        StringBuilder fragment = new StringBuilder(512);
+        fragment.append("=== CHILD PROFILE ===\n");
+        fragment.append("Hero Name: ").append(childProfile.getName()).append("\n");
+
+        if (childProfile.getLikes() != null && !childProfile.getLikes().isBlank()) {
+            fragment.append("Favorite Things (incorporate these naturally): ")
+                    .append(TokenEstimator.truncate(childProfile.getLikes().strip(), fieldBudget)).append("\n");
+        }
+
+        if (childProfile.getDislikes() != null && !childProfile.getDislikes().isBlank()) {
+            fragment.append("Dislikes (avoid these): ")
+                    .append(TokenEstimator.truncate(childProfile.getDislikes().strip(), fieldBudget)).append("\n");
+        }
+
+        if (childProfile.getFears() != null && !childProfile.getFears().isBlank()) {
+            fragment.append("Fears (IMPORTANT - address these sensitively if relevant, but NEVER trigger or scare): ");
+            fragment.append(TokenEstimator.truncate(childProfile.getFears().strip(), fieldBudget)).append("\n");
+            fragment.append(FEARS_GUIDANCE);
+        }
+
+        if (childProfile.getRelationships() != null && !childProfile.getRelationships().isBlank()) {
+            fragment.append("Supporting Characters (friends, siblings, pets - include these): ");
+            fragment.append(TokenEstimator.truncate(childProfile.getRelationships().strip(), fieldBudget)).append("\n");
+        }
+        return fragment.toString();
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
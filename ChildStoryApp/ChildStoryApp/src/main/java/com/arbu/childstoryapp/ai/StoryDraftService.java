@@ -0,0 +1,325 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.ai.dto.GenerateStoryRequest;
+import com.arbu.childstoryapp.ai.dto.GenerateStoryResponse;
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.domain.StoryDraft;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.repository.ChildProfileRepository;
+import com.arbu.childstoryapp.repository.StoryDraftRepository;
+import com.arbu.childstoryapp.repository.StoryGenerationLogRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pre-generated story drafts for DreamTales AI v3.0
+ * Off-peak, a scheduled task generates Quick-mode stories (text and media) for recently
+ * active children and their most used themes, and stores them as unclaimed drafts with
+ * an expiry. A matching /api/ai/generate-story request claims a draft instead of calling
+ * the model; anything else falls back to live generation. Cost is bounded by a per-user
+ * cap on unclaimed drafts, a global cap and a per-run generation budget.
+ */
+@Service
+public class StoryDraftService {
+    private static final Logger log = LoggerFactory.getLogger(StoryDraftService.class);
+
+    private static final Locale TURKISH = Locale.forLanguageTag("tr");
+
+    /**
+     * Length of story_drafts.theme; longer themes are never pre-generated
+     */
+    private static final int MAX_THEME_LENGTH = 80;
+
+    private final StoryDraftRepository draftRepo;
+    private final StoryGenerationLogRepository storyLogRepo;
+    private final ChildProfileRepository childRepo;
+    private final StoryGenerationPipeline storyGenerationPipeline;
+    private final ObjectMapper objectMapper;
+
+    private final boolean enabled;
+    private final Duration ttl;
+    private final Duration activeWithin;
+    private final int themesPerChild;
+    private final int maxPerUser;
+    private final int maxUnclaimed;
+    private final int maxPerRun;
+    private final int concurrency;
+
+    /** The pre-generation run in progress, if any; runs never overlap */
+    private volatile Disposable running;
+
+    private final Counter claimHits;
+    private final Counter claimMisses;
+    private final Counter generated;
+    private final Counter failed;
+
+    public StoryDraftService(StoryDraftRepository draftRepo,
+                             StoryGenerationLogRepository storyLogRepo,
+                             ChildProfileRepository childRepo,
+                             StoryGenerationPipeline storyGenerationPipeline,
+                             ObjectMapper objectMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${ai.prewarm.enabled:false}") boolean enabled,
+                             @Value("${ai.prewarm.ttl:PT12H}") Duration ttl,
+                             @Value("${ai.prewarm.activeWithin:P7D}") Duration activeWithin,
+                             @Value("${ai.prewarm.themesPerChild:2}") int themesPerChild,
+                             @Value("${ai.prewarm.maxPerUser:3}") int maxPerUser,
+                             @Value("${ai.prewarm.maxUnclaimed:500}") int maxUnclaimed,
+                             @Value("${ai.prewarm.maxPerRun:50}") int maxPerRun,
+                             @Value("${ai.prewarm.concurrency:2}") int concurrency) {
+        this.draftRepo = draftRepo;
+        this.storyLogRepo = storyLogRepo;
+        this.childRepo = childRepo;
+        this.storyGenerationPipeline = storyGenerationPipeline;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttl = ttl;
+        this.activeWithin = activeWithin;
+        this.themesPerChild = themesPerChild;
+        this.maxPerUser = maxPerUser;
+        this.maxUnclaimed = maxUnclaimed;
+        this.maxPerRun = maxPerRun;
+        this.concurrency = concurrency;
+
+        this.claimHits = Counter.builder("ai.prewarm.claims").tag("result", "hit").register(meterRegistry);
+        this.claimMisses = Counter.builder("ai.prewarm.claims").tag("result", "miss").register(meterRegistry);
+        this.generated = Counter.builder("ai.prewarm.drafts").tag("result", "generated").register(meterRegistry);
+        this.failed = Counter.builder("ai.prewarm.drafts").tag("result", "failed").register(meterRegistry);
+    }
+
+    /**
+     * Completes the request from a pre-generated draft when one matches: same child and theme,
+     * plain Quick mode, and generated after the child profile was last edited. The draft is
+     * logged and saved like a live generation.
+     */
+    public Optional<GenerateStoryResponse> claim(UserAccount user, GenerateStoryRequest request,
+                                                 ChildProfile childProfile, Story parentStory) {
+        String theme = normalizeTheme(request.getTheme());
+        if (!enabled || !isDraftable(request, parentStory)
+                || (theme != null && theme.length() > MAX_THEME_LENGTH)) {
+            return Optional.empty();
+        }
+        Instant now = Instant.now();
+        Instant profileVersion = childProfile.getUpdatedAt();
+        List<StoryDraft> drafts = draftRepo.findByChild_IdAndThemeAndClaimedAtIsNullAndExpiresAtAfterOrderByCreatedAtAsc(
+                childProfile.getId(), theme, now);
+        for (StoryDraft draft : drafts) {
+            if (profileVersion != null && draft.getCreatedAt().isBefore(profileVersion)) {
+                // Written for an older version of the profile
+                continue;
+            }
+            if (draftRepo.claim(draft.getId(), now) == 0) {
+                // Another request took it
+                continue;
+            }
+            try {
+                StructuredStory story = objectMapper.readValue(draft.getStoryPayload(), StructuredStory.class);
+                GeneratedMedia media = objectMapper.readValue(draft.getMediaPayload(), GeneratedMedia.class);
+                claimHits.increment();
+                return Optional.of(storyGenerationPipeline.complete(user, request, childProfile, story, media));
+            } catch (JsonProcessingException e) {
+                log.warn("Discarding unreadable story draft {}: {}", draft.getId(), e.getMessage());
+            }
+        }
+        claimMisses.increment();
+        return Optional.empty();
+    }
+
+    /**
+     * Off-peak pre-generation run. Drops stale drafts, then fills up to the per-user and global
+     * caps for recently active children, spending at most {@code maxPerRun} generations.
+     */
+    @Scheduled(cron = "${ai.prewarm.cron:0 0 14 * * *}", zone = "${ai.prewarm.zone:Europe/Istanbul}")
+    public void prewarm() {
+        if (!enabled) {
+            return;
+        }
+        if (running != null && !running.isDisposed()) {
+            log.warn("Story draft pre-generation: previous run still in progress, skipping this one");
+            return;
+        }
+        Instant now = Instant.now();
+        int removed = draftRepo.deleteStale(now);
+
+        List<Target> targets = selectTargets(now);
+        if (targets.isEmpty()) {
+            log.debug("Story draft pre-generation: nothing to do ({} stale drafts removed)", removed);
+            return;
+        }
+
+        // Load profiles here so the reactive part only talks to the model
+        Map<Long, ChildProfile> children = new HashMap<>();
+        for (ChildProfile childProfile : childRepo.findAllById(targets.stream().map(target -> target.childId).distinct().toList())) {
+            children.put(childProfile.getId(), childProfile);
+        }
+
+        // The run is started, not waited for: the scheduler has a single thread shared with the other
+        // scheduled tasks. Each draft is saved as soon as it is ready, so a failure or shutdown mid-run
+        // keeps the paid-for ones.
+        AtomicInteger created = new AtomicInteger();
+        running = Flux.fromIterable(targets)
+                .filter(target -> children.containsKey(target.childId))
+                .flatMap(target -> generateDraft(target, children.get(target.childId))
+                        .flatMap(draft -> Mono.fromCallable(() -> draftRepo.save(draft))
+                                .subscribeOn(Schedulers.boundedElastic()))
+                        .doOnNext(draft -> {
+                            generated.increment();
+                            created.incrementAndGet();
+                        })
+                        .onErrorResume(e -> {
+                            failed.increment();
+                            log.warn("Failed to pre-generate story for child {}: {}", target.childId, e.getMessage());
+                            return Mono.empty();
+                        }), concurrency)
+                .doFinally(signal -> log.info("Story draft pre-generation: {} drafts created, {} failed, {} stale removed",
+                        created.get(), targets.size() - created.get(), removed))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        Disposable run = running;
+        if (run != null) {
+            run.dispose();
+        }
+    }
+
+    /**
+     * Most used themes of recently active children, in order of use, within the caps
+     */
+    private List<Target> selectTargets(Instant now) {
+        int globalRoom = (int) Math.min(maxPerRun, maxUnclaimed - draftRepo.countByClaimedAtIsNullAndExpiresAtAfter(now));
+        if (globalRoom <= 0) {
+            return List.of();
+        }
+
+        // Rows are most frequent first; keep the top themes per child, merging spellings of the same theme
+        Map<Long, Map<String, String>> themesByChild = new LinkedHashMap<>();
+        Map<Long, Long> userByChild = new HashMap<>();
+        for (Object[] row : storyLogRepo.countThemesByChildSince(now.minus(activeWithin))) {
+            Long childId = (Long) row[0];
+            String theme = (String) row[2];
+            String normalizedTheme = normalizeTheme(theme);
+            if (normalizedTheme != null && normalizedTheme.length() > MAX_THEME_LENGTH) {
+                // Would not fit the draft's theme column, and such one-off themes are unlikely to repeat
+                continue;
+            }
+            Map<String, String> themes = themesByChild.computeIfAbsent(childId, id -> new LinkedHashMap<>());
+            if (themes.size() < themesPerChild) {
+                themes.putIfAbsent(normalizedTheme, theme);
+            }
+            userByChild.put(childId, (Long) row[1]);
+        }
+
+        Map<Long, Integer> userRoom = new HashMap<>();
+        List<Target> targets = new ArrayList<>();
+        for (Map.Entry<Long, Map<String, String>> child : themesByChild.entrySet()) {
+            Long userId = userByChild.get(child.getKey());
+            for (Map.Entry<String, String> theme : child.getValue().entrySet()) {
+                if (targets.size() >= globalRoom) {
+                    return targets;
+                }
+                int room = userRoom.computeIfAbsent(userId,
+                        id -> maxPerUser - (int) draftRepo.countByUser_IdAndClaimedAtIsNullAndExpiresAtAfter(id, now));
+                if (room <= 0) {
+                    break;
+                }
+                if (draftRepo.existsByChild_IdAndThemeAndClaimedAtIsNullAndExpiresAtAfter(child.getKey(), theme.getKey(), now)) {
+                    continue;
+                }
+                userRoom.put(userId, room - 1);
+                targets.add(new Target(child.getKey(), theme.getKey(), theme.getValue()));
+            }
+        }
+        return targets;
+    }
+
+    private Mono<StoryDraft> generateDraft(Target target, ChildProfile childProfile) {
+        GenerateStoryRequest request = new GenerateStoryRequest();
+        request.setChildProfileId(target.childId);
+        request.setMode("quick");
+        request.setTheme(target.theme);
+
+        return storyGenerationPipeline.generateStoryAsync(request, childProfile, null)
+                .flatMap(story -> storyGenerationPipeline.generateMediaAsync(story, request, childProfile)
+                        .map(media -> {
+                            Instant createdAt = Instant.now();
+                            StoryDraft draft = new StoryDraft();
+                            draft.setUser(childProfile.getUser());
+                            draft.setChild(childProfile);
+                            draft.setTheme(target.normalizedTheme);
+                            draft.setStoryPayload(writeJson(story));
+                            draft.setMediaPayload(writeJson(media));
+                            draft.setCreatedAt(createdAt);
+                            draft.setExpiresAt(createdAt.plus(ttl));
+                            return draft;
+                        }));
+    }
+
+    /**
+     * Only plain Quick-mode requests are interchangeable with a draft
+     */
+    private static boolean isDraftable(GenerateStoryRequest request, Story parentStory) {
+        return parentStory == null
+                && (request.getMode() == null || "quick".equalsIgnoreCase(request.getMode()))
+                && isBlank(request.getCustomPrompt())
+                && isBlank(request.getLesson())
+                && !Boolean.TRUE.equals(request.getIsInteractive())
+                && !Boolean.TRUE.equals(request.getEnableLanguageLearning())
+                && !Boolean.TRUE.equals(request.getGenerateSlideshow())
+                && request.getVoiceCloneId() == null
+                && (request.getQuality() == null || "standard".equalsIgnoreCase(request.getQuality()));
+    }
+
+    private static String normalizeTheme(String theme) {
+        return isBlank(theme) ? null : theme.trim().toLowerCase(TURKISH);
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize story draft: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class Target {
+        private final Long childId;
+        private final String normalizedTheme;
+        private final String theme;
+
+        private Target(Long childId, String normalizedTheme, String theme) {
+            this.childId = childId;
+            this.normalizedTheme = normalizedTheme;
+            this.theme = theme;
+        }
+    }
+}
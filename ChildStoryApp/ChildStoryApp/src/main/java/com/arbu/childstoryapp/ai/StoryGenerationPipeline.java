@@ -0,0 +1,544 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.ai.dto.GenerateStoryRequest;
+import com.arbu.childstoryapp.ai.dto.GenerateStoryResponse;
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.domain.StoryGenerationLog;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.narration.Narration;
+import com.arbu.childstoryapp.narration.NarrationService;
+import com.arbu.childstoryapp.narration.VoiceCloneService;
+import com.arbu.childstoryapp.repository.StoryGenerationLogRepository;
+import com.arbu.childstoryapp.stories.StoryService;
+import com.arbu.childstoryapp.stories.dto.CreateStoryRequest;
+import com.arbu.childstoryapp.subscriptions.SubscriptionService;
+import com.arbu.childstoryapp.video.VideoRenderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Story generation pipeline for DreamTales AI v3.0
+ * Runs text generation, then fans out audio and scene/image generation in parallel.
+ * Each media stage has its own deadline; whatever finished in time is kept.
+ * Also offers a streaming variant that pushes progress to the client as Server-Sent Events.
+ */
+@Service
+public class StoryGenerationPipeline {
+    private static final Logger log = LoggerFactory.getLogger(StoryGenerationPipeline.class);
+
+    private static final String LANGUAGE_CODE = "tr-TR"; // Turkish by default
+
+    private final GeminiAiService geminiAiService;
+    private final StoryGenerationLogRepository storyLogRepo;
+    private final StoryService storyService;
+    private final SubscriptionService subscriptionService;
+    private final NarrationService narrationService;
+    private final ImageService imageService;
+    private final VoiceCloneService voiceCloneService;
+    private final VideoRenderService videoRenderService;
+    private final InteractiveStoryService interactiveStoryService;
+    private final Scheduler persistenceScheduler;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${ai.pipeline.scenes.timeoutMs:20000}")
+    private long scenesTimeoutMs;
+
+    @Value("${ai.pipeline.images.timeoutMs:30000}")
+    private long imagesTimeoutMs;
+
+    @Value("${ai.pipeline.audio.timeoutMs:30000}")
+    private long audioTimeoutMs;
+
+    @Value("${ai.audio.voice.default:tr-TR-Wavenet-A}")
+    private String defaultVoice;
+
+    @Value("${ai.generation.structured.enabled:true}")
+    private boolean structuredOutput;
+
+    public StoryGenerationPipeline(GeminiAiService geminiAiService,
+                                   StoryGenerationLogRepository storyLogRepo,
+                                   StoryService storyService,
+                                   SubscriptionService subscriptionService,
+                                   NarrationService narrationService,
+                                   ImageService imageService,
+                                   VoiceCloneService voiceCloneService,
+                                   VideoRenderService videoRenderService,
+                                   InteractiveStoryService interactiveStoryService,
+                                   PlatformTransactionManager transactionManager,
+                                   @Qualifier("aiTaskExecutor") Executor executor) {
+        this.geminiAiService = geminiAiService;
+        this.storyLogRepo = storyLogRepo;
+        this.storyService = storyService;
+        this.subscriptionService = subscriptionService;
+        this.narrationService = narrationService;
+        this.imageService = imageService;
+        this.voiceCloneService = voiceCloneService;
+        this.videoRenderService = videoRenderService;
+        this.interactiveStoryService = interactiveStoryService;
+        this.persistenceScheduler = Schedulers.fromExecutor(executor);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Runs the full pipeline: text, parallel media, generation log and story persistence
+     *
+     * @param countUsage false when the story was already counted against the daily limit
+     *                   (queued jobs reserve it on submit); the caller then owns that reservation,
+     *                   so a failure to save the story is thrown instead of only logged
+     */
+    public GenerateStoryResponse generate(UserAccount user, GenerateStoryRequest request,
+                                          ChildProfile childProfile, Story parentStory, boolean countUsage) {
+        return generateAsync(user, request, childProfile, parentStory, countUsage).block();
+    }
+
+    /**
+     * Non-blocking pipeline. Model calls hold no thread while waiting; only the final
+     * log/save step, which uses JPA, hops onto the AI executor.
+     */
+    public Mono<GenerateStoryResponse> generateAsync(UserAccount user, GenerateStoryRequest request,
+                                                     ChildProfile childProfile, Story parentStory) {
+        return generateAsync(user, request, childProfile, parentStory, true);
+    }
+
+    private Mono<GenerateStoryResponse> generateAsync(UserAccount user, GenerateStoryRequest request,
+                                                      ChildProfile childProfile, Story parentStory,
+                                                      boolean countUsage) {
+        // Step 1: Generate the story (structured: title, pages and scenes in one call)
+        return generateStoryAsync(request, childProfile, parentStory)
+                // Step 2: Generate audio and scene images concurrently
+                .flatMap(generated -> generateMediaAsync(generated, request, childProfile)
+                        // Steps 3-5: Log, build the response and save the story
+                        .publishOn(persistenceScheduler)
+                        .map(media -> complete(user, request, childProfile, generated, media, countUsage)));
+    }
+
+    /**
+     * Story text only (no media, nothing saved)
+     */
+    public Mono<StructuredStory> generateStoryAsync(GenerateStoryRequest request, ChildProfile childProfile,
+                                                    Story parentStory) {
+        return structuredOutput
+                ? geminiAiService.generateStructuredStoryAsync(request, childProfile, parentStory, determineSceneCount(request))
+                : geminiAiService.generateStoryV3ReplyAsync(request, childProfile, parentStory)
+                        .map(reply -> StructuredStory.fromText(reply.getText(), reply.getModel()));
+    }
+
+    /**
+     * Streaming pipeline for Server-Sent Events.
+     * Emits "chunk" events while the model writes (with structured output: a "title" event,
+     * then one chunk per completed page), then "pages", "scenes", one "pageAudio" per narrated page,
+     * "media" and finally "saved" with the story id (and, for interactive stories, the first choice
+     * point). Concatenated chunks always form the story text. Failures are reported as an "error"
+     * event because the HTTP status has already been sent.
+     */
+    public Flux<ServerSentEvent<Object>> stream(UserAccount user, GenerateStoryRequest request,
+                                                ChildProfile childProfile, Story parentStory) {
+        Flux<ServerSentEvent<Object>> events = structuredOutput
+                ? streamStructured(user, request, childProfile, parentStory)
+                : streamText(user, request, childProfile, parentStory);
+        return events
+                .onErrorResume(e -> {
+                    log.warn("Story stream failed: {}", e.getMessage());
+                    return Mono.just(event("error", Map.of("message", String.valueOf(e.getMessage()))));
+                });
+    }
+
+    private Flux<ServerSentEvent<Object>> streamText(UserAccount user, GenerateStoryRequest request,
+                                                     ChildProfile childProfile, Story parentStory) {
+        StringBuilder storyText = new StringBuilder();
+        AtomicReference<String> model = new AtomicReference<>(geminiAiService.getModelName());
+
+        Flux<ServerSentEvent<Object>> chunks = geminiAiService.streamStoryV3Replies(request, childProfile, parentStory)
+                .doOnNext(chunk -> {
+                    storyText.append(chunk.getText());
+                    model.set(chunk.getModel());
+                })
+                .map(chunk -> event("chunk", Map.of("text", chunk.getText())));
+
+        Flux<ServerSentEvent<Object>> rest = Flux.defer(() -> {
+            String text = storyText.toString().trim();
+            if (text.isEmpty()) {
+                return Flux.error(new RuntimeException("Empty response from Gemini model"));
+            }
+            return streamRest(user, request, childProfile, StructuredStory.fromText(text, model.get()));
+        });
+
+        return Flux.concat(chunks, rest);
+    }
+
+    private Flux<ServerSentEvent<Object>> streamStructured(UserAccount user, GenerateStoryRequest request,
+                                                           ChildProfile childProfile, Story parentStory) {
+        StructuredStoryParser parser = new StructuredStoryParser();
+        AtomicReference<String> model = new AtomicReference<>(geminiAiService.getModelName());
+
+        Flux<ServerSentEvent<Object>> parts = geminiAiService
+                .streamStructuredStory(request, childProfile, parentStory, determineSceneCount(request))
+                .doOnNext(chunk -> model.set(chunk.getModel()))
+                .concatMapIterable(chunk -> parser.feed(chunk.getText()))
+                .map(part -> StructuredStoryParser.TITLE.equals(part.getField())
+                        ? event("title", Map.of("title", part.getValue()))
+                        : event("chunk", Map.of("text", (part.getIndex() > 0 ? "\n\n" : "") + part.getValue())));
+
+        Flux<ServerSentEvent<Object>> rest = Flux.defer(() -> {
+            StructuredStory story = parser.finish();
+            story.setModel(model.get());
+            return streamRest(user, request, childProfile, story);
+        });
+
+        return Flux.concat(parts, rest);
+    }
+
+    private Flux<ServerSentEvent<Object>> streamRest(UserAccount user, GenerateStoryRequest request,
+                                                     ChildProfile childProfile, StructuredStory story) {
+        return Flux.concat(
+                Mono.just(event("pages", Map.of("pages", story.getPages()))),
+                streamMedia(user, request, childProfile, story));
+    }
+
+    private Flux<ServerSentEvent<Object>> streamMedia(UserAccount user, GenerateStoryRequest request,
+                                                      ChildProfile childProfile, StructuredStory story) {
+        // Scenes are shared by the "scenes" event and image rendering, so cache the single model call
+        Mono<List<String>> scenes = (shouldGenerateImages(request)
+                ? scenesFor(story, request, childProfile)
+                : Mono.just(List.<String>of()))
+                .onErrorResume(e -> {
+                    log.warn("Failed to generate scene descriptions: {}", e.getMessage());
+                    return Mono.just(List.of());
+                })
+                .cache();
+
+        Mono<List<String>> images = scenes.flatMap(s -> renderImages(s, imageQuality(request)));
+        // Pages are narrated in parallel; each page's audio is announced as soon as it (and the pages
+        // before it) exist, so the app can start playing while the rest is still being narrated
+        Mono<String> voice = resolveVoice(request, childProfile).cache();
+        Flux<String> pageAudio = (shouldGenerateAudio(request)
+                ? voice.flatMapMany(voiceName -> narrationService.narratePages(story.getPages(), LANGUAGE_CODE, voiceName))
+                : Flux.<String>empty())
+                .onErrorResume(e -> {
+                    log.warn("Failed to generate audio: {}", e.getMessage());
+                    return Flux.empty();
+                })
+                .take(Duration.ofMillis(audioTimeoutMs))
+                .cache();
+        Mono<Narration> narration = pageAudio.collectList()
+                .flatMap(pageUrls -> pageUrls.isEmpty() || pageUrls.size() < story.getPages().size()
+                        ? Mono.just(new Narration(null, pageUrls))
+                        : voice.flatMap(voiceName -> narrationService.combine(story.getPages(), LANGUAGE_CODE, voiceName))
+                                .map(audioUrl -> new Narration(audioUrl, pageUrls))
+                                .onErrorResume(e -> {
+                                    log.warn("Failed to join narration pages: {}", e.getMessage());
+                                    return Mono.just(new Narration(null, pageUrls));
+                                }));
+
+        Flux<ServerSentEvent<Object>> pageAudioEvents = pageAudio.index()
+                .map(page -> event("pageAudio", Map.of("page", page.getT1() + 1, "audioUrl", page.getT2())));
+
+        Flux<ServerSentEvent<Object>> sceneEvents = scenes
+                .filter(s -> !s.isEmpty())
+                .map(s -> event("scenes", Map.of("sceneDescriptions", s)))
+                .flux();
+
+        Flux<ServerSentEvent<Object>> mediaAndSave = Mono.zip(scenes, images, narration)
+                .map(t -> {
+                    GeneratedMedia media = new GeneratedMedia(t.getT1(), t.getT2(), t.getT3().getAudioUrl());
+                    media.setPageAudioUrls(t.getT3().getPageAudioUrls());
+                    return media;
+                })
+                .flatMapMany(media -> {
+                    Map<String, Object> mediaData = new HashMap<>();
+                    mediaData.put("imageUrls", media.getImageUrls());
+                    mediaData.put("audioUrl", media.getAudioUrl());
+                    mediaData.put("pageAudioUrls", media.getPageAudioUrls());
+                    Mono<ServerSentEvent<Object>> saved = Mono
+                            .fromCallable(() -> complete(user, request, childProfile, story, media))
+                            .subscribeOn(persistenceScheduler)
+                            .map(response -> {
+                                Map<String, Object> savedData = new HashMap<>();
+                                savedData.put("storyId", response.getStoryId());
+                                if (response.getVideoStatus() != null) {
+                                    savedData.put("videoStatus", response.getVideoStatus());
+                                }
+                                if (response.getChoice() != null) {
+                                    savedData.put("choice", response.getChoice());
+                                }
+                                return event("saved", savedData);
+                            });
+                    return Flux.concat(Mono.just(event("media", mediaData)), saved);
+                });
+
+        // Merge so scene and page audio events go out as soon as they exist while the rest keeps rendering
+        return Flux.merge(sceneEvents, pageAudioEvents, mediaAndSave);
+    }
+
+    private ServerSentEvent<Object> event(String name, Object data) {
+        return ServerSentEvent.builder(data).event(name).build();
+    }
+
+    /**
+     * Starts audio narration and scene/image generation at the same time.
+     * Latency is the slowest branch, bounded by the per-stage deadlines.
+     */
+    public Mono<GeneratedMedia> generateMediaAsync(String storyText, GenerateStoryRequest request,
+                                                   ChildProfile childProfile) {
+        return generateMediaAsync(StructuredStory.fromText(storyText, null), request, childProfile);
+    }
+
+    /**
+     * Same as {@link #generateMediaAsync(String, GenerateStoryRequest, ChildProfile)}, reusing
+     * scene descriptions that came with a structured story instead of asking the model again
+     */
+    public Mono<GeneratedMedia> generateMediaAsync(StructuredStory story, GenerateStoryRequest request,
+                                                   ChildProfile childProfile) {
+        Mono<Optional<Narration>> audio = shouldGenerateAudio(request)
+                ? generateNarration(story.getPages(), request, childProfile)
+                : Mono.just(Optional.empty());
+
+        Mono<GeneratedMedia> images = shouldGenerateImages(request)
+                ? generateSceneImages(story, request, childProfile)
+                : Mono.just(new GeneratedMedia());
+
+        return Mono.zip(images, audio, (media, narration) -> {
+            narration.ifPresent(n -> {
+                media.setAudioUrl(n.getAudioUrl());
+                media.setPageAudioUrls(n.getPageAudioUrls());
+            });
+            return media;
+        });
+    }
+
+    /**
+     * Narrates the story page by page (pages in parallel) and joins the pages into one file
+     */
+    private Mono<Optional<Narration>> generateNarration(List<String> pages, GenerateStoryRequest request,
+                                                       ChildProfile childProfile) {
+        return resolveVoice(request, childProfile)
+                .flatMap(voiceName -> narrationService.narrate(pages, LANGUAGE_CODE, voiceName))
+                .timeout(Duration.ofMillis(audioTimeoutMs))
+                .map(Optional::of)
+                .onErrorResume(e -> {
+                    // Log error but don't fail the entire request
+                    log.warn("Failed to generate audio: {}", e.getMessage());
+                    return Mono.just(Optional.empty());
+                })
+                .defaultIfEmpty(Optional.empty());
+    }
+
+    private Mono<GeneratedMedia> generateSceneImages(StructuredStory story, GenerateStoryRequest request,
+                                                     ChildProfile childProfile) {
+        return scenesFor(story, request, childProfile)
+                .flatMap(scenes -> renderImages(scenes, imageQuality(request))
+                        .map(imageUrls -> new GeneratedMedia(scenes, imageUrls, null)))
+                .onErrorResume(e -> {
+                    // Log error but don't fail the entire request
+                    log.warn("Failed to generate images: {}", e.getMessage());
+                    return Mono.just(new GeneratedMedia());
+                });
+    }
+
+    /**
+     * Scene descriptions from the structured story when present, otherwise from a separate model call
+     */
+    private Mono<List<String>> scenesFor(StructuredStory story, GenerateStoryRequest request,
+                                         ChildProfile childProfile) {
+        List<String> scenes = story.getSceneDescriptions();
+        if (!scenes.isEmpty()) {
+            return Mono.just(scenes.subList(0, Math.min(scenes.size(), determineSceneCount(request))));
+        }
+        return generateScenes(story.getContent(), request, childProfile);
+    }
+
+    private Mono<List<String>> generateScenes(String storyText, GenerateStoryRequest request,
+                                              ChildProfile childProfile) {
+        return geminiAiService.generateSceneDescriptionsAsync(storyText, childProfile.getName(), determineSceneCount(request), request.getMode())
+                .collectList()
+                .timeout(Duration.ofMillis(scenesTimeoutMs));
+    }
+
+    /**
+     * Renders the scenes in batches. Batches that fail or miss the stage deadline are left out,
+     * so the story keeps the images that did finish.
+     */
+    private Mono<List<String>> renderImages(List<String> sceneDescriptions, String quality) {
+        return geminiAiService.generateImagesAsync(sceneDescriptions, quality, Duration.ofMillis(imagesTimeoutMs))
+                .onErrorResume(e -> {
+                    log.warn("Failed to generate images for scenes: {}", e.getMessage());
+                    return Mono.just(List.of());
+                });
+    }
+
+    /**
+     * Logs the generation (with the model that wrote the text), saves the story and builds the client response
+     */
+    public GenerateStoryResponse complete(UserAccount user, GenerateStoryRequest request, ChildProfile childProfile,
+                                          StructuredStory story, GeneratedMedia media) {
+        return complete(user, request, childProfile, story, media, true);
+    }
+
+    private GenerateStoryResponse complete(UserAccount user, GenerateStoryRequest request, ChildProfile childProfile,
+                                           StructuredStory story, GeneratedMedia media, boolean countUsage) {
+        String storyText = story.getContent();
+        String title = story.getTitle() != null && !story.getTitle().isBlank()
+                ? story.getTitle()
+                : generateStoryTitle(childProfile.getName(), request.getTheme());
+
+        // Log the generation for statistics
+        StoryGenerationLog generationLog = new StoryGenerationLog();
+        generationLog.setUser(user);
+        generationLog.setChild(childProfile);
+        generationLog.setTheme(request.getTheme());
+        generationLog.setLesson(request.getLesson());
+        generationLog.setModel(story.getModel());
+        generationLog.setCreatedAt(Instant.now());
+        storyLogRepo.save(generationLog);
+
+        // Build the response
+        GenerateStoryResponse response = new GenerateStoryResponse(storyText, media.getImageUrls(), media.getAudioUrl());
+        response.setTitle(title);
+        if (!media.getPageAudioUrls().isEmpty()) {
+            response.setPageAudioUrls(media.getPageAudioUrls());
+        }
+        if (!media.getSceneDescriptions().isEmpty()) {
+            response.setSceneDescriptions(media.getSceneDescriptions());
+        }
+        if (!story.getVocabulary().isEmpty()) {
+            response.setVocabulary(story.getVocabulary());
+        }
+
+        // Save the story to database (v3.0 enhancement)
+        try {
+            CreateStoryRequest createStoryRequest = new CreateStoryRequest();
+            createStoryRequest.setChildProfileId(childProfile.getId());
+            createStoryRequest.setTitle(title);
+            createStoryRequest.setContent(storyText);
+            createStoryRequest.setImageUrls(media.getImageUrls());
+            if (media.getImageUrls() != null && !media.getImageUrls().isEmpty()) {
+                createStoryRequest.setThumbnail(imageService.thumbnailUrl(media.getImageUrls().get(0)));
+            }
+            createStoryRequest.setAudioUrl(media.getAudioUrl());
+            createStoryRequest.setPageAudioUrls(media.getPageAudioUrls());
+            createStoryRequest.setMode(request.getMode() != null ? request.getMode() : "quick");
+            createStoryRequest.setTheme(request.getTheme());
+            // Interactive only when the opening actually stopped at a choice point
+            boolean interactive = Boolean.TRUE.equals(request.getIsInteractive()) && story.hasChoice();
+            createStoryRequest.setIsInteractive(interactive);
+            createStoryRequest.setParentStoryId(request.getParentStoryId());
+            createStoryRequest.setSummary(story.getSummary());
+
+            // The opening is saved with the story, so an interactive story never lacks its first choice
+            // point. Branches are generated when the child picks an option (see InteractiveStoryService)
+            Story savedStory = transactionTemplate.execute(status -> {
+                Story saved = storyService.saveStory(createStoryRequest, user);
+                if (interactive) {
+                    response.setChoice(interactiveStoryService.saveOpening(saved, story));
+                }
+                return saved;
+            });
+            response.setStoryId(savedStory.getId());
+
+            // Slideshow (premium) renders in the background; the video shows up on the story when ready
+            if (Boolean.TRUE.equals(request.getGenerateSlideshow())
+                    && subscriptionService.hasFeatureAccess(user.getId(), "slideshow")
+                    && videoRenderService.submit(savedStory.getId())) {
+                response.setVideoStatus(VideoRenderService.RENDERING);
+            }
+
+            // Increment story generation counter (v3.0 enhancement)
+            if (countUsage) {
+                subscriptionService.incrementStoryCount(user.getId());
+            }
+        } catch (Exception e) {
+            if (response.getStoryId() == null) {
+                // The story and its opening were rolled back together
+                response.setChoice(null);
+            }
+            if (!countUsage) {
+                // The caller reserved quota for this story and must release it
+                throw new IllegalStateException("Failed to save story: " + e.getMessage(), e);
+            }
+            // Log error but don't fail the request - story generation was successful
+            log.error("Failed to save story to database: {}", e.getMessage());
+        }
+
+        return response;
+    }
+
+    /**
+     * Determines if images should be generated based on request parameters
+     * In production, this would also check user's subscription level
+     */
+    private boolean shouldGenerateImages(GenerateStoryRequest request) {
+        // For now, always generate images
+        // In production, check: user.getSubscription().hasImageGeneration()
+        return true;
+    }
+
+    /**
+     * Determines if audio should be generated based on request parameters
+     * In production, this would also check user's subscription level
+     */
+    private boolean shouldGenerateAudio(GenerateStoryRequest request) {
+        // For now, always generate audio
+        // In production, check: user.getSubscription().hasAudioGeneration()
+        return true;
+    }
+
+    private String imageQuality(GenerateStoryRequest request) {
+        return request.getQuality() != null ? request.getQuality() : "standard";
+    }
+
+    /**
+     * Determines how many scenes/images to generate based on request and subscription
+     */
+    private int determineSceneCount(GenerateStoryRequest request) {
+        // Standard: 3 scenes, High quality: 5 scenes
+        if ("high".equalsIgnoreCase(request.getQuality())) {
+            return 5;
+        }
+        return 3;
+    }
+
+    /**
+     * Narration voice: the requested voice clone when the user may use it, otherwise the default voice
+     */
+    private Mono<String> resolveVoice(GenerateStoryRequest request, ChildProfile childProfile) {
+        if (request.getVoiceCloneId() == null) {
+            return Mono.just(defaultVoice);
+        }
+        Long userId = childProfile.getUser().getId();
+        return Mono.fromCallable(() -> voiceCloneService.voiceFor(userId, request.getVoiceCloneId()).orElse(defaultVoice))
+                .subscribeOn(persistenceScheduler);
+    }
+
+    /**
+     * Generate a story title from child name and theme
+     * Format: "{ChildName}'in {Theme} Macerası" or "{ChildName}'s {Theme} Adventure"
+     */
+    private String generateStoryTitle(String childName, String theme) {
+        if (theme == null || theme.isEmpty()) {
+            return childName + "'in Uyku Vakti Hikayesi";
+        }
+        // Capitalize first letter of theme
+        String capitalizedTheme = theme.substring(0, 1).toUpperCase() + theme.substring(1);
+        return childName + "'in " + capitalizedTheme + " Macerası";
+    }
+}
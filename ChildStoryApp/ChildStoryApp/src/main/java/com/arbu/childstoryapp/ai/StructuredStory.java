@@ -0,0 +1,106 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.stories.StoryService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A generated story split into its parts: title, pages, scene descriptions for illustration,
+ * the learning-language words the model used and a short episode summary for series continuity.
+ * Produced in one model call by structured (JSON) generation, or derived from plain text,
+ * in which case title and scenes are empty and pages come from paragraph breaks.
+ * Interactive stories also carry the choice point they stop at.
+ */
+public class StructuredStory {
+    /** Plain-text choice point at the end of an interactive segment: [CHOICE: question] Option A: ... | Option B: ... */
+    private static final Pattern CHOICE_MARKER =
+            Pattern.compile("\\[CHOICE[^:\\]]*:\\s*([^\\]]+)]([^\\[]*)$", Pattern.CASE_INSENSITIVE);
+    private static final Pattern OPTION_LABEL =
+            Pattern.compile("^(?:Option\\s*)?[A-C]\\s*[:.)]\\s*", Pattern.CASE_INSENSITIVE);
+
+
+    private String title;
+    private List<String> pages = new ArrayList<>();
+    private List<String> sceneDescriptions = new ArrayList<>();
+    private List<String> vocabulary = new ArrayList<>();
+    private String summary;
+    private String choicePrompt;
+    private List<String> choiceOptions = new ArrayList<>();
+    private String model;
+
+    public StructuredStory() {}
+
+    /**
+     * Wraps plain story text from the non-structured generation path
+     */
+    public static StructuredStory fromText(String text, String model) {
+        StructuredStory story = new StructuredStory();
+        Matcher marker = CHOICE_MARKER.matcher(text.trim());
+        if (marker.find()) {
+            List<String> options = new ArrayList<>();
+            for (String option : marker.group(2).split("\\|")) {
+                String label = OPTION_LABEL.matcher(option.trim()).replaceFirst("").trim();
+                if (!label.isEmpty()) {
+                    options.add(label);
+                }
+            }
+            if (options.size() >= 2) {
+                story.setChoicePrompt(marker.group(1).trim());
+                story.setChoiceOptions(options);
+                text = text.trim().substring(0, marker.start());
+            }
+        }
+        story.setPages(StoryService.splitIntoPages(text));
+        story.setModel(model);
+        return story;
+    }
+
+    /**
+     * Full story text; pages separated by a blank line so {@link StoryService#splitIntoPages}
+     * gives back the same pages when the story is saved
+     */
+    public String getContent() {
+        return String.join("\n\n", pages);
+    }
+
+    /**
+     * True when the story stops at a choice point with at least two options
+     */
+    public boolean hasChoice() {
+        return choicePrompt != null && !choicePrompt.isBlank() && choiceOptions.size() >= 2;
+    }
+
+    /**
+     * Normalises a page so it cannot itself contain a page break
+     */
+    public static String cleanPage(String page) {
+        return page.trim().replaceAll("\\n\\s*\\n", "\n");
+    }
+
+    public String getTitle() { return title; }
+    public void setTitle(String title) { this.title = title; }
+
+    public List<String> getPages() { return pages; }
+    public void setPages(List<String> pages) { this.pages = pages; }
+
+    public List<String> getSceneDescriptions() { return sceneDescriptions; }
+    public void setSceneDescriptions(List<String> sceneDescriptions) { this.sceneDescriptions = sceneDescriptions; }
+
+    public List<String> getVocabulary() { return vocabulary; }
+    public void setVocabulary(List<String> vocabulary) { this.vocabulary = vocabulary; }
+
+    public String getSummary() { return summary; }
+    public void setSummary(String summary) { this.summary = summary; }
+
+    public String getChoicePrompt() { return choicePrompt; }
+    public void setChoicePrompt(String choicePrompt) { this.choicePrompt = choicePrompt; }
+
+    public List<String> getChoiceOptions() { return choiceOptions; }
+    public void setChoiceOptions(List<String> choiceOptions) { this.choiceOptions = choiceOptions; }
+
+    public String getModel() { return model; }
+    public void setModel(String model) { this.model = model; }
+}
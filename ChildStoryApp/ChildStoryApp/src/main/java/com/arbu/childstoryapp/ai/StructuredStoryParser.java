@@ -0,0 +1,188 @@
+package com.arbu.childstoryapp.ai;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental parser for the structured story JSON
+ * ({"title": ..., "pages": [...], "sceneDescriptions": [...], "vocabulary": [...], "summary": ...,
+ * and for interactive segments "choicePrompt": ..., "choiceOptions": [...]).
+ * Uses Jackson's non-blocking parser, so text chunks can be fed as they stream in from the
+ * model and the title and each page are reported as soon as they are complete.
+ * Not thread-safe; use one instance per response.
+ */
+public class StructuredStoryParser {
+
+    public static final String TITLE = "title";
+    public static final String PAGES = "pages";
+    public static final String SCENES = "sceneDescriptions";
+    public static final String VOCABULARY = "vocabulary";
+    public static final String SUMMARY = "summary";
+    public static final String CHOICE_PROMPT = "choicePrompt";
+    public static final String CHOICE_OPTIONS = "choiceOptions";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final StructuredStory story = new StructuredStory();
+
+    private boolean started;
+    private boolean complete;
+    private int depth;
+    private String field;
+
+    public StructuredStoryParser() {
+        try {
+            this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create JSON parser", e);
+        }
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+    }
+
+    /**
+     * Parses everything at once
+     */
+    public static StructuredStory parse(String json) {
+        StructuredStoryParser parser = new StructuredStoryParser();
+        parser.feed(json);
+        return parser.finish();
+    }
+
+    /**
+     * Feeds the next chunk of JSON text.
+     *
+     * @return title and page values completed by this chunk, in document order
+     */
+    public List<Part> feed(String chunk) {
+        if (complete) {
+            return List.of();
+        }
+        if (!started) {
+            // Tolerate anything around the object, e.g. a ```json fence
+            int start = chunk.indexOf('{');
+            if (start < 0) {
+                return List.of();
+            }
+            chunk = chunk.substring(start);
+            started = true;
+        }
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        try {
+            feeder.feedInput(bytes, 0, bytes.length);
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid structured story JSON: " + e.getMessage(), e);
+        }
+        return drain();
+    }
+
+    /**
+     * Ends the input and returns the parsed story
+     */
+    public StructuredStory finish() {
+        if (!complete) {
+            feeder.endOfInput();
+            drain();
+        }
+        if (story.getPages().isEmpty()) {
+            throw new RuntimeException("Structured story response has no pages");
+        }
+        return story;
+    }
+
+    private List<Part> drain() {
+        List<Part> parts = new ArrayList<>();
+        try {
+            JsonToken token;
+            while (!complete && (token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                handle(token, parts);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Invalid structured story JSON: " + e.getMessage(), e);
+        }
+        return parts;
+    }
+
+    private void handle(JsonToken token, List<Part> parts) throws IOException {
+        switch (token) {
+            case START_OBJECT, START_ARRAY -> depth++;
+            case END_OBJECT, END_ARRAY -> {
+                depth--;
+                if (depth == 1) {
+                    field = null;
+                } else if (depth == 0) {
+                    complete = true;
+                }
+            }
+            case FIELD_NAME -> {
+                if (depth == 1) {
+                    field = parser.currentName();
+                }
+            }
+            case VALUE_STRING -> onString(parser.getText(), parts);
+            default -> {
+                // Numbers, booleans and nested values are not part of the schema
+            }
+        }
+    }
+
+    private void onString(String value, List<Part> parts) {
+        if (field == null) {
+            return;
+        }
+        if (depth == 1 && TITLE.equals(field)) {
+            story.setTitle(value.trim());
+            parts.add(new Part(TITLE, 0, story.getTitle()));
+            field = null;
+        } else if (depth == 1 && SUMMARY.equals(field)) {
+            story.setSummary(value.trim());
+            field = null;
+        } else if (depth == 1 && CHOICE_PROMPT.equals(field)) {
+            story.setChoicePrompt(value.trim());
+            field = null;
+        } else if (depth == 2 && !value.isBlank()) {
+            switch (field) {
+                case PAGES -> {
+                    String page = StructuredStory.cleanPage(value);
+                    story.getPages().add(page);
+                    parts.add(new Part(PAGES, story.getPages().size() - 1, page));
+                }
+                case SCENES -> story.getSceneDescriptions().add(value.trim());
+                case VOCABULARY -> story.getVocabulary().add(value.trim());
+                case CHOICE_OPTIONS -> story.getChoiceOptions().add(value.trim());
+                default -> {
+                    // Unknown array
+                }
+            }
+        }
+    }
+
+    /**
+     * A completed value: the title, or a page with its index
+     */
+    public static final class Part {
+        private final String field;
+        private final int index;
+        private final String value;
+
+        public Part(String field, int index, String value) {
+            this.field = field;
+            this.index = index;
+            this.value = value;
+        }
+
+        public String getField() { return field; }
+
+        public int getIndex() { return index; }
+
+        public String getValue() { return value; }
+    }
+}
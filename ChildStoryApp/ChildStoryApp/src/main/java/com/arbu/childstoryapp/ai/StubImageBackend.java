@@ -0,0 +1,75 @@
+package com.arbu.childstoryapp.ai;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+
+/**
+ * Local image backend that makes no network calls.
+ * Renders a soft placeholder picture whose colours are derived from the prompt, so the
+ * pipeline, the image store and thumbnails can be run and tested without an image API.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.image.backend", havingValue = "stub", matchIfMissing = true)
+public class StubImageBackend implements ImageBackend {
+
+    private static final int STANDARD_SIZE = 512;
+    private static final int HIGH_SIZE = 1024;
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public Mono<List<byte[]>> generateImages(List<String> prompts, String quality) {
+        int size = "high".equalsIgnoreCase(quality) ? HIGH_SIZE : STANDARD_SIZE;
+        return Mono.fromCallable(() -> prompts.stream()
+                .map(prompt -> placeholder(prompt, size))
+                .toList());
+    }
+
+    @Override
+    public int maxBatchSize() {
+        return Integer.MAX_VALUE;
+    }
+
+    private static byte[] placeholder(String prompt, int size) {
+        int hash = prompt.hashCode();
+        // Pastel colours, same prompt -> same picture
+        Color top = Color.getHSBColor((hash & 0xFF) / 255f, 0.35f, 0.95f);
+        Color bottom = Color.getHSBColor(((hash >>> 8) & 0xFF) / 255f, 0.45f, 0.75f);
+
+        BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            graphics.setPaint(new GradientPaint(0, 0, top, 0, size, bottom));
+            graphics.fillRect(0, 0, size, size);
+            graphics.setColor(new Color(255, 255, 240, 200));
+            int moon = size / 5;
+            graphics.fillOval(size - moon - size / 8, size / 8, moon, moon);
+        } finally {
+            graphics.dispose();
+        }
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", png);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return png.toByteArray();
+    }
+}
@@ -0,0 +1,49 @@
+package com.arbu.childstoryapp.ai;
+
+/**
+ * Cheap, local token estimates for prompt budgeting.
+ * Uses ~3.5 characters per token, which slightly over-counts English and is close for
+ * Turkish, so budgets err on the safe side without calling the countTokens API.
+ */
+public final class TokenEstimator {
+
+    private static final double CHARS_PER_TOKEN = 3.5;
+
+    private TokenEstimator() {}
+
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int codePoints = Character.codePointCount(text, 0, text.length());
+        return (int) Math.ceil(codePoints / CHARS_PER_TOKEN);
+    }
+
+    /**
+     * Cuts text to fit the token budget, preferring to stop at the end of a list item,
+     * sentence or word. Truncated text ends with an ellipsis.
+     */
+    public static String truncate(String text, int maxTokens) {
+        if (text == null || estimate(text) <= maxTokens) {
+            return text;
+        }
+        int maxChars = Math.max(0, (int) (maxTokens * CHARS_PER_TOKEN) - 1);
+        if (maxChars == 0) {
+            return "";
+        }
+        int end = text.offsetByCodePoints(0, Math.min(maxChars, text.codePointCount(0, text.length())));
+        String head = text.substring(0, end);
+
+        // Back off to a natural boundary if one is reasonably close to the cut
+        int minimum = (int) (head.length() * 0.7);
+        int boundary = Math.max(Math.max(head.lastIndexOf(','), head.lastIndexOf('.')),
+                Math.max(head.lastIndexOf(';'), head.lastIndexOf('\n')));
+        if (boundary < minimum) {
+            boundary = head.lastIndexOf(' ');
+        }
+        if (boundary >= minimum) {
+            head = head.substring(0, boundary);
+        }
+        return head.strip() + "…";
+    }
+}
@@ -0,0 +1,20 @@
+package com.arbu.childstoryapp.ai.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.Pattern;
+
+/**
+ * Option picked at an interactive story's choice point - DreamTales AI v3.0
+ */
+public class ChooseOptionRequest {
+
+    /**
+     * "A", "B" or "C"
+     */
+    @NotBlank
+    @Pattern(regexp = "[ABCabc]")
+    private String option;
+
+    public String getOption() { return option; }
+    public void setOption(String option) { this.option = option; }
+}
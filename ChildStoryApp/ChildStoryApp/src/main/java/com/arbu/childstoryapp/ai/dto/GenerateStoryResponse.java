@@ -13,6 +13,11 @@ public class GenerateStoryResponse {
      */
     private Long storyId;
 
+    /**
+     * Story title (from the model with structured generation, otherwise built from name and theme)
+     */
+    private String title;
+
     /**
      * The generated story text
      */
@@ -30,18 +35,38 @@ public class GenerateStoryResponse {
      */
     private String audioUrl;
 
+    /**
+     * Narration per page, in page order, so playback can start with the first page
+     */
+    private List<String> pageAudioUrls;
+
     /**
      * Video/slideshow URL (Premium feature)
      * Combines images with audio and transitions
      */
     private String videoUrl;
 
+    /**
+     * "rendering" when a slideshow was queued; the video appears on the saved story when ready
+     */
+    private String videoStatus;
+
     /**
      * Optional: List of scene descriptions used for image generation
      * Can be useful for debugging or manual image regeneration
      */
     private List<String> sceneDescriptions;
 
+    /**
+     * Learning-language words the model used in the story (structured generation only)
+     */
+    private List<String> vocabulary;
+
+    /**
+     * Interactive stories only: the choice point the opening stops at
+     */
+    private StoryChoiceResponse choice;
+
     // Constructors
 
     public GenerateStoryResponse() {}
@@ -66,6 +91,14 @@ public class GenerateStoryResponse {
         this.storyId = storyId;
     }
 
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
     public String getStory() {
         return story;
     }
@@ -90,6 +123,14 @@ public class GenerateStoryResponse {
         this.audioUrl = audioUrl;
     }
 
+    public List<String> getPageAudioUrls() {
+        return pageAudioUrls;
+    }
+
+    public void setPageAudioUrls(List<String> pageAudioUrls) {
+        this.pageAudioUrls = pageAudioUrls;
+    }
+
     public String getVideoUrl() {
         return videoUrl;
     }
@@ -98,6 +139,14 @@ public class GenerateStoryResponse {
         this.videoUrl = videoUrl;
     }
 
+    public String getVideoStatus() {
+        return videoStatus;
+    }
+
+    public void setVideoStatus(String videoStatus) {
+        this.videoStatus = videoStatus;
+    }
+
     public List<String> getSceneDescriptions() {
         return sceneDescriptions;
     }
@@ -105,4 +154,20 @@ public class GenerateStoryResponse {
     public void setSceneDescriptions(List<String> sceneDescriptions) {
         this.sceneDescriptions = sceneDescriptions;
     }
+
+    public List<String> getVocabulary() {
+        return vocabulary;
+    }
+
+    public void setVocabulary(List<String> vocabulary) {
+        this.vocabulary = vocabulary;
+    }
+
+    public StoryChoiceResponse getChoice() {
+        return choice;
+    }
+
+    public void setChoice(StoryChoiceResponse choice) {
+        this.choice = choice;
+    }
 }
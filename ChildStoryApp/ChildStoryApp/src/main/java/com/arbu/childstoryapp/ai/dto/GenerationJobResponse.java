@@ -0,0 +1,53 @@
+package com.arbu.childstoryapp.ai.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.time.Instant;
+
+/**
+ * Status of an asynchronous story generation job
+ * Clients poll this until status is "succeeded" or "failed"
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GenerationJobResponse {
+    private Long jobId;
+    private String status; // "queued", "running", "succeeded", "failed"
+    private Integer queuePosition; // Only while queued
+    private Long storyId;
+    private String error;
+    private GenerateStoryResponse result; // Only when succeeded
+    private Instant createdAt;
+    private Instant startedAt;
+    private Instant finishedAt;
+
+    // Constructors
+    public GenerationJobResponse() {}
+
+    // Getters and Setters
+    public Long getJobId() { return jobId; }
+    public void setJobId(Long jobId) { this.jobId = jobId; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public Integer getQueuePosition() { return queuePosition; }
+    public void setQueuePosition(Integer queuePosition) { this.queuePosition = queuePosition; }
+
+    public Long getStoryId() { return storyId; }
+    public void setStoryId(Long storyId) { this.storyId = storyId; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public GenerateStoryResponse getResult() { return result; }
+    public void setResult(GenerateStoryResponse result) { this.result = result; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+
+    public Instant getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -0,0 +1,34 @@
+package com.arbu.childstoryapp.ai.dto;
+
+/**
+ * The continuation of an interactive story after an option was picked, for DreamTales AI v3.0
+ * Either leads to the next choice point or ends the story
+ */
+public class StoryBranchResponse {
+    private Long choiceId;
+    private String option;
+    private String continuation;
+    private String imageUrl;
+    private StoryChoiceResponse nextChoice;
+    private boolean ending;
+
+    public StoryBranchResponse() {}
+
+    public Long getChoiceId() { return choiceId; }
+    public void setChoiceId(Long choiceId) { this.choiceId = choiceId; }
+
+    public String getOption() { return option; }
+    public void setOption(String option) { this.option = option; }
+
+    public String getContinuation() { return continuation; }
+    public void setContinuation(String continuation) { this.continuation = continuation; }
+
+    public String getImageUrl() { return imageUrl; }
+    public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
+
+    public StoryChoiceResponse getNextChoice() { return nextChoice; }
+    public void setNextChoice(StoryChoiceResponse nextChoice) { this.nextChoice = nextChoice; }
+
+    public boolean isEnding() { return ending; }
+    public void setEnding(boolean ending) { this.ending = ending; }
+}
@@ -0,0 +1,52 @@
+package com.arbu.childstoryapp.ai.dto;
+
+import com.arbu.childstoryapp.domain.InteractiveStoryChoice;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A choice point of an interactive story for DreamTales AI v3.0
+ * Options are labelled "A", "B" and (optionally) "C" in order
+ */
+public class StoryChoiceResponse {
+    private Long id;
+    private Integer choicePoint;
+    private String prompt;
+    private List<String> options;
+    private String selectedOption;
+
+    public StoryChoiceResponse() {}
+
+    // Static factory method
+    public static StoryChoiceResponse fromEntity(InteractiveStoryChoice choice) {
+        StoryChoiceResponse response = new StoryChoiceResponse();
+        response.setId(choice.getId());
+        response.setChoicePoint(choice.getChoicePoint());
+        response.setPrompt(choice.getPrompt());
+        List<String> options = new ArrayList<>(3);
+        options.add(choice.getOptionA());
+        options.add(choice.getOptionB());
+        if (choice.getOptionC() != null) {
+            options.add(choice.getOptionC());
+        }
+        response.setOptions(options);
+        response.setSelectedOption(choice.getSelectedOption());
+        return response;
+    }
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Integer getChoicePoint() { return choicePoint; }
+    public void setChoicePoint(Integer choicePoint) { this.choicePoint = choicePoint; }
+
+    public String getPrompt() { return prompt; }
+    public void setPrompt(String prompt) { this.prompt = prompt; }
+
+    public List<String> getOptions() { return options; }
+    public void setOptions(List<String> options) { this.options = options; }
+
+    public String getSelectedOption() { return selectedOption; }
+    public void setSelectedOption(String selectedOption) { this.selectedOption = selectedOption; }
+}
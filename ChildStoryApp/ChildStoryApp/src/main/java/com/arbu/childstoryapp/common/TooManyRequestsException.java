@@ -0,0 +1,17 @@
+package com.arbu.childstoryapp.common;
+
+/**
+ * Thrown when the server is at capacity; mapped to 429 with a Retry-After header
+ */
+public class TooManyRequestsException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,23 @@
+package com.arbu.childstoryapp.common;
+
+/**
+ * Thrown when an upstream AI service is failing, rate limited or shedding load;
+ * mapped to 503 with a Retry-After header
+ */
+public class UpstreamUnavailableException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public UpstreamUnavailableException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public UpstreamUnavailableException(String message, long retryAfterSeconds, Throwable cause) {
+        super(message, cause);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,44 @@
+package com.arbu.childstoryapp.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Executors used by the AI generation pipeline.
+ * Scene, image and audio generation run here instead of on the servlet thread.
+ * Slideshow rendering is CPU-bound and gets its own pool, sized to the cores by default.
+ */
+@Configuration
+public class AiExecutorConfig {
+
+    @Bean(name = "aiTaskExecutor")
+    public ThreadPoolTaskExecutor aiTaskExecutor(
+            @Value("${ai.pipeline.threads:16}") int threads,
+            @Value("${ai.pipeline.queueCapacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(threads);
+        executor.setMaxPoolSize(threads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("ai-gen-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(name = "videoRenderExecutor")
+    public ThreadPoolTaskExecutor videoRenderExecutor(
+            @Value("${ai.video.threads:0}") int threads,
+            @Value("${ai.video.queueCapacity:20}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("video-render-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
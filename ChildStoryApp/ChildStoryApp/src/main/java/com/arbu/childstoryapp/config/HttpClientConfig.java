@@ -0,0 +1,77 @@
+package com.arbu.childstoryapp.config;
+
+import io.netty.channel.ChannelOption;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Scope;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+/**
+ * Outbound HTTP client shared by the AI clients (model, image, TTS).
+ * One pooled Reactor Netty connection provider with bounded pool, idle eviction,
+ * connect/response timeouts, gzip and HTTP/2 (falling back to HTTP/1.1).
+ * Pool metrics are published as reactor.netty.connection.provider.* (pool name "ai-http").
+ */
+@Configuration
+public class HttpClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider aiConnectionProvider(
+            @Value("${ai.http.pool.maxConnections:50}") int maxConnections,
+            @Value("${ai.http.pool.pendingAcquireMaxCount:200}") int pendingAcquireMaxCount,
+            @Value("${ai.http.pool.pendingAcquireTimeout:PT5S}") Duration pendingAcquireTimeout,
+            @Value("${ai.http.pool.maxIdleTime:PT30S}") Duration maxIdleTime,
+            @Value("${ai.http.pool.maxLifeTime:PT5M}") Duration maxLifeTime) {
+        return ConnectionProvider.builder("ai-http")
+                .maxConnections(maxConnections)
+                .pendingAcquireMaxCount(pendingAcquireMaxCount)
+                .pendingAcquireTimeout(pendingAcquireTimeout)
+                .maxIdleTime(maxIdleTime)
+                .maxLifeTime(maxLifeTime)
+                .evictInBackground(maxIdleTime)
+                .metrics(true)
+                .build();
+    }
+
+    @Bean
+    public HttpClient aiHttpClient(
+            ConnectionProvider aiConnectionProvider,
+            @Value("${ai.http.connectTimeout:PT5S}") Duration connectTimeout,
+            @Value("${ai.http.responseTimeout:PT60S}") Duration responseTimeout,
+            @Value("${ai.http.keepAlive:true}") boolean keepAlive,
+            @Value("${ai.http.http2:true}") boolean http2,
+            @Value("${ai.http.compress:true}") boolean compress) {
+        HttpClient client = HttpClient.create(aiConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, keepAlive)
+                .keepAlive(keepAlive)
+                // Longest gap allowed while waiting for (more of) a response; also bounds streamed responses
+                .responseTimeout(responseTimeout)
+                .compress(compress);
+        if (http2) {
+            client = client.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return client;
+    }
+
+    /**
+     * New builder per injection point, preconfigured with the shared connector and buffer limit.
+     */
+    @Bean
+    @Scope("prototype")
+    public WebClient.Builder aiWebClientBuilder(
+            HttpClient aiHttpClient,
+            @Value("${ai.http.maxInMemorySize:2MB}") DataSize maxInMemorySize) {
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(aiHttpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxInMemorySize.toBytes()));
+    }
+}
@@ -0,0 +1,15 @@
+package com.arbu.childstoryapp.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Enables @Scheduled background tasks (story draft pre-generation, voice clone usage flushes,
+ * quest word index refresh), configured in application.properties.
+ * The scheduler has a single thread, so a task must not block it for long; long-running work
+ * (pre-generation) is started from the task and runs on Reactor threads.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
@@ -6,9 +6,12 @@ import java.time.Instant;
 /**
  * Interactive Story Choice entity for DreamTales AI v3.0
  * Supports "Choose Your Own Adventure" mode with branching storylines
+ * Choice points form a tree: each row is reached by the options in its branch path, and a
+ * continuation is only generated (and stored here) once someone picks that option
  */
 @Entity
-@Table(name = "interactive_story_choices")
+@Table(name = "interactive_story_choices",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"story_id", "branch_path"}))
 public class InteractiveStoryChoice {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -23,6 +26,13 @@ public class InteractiveStoryChoice {
     @Column(nullable = false)
     private Integer choicePoint;
 
+    /**
+     * Options chosen on the way to this choice point, e.g. "" for the first point, "B" for the
+     * point reached by picking B at the first one
+     */
+    @Column(nullable = false, length = 10)
+    private String branchPath;
+
     /**
      * The question or prompt presented to the user
      * e.g., "Elif, ormana mı gitsin, yoksa gizemli mağaraya mı?"
@@ -111,6 +121,9 @@ public class InteractiveStoryChoice {
     public Integer getChoicePoint() { return choicePoint; }
     public void setChoicePoint(Integer choicePoint) { this.choicePoint = choicePoint; }
 
+    public String getBranchPath() { return branchPath; }
+    public void setBranchPath(String branchPath) { this.branchPath = branchPath; }
+
     public String getPrompt() { return prompt; }
     public void setPrompt(String prompt) { this.prompt = prompt; }
 
@@ -11,6 +11,7 @@ import lombok.AllArgsConstructor;
  */
 @Entity
 @Table(name = "language_words")
+@EntityListeners(LanguageWordChangeListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
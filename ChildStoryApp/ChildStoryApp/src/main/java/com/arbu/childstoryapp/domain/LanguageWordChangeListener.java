@@ -0,0 +1,28 @@
+package com.arbu.childstoryapp.domain;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Change counter for language_words in DreamTales AI v3.0
+ * Bumped on every insert, update or delete made through JPA, so in-memory indexes built from
+ * the table can tell they are out of date without querying it.
+ */
+public class LanguageWordChangeListener {
+
+    private static final AtomicLong VERSION = new AtomicLong();
+
+    public static long version() {
+        return VERSION.get();
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    void changed(LanguageWord word) {
+        VERSION.incrementAndGet();
+    }
+}
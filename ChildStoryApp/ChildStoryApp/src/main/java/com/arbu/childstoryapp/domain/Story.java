@@ -8,10 +8,17 @@ import java.time.Instant;
  * Represents a generated story that can be saved, shared, and replayed
  */
 @Entity
-@Table(name = "stories")
+// Serves the library query: a user's stories by (created_at, id), newest first
+@Table(name = "stories", indexes = @Index(name = "idx_stories_user_created", columnList = "user_id, created_at, id"))
+// Fetch plan for StoryResponse: the child is joined in; the parent story is only read by id, which needs no load
+@NamedEntityGraph(name = Story.WITH_CHILD, attributeNodes = @NamedAttributeNode("child"))
 public class Story {
+    public static final String WITH_CHILD = "Story.withChild";
+
+    // Pooled sequence instead of IDENTITY so a story, its pages and collections are inserted in JDBC batches
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "story_seq")
+    @SequenceGenerator(name = "story_seq", sequenceName = "story_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(optional = false, fetch = FetchType.LAZY)
@@ -45,6 +52,12 @@ public class Story {
     @Column(length = 500)
     private String videoUrl;
 
+    /**
+     * Slideshow rendering state: null (not requested), "rendering", "ready" or "failed"
+     */
+    @Column(length = 20)
+    private String videoStatus;
+
     /**
      * Story generation mode: "quick" or "creative"
      */
@@ -69,6 +82,13 @@ public class Story {
     @JoinColumn(name = "parent_story_id")
     private Story parentStory;
 
+    /**
+     * Rolling summary of the series up to and including this story, one line per episode
+     * Used as continuity context when a sequel is generated
+     */
+    @Column(columnDefinition = "TEXT")
+    private String seriesSummary;
+
     /**
      * User's drawing/artwork for this story (URL)
      */
@@ -156,6 +176,9 @@ public class Story {
     public String getVideoUrl() { return videoUrl; }
     public void setVideoUrl(String videoUrl) { this.videoUrl = videoUrl; }
 
+    public String getVideoStatus() { return videoStatus; }
+    public void setVideoStatus(String videoStatus) { this.videoStatus = videoStatus; }
+
     public String getMode() { return mode; }
     public void setMode(String mode) { this.mode = mode; }
 
@@ -168,6 +191,9 @@ public class Story {
     public Story getParentStory() { return parentStory; }
     public void setParentStory(Story parentStory) { this.parentStory = parentStory; }
 
+    public String getSeriesSummary() { return seriesSummary; }
+    public void setSeriesSummary(String seriesSummary) { this.seriesSummary = seriesSummary; }
+
     public String getUserDrawingUrl() { return userDrawingUrl; }
     public void setUserDrawingUrl(String userDrawingUrl) { this.userDrawingUrl = userDrawingUrl; }
 
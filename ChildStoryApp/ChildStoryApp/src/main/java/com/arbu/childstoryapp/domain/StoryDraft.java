@@ -0,0 +1,80 @@
+package com.arbu.childstoryapp.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Story Draft entity for DreamTales AI v3.0
+ * A Quick-mode story (text and media) generated ahead of time for a child and theme.
+ * Unclaimed until a matching /api/ai/generate-story request takes it; expires otherwise.
+ */
+@Entity
+@Table(name = "story_drafts", indexes = {
+    @Index(name = "idx_story_drafts_child_theme", columnList = "child_id, theme"),
+    @Index(name = "idx_story_drafts_expires_at", columnList = "expiresAt")
+})
+public class StoryDraft {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private UserAccount user;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private ChildProfile child;
+
+    /**
+     * Normalized (trimmed, lower-case) theme; null for stories without a theme
+     */
+    @Column(length = 80)
+    private String theme;
+
+    /**
+     * The generated StructuredStory, serialized as JSON
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String storyPayload;
+
+    /**
+     * The GeneratedMedia (scenes, image and audio URLs), serialized as JSON
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String mediaPayload;
+
+    private Instant createdAt;
+
+    private Instant expiresAt;
+
+    /**
+     * Set when a request takes the draft; a draft is claimed at most once
+     */
+    private Instant claimedAt;
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public UserAccount getUser() { return user; }
+    public void setUser(UserAccount user) { this.user = user; }
+
+    public ChildProfile getChild() { return child; }
+    public void setChild(ChildProfile child) { this.child = child; }
+
+    public String getTheme() { return theme; }
+    public void setTheme(String theme) { this.theme = theme; }
+
+    public String getStoryPayload() { return storyPayload; }
+    public void setStoryPayload(String storyPayload) { this.storyPayload = storyPayload; }
+
+    public String getMediaPayload() { return mediaPayload; }
+    public void setMediaPayload(String mediaPayload) { this.mediaPayload = mediaPayload; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getExpiresAt() { return expiresAt; }
+    public void setExpiresAt(Instant expiresAt) { this.expiresAt = expiresAt; }
+
+    public Instant getClaimedAt() { return claimedAt; }
+    public void setClaimedAt(Instant claimedAt) { this.claimedAt = claimedAt; }
+}
@@ -0,0 +1,104 @@
+package com.arbu.childstoryapp.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Story Generation Job entity for DreamTales AI v3.0
+ * A queued /api/ai/generate-story request, persisted so it survives a restart
+ */
+@Entity
+@Table(name = "story_generation_jobs", indexes = {
+    @Index(name = "idx_story_generation_jobs_status", columnList = "status")
+})
+public class StoryGenerationJob {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(optional = false, fetch = FetchType.LAZY)
+    private UserAccount user;
+
+    /**
+     * Job status: "queued", "running", "succeeded", "failed"
+     */
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    /**
+     * The original GenerateStoryRequest, serialized as JSON
+     */
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String requestPayload;
+
+    /**
+     * The GenerateStoryResponse, serialized as JSON (set when succeeded)
+     */
+    @Column(columnDefinition = "TEXT")
+    private String resultPayload;
+
+    /**
+     * ID of the saved story (set when succeeded)
+     */
+    private Long storyId;
+
+    /**
+     * Error message if the job failed
+     */
+    @Column(columnDefinition = "TEXT")
+    private String errorMessage;
+
+    /**
+     * Number of times a worker has started this job (restarts re-run interrupted jobs)
+     */
+    private Integer attempts = 0;
+
+    /**
+     * Day the job's story was counted against the daily limit (given back if the job fails)
+     */
+    private java.time.LocalDate quotaReservedOn;
+
+    private Instant createdAt;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    // Getters and Setters
+
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public UserAccount getUser() { return user; }
+    public void setUser(UserAccount user) { this.user = user; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getRequestPayload() { return requestPayload; }
+    public void setRequestPayload(String requestPayload) { this.requestPayload = requestPayload; }
+
+    public String getResultPayload() { return resultPayload; }
+    public void setResultPayload(String resultPayload) { this.resultPayload = resultPayload; }
+
+    public Long getStoryId() { return storyId; }
+    public void setStoryId(Long storyId) { this.storyId = storyId; }
+
+    public String getErrorMessage() { return errorMessage; }
+    public void setErrorMessage(String errorMessage) { this.errorMessage = errorMessage; }
+
+    public Integer getAttempts() { return attempts; }
+    public void setAttempts(Integer attempts) { this.attempts = attempts; }
+
+    public java.time.LocalDate getQuotaReservedOn() { return quotaReservedOn; }
+    public void setQuotaReservedOn(java.time.LocalDate quotaReservedOn) { this.quotaReservedOn = quotaReservedOn; }
+
+    public Instant getCreatedAt() { return createdAt; }
+    public void setCreatedAt(Instant createdAt) { this.createdAt = createdAt; }
+
+    public Instant getStartedAt() { return startedAt; }
+    public void setStartedAt(Instant startedAt) { this.startedAt = startedAt; }
+
+    public Instant getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(Instant finishedAt) { this.finishedAt = finishedAt; }
+}
@@ -7,12 +7,15 @@ import java.util.ArrayList;
 /**
  * StoryPage entity
  * Represents a single page of a story, supporting language injection.
+ * Saved by cascade from {@link Story#getPages()}; ids come from a pooled sequence so the
+ * pages of a story go out as one batched INSERT.
  */
 @Entity
 @Table(name = "story_pages")
 public class StoryPage {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "story_page_seq")
+    @SequenceGenerator(name = "story_page_seq", sequenceName = "story_page_seq", allocationSize = 50)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -31,6 +34,9 @@ public class StoryPage {
     @Column(length = 500)
     private String imageUrl;
 
+    @Column(length = 500)
+    private String audioUrl; // Narration of this page
+
     @ElementCollection
     @CollectionTable(name = "story_page_vocabulary", joinColumns = @JoinColumn(name = "page_id"))
     @Column(name = "word_id")
@@ -56,6 +62,9 @@ public class StoryPage {
     public String getImageUrl() { return imageUrl; }
     public void setImageUrl(String imageUrl) { this.imageUrl = imageUrl; }
 
+    public String getAudioUrl() { return audioUrl; }
+    public void setAudioUrl(String audioUrl) { this.audioUrl = audioUrl; }
+
     public List<String> getVocabularyWordIds() { return vocabularyWordIds; }
     public void setVocabularyWordIds(List<String> vocabularyWordIds) { this.vocabularyWordIds = vocabularyWordIds; }
 }
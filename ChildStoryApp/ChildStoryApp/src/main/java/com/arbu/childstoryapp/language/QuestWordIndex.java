@@ -0,0 +1,153 @@
+package com.arbu.childstoryapp.language;
+
+import com.arbu.childstoryapp.domain.LanguageWord;
+import com.arbu.childstoryapp.repository.LanguageWordRepository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.random.RandomGenerator;
+
+/**
+ * Quest-word index for language-learning stories
+ * Word ids partitioned by language, difficulty and category, with a partition for every
+ * combination of wildcards, so any query is a single lookup. The language of a word is the
+ * prefix of its id ("es_001" -> "es"). Sampling draws random positions and rejects excluded
+ * ids, which is O(k) while at least half of a partition is still fresh; beyond that it falls
+ * back to one scan of the partition. Immutable and thread-safe once built.
+ */
+public final class QuestWordIndex {
+
+    private static final String ANY = "*";
+
+    private final Map<String, String[]> partitions;
+    /** Language codes, plus their English names, lower-cased -> language code */
+    private final Map<String, String> languages;
+    private final int size;
+
+    private QuestWordIndex(Map<String, String[]> partitions, Map<String, String> languages, int size) {
+        this.partitions = partitions;
+        this.languages = languages;
+        this.size = size;
+    }
+
+    public static QuestWordIndex of(Collection<? extends LanguageWordRepository.IndexEntry> entries) {
+        Map<String, List<String>> lists = new HashMap<>();
+        Map<String, String> languages = new HashMap<>();
+        for (LanguageWordRepository.IndexEntry entry : entries) {
+            String language = languageOf(entry.getId());
+            languages.put(language, language);
+            String languageName = Locale.forLanguageTag(language).getDisplayLanguage(Locale.ENGLISH);
+            if (!languageName.isEmpty()) {
+                languages.putIfAbsent(languageName.toLowerCase(Locale.ROOT), language);
+            }
+            for (String l : new String[] {language, ANY}) {
+                for (String d : new String[] {name(entry.getDifficulty()), ANY}) {
+                    for (String c : new String[] {name(entry.getCategory()), ANY}) {
+                        lists.computeIfAbsent(key(l, d, c), k -> new ArrayList<>()).add(entry.getId());
+                    }
+                }
+            }
+        }
+        Map<String, String[]> partitions = new HashMap<>();
+        lists.forEach((key, ids) -> partitions.put(key, ids.toArray(String[]::new)));
+        return new QuestWordIndex(Map.copyOf(partitions), Map.copyOf(languages), entries.size());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Language code for a child's target language, given as a code ("es") or an English name
+     * ("Spanish"); null when it is blank or no word in the index is in that language
+     */
+    public String resolveLanguage(String targetLanguage) {
+        if (targetLanguage == null || targetLanguage.isBlank()) {
+            return null;
+        }
+        return languages.get(targetLanguage.strip().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Up to {@code count} distinct random word ids that are not in {@code excluded}.
+     * Null criteria match anything. When the exact partition runs out of fresh words the
+     * category, then the difficulty is dropped; the language never is.
+     */
+    public List<String> sample(String language, LanguageWord.Difficulty difficulty, LanguageWord.Category category,
+                               Set<String> excluded, int count, RandomGenerator random) {
+        Set<String> chosen = new LinkedHashSet<>();
+        String l = language != null ? language : ANY;
+        String[] keys = {
+                key(l, name(difficulty), name(category)),
+                key(l, name(difficulty), ANY),
+                key(l, ANY, ANY)
+        };
+        String previous = null;
+        for (String key : keys) {
+            if (chosen.size() >= count) {
+                break;
+            }
+            if (key.equals(previous)) {
+                continue;
+            }
+            previous = key;
+            String[] ids = partitions.get(key);
+            if (ids != null) {
+                sampleInto(ids, excluded, chosen, count, random);
+            }
+        }
+        return List.copyOf(chosen);
+    }
+
+    private static void sampleInto(String[] ids, Set<String> excluded, Set<String> chosen, int count,
+                                   RandomGenerator random) {
+        int needed = count - chosen.size();
+        // Each draw is fresh with probability >= 1/2 while at most half the partition is taken
+        if (excluded.size() + chosen.size() <= ids.length / 2) {
+            int attempts = 4 * needed + 16;
+            while (chosen.size() < count && attempts-- > 0) {
+                String id = ids[random.nextInt(ids.length)];
+                if (!excluded.contains(id)) {
+                    chosen.add(id);
+                }
+            }
+            if (chosen.size() >= count) {
+                return;
+            }
+        }
+
+        // Mostly used up: collect what is left and take a partial Fisher–Yates shuffle of it
+        List<String> fresh = new ArrayList<>();
+        for (String id : ids) {
+            if (!excluded.contains(id) && !chosen.contains(id)) {
+                fresh.add(id);
+            }
+        }
+        needed = Math.min(count - chosen.size(), fresh.size());
+        for (int i = 0; i < needed; i++) {
+            int j = i + random.nextInt(fresh.size() - i);
+            String id = fresh.get(j);
+            fresh.set(j, fresh.get(i));
+            chosen.add(id);
+        }
+    }
+
+    private static String languageOf(String id) {
+        int separator = id.indexOf('_');
+        return separator > 0 ? id.substring(0, separator).toLowerCase(Locale.ROOT) : "";
+    }
+
+    private static String name(Enum<?> value) {
+        return value != null ? value.name() : ANY;
+    }
+
+    private static String key(String language, String difficulty, String category) {
+        return language + '|' + difficulty + '|' + category;
+    }
+}
@@ -0,0 +1,117 @@
+package com.arbu.childstoryapp.language;
+
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.LanguageWord;
+import com.arbu.childstoryapp.domain.LanguageWordChangeListener;
+import com.arbu.childstoryapp.repository.LanguageWordRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Quest-word sampling for DreamTales AI v3.0
+ * Picks a story's quest words from an in-memory {@link QuestWordIndex} instead of loading the
+ * whole vocabulary table per story. Words are drawn in the child's target language and at their
+ * proficiency level, skipping words already in their word bag. The index is rebuilt on first
+ * use after any JPA write to language_words, and on a schedule (ai.quest.index.refreshInterval)
+ * to pick up rows changed outside the application.
+ */
+@Component
+public class QuestWordSampler {
+    private static final Logger log = LoggerFactory.getLogger(QuestWordSampler.class);
+
+    private final LanguageWordRepository languageWordRepository;
+
+    private final Counter refreshes;
+    private final Counter shortSamples;
+
+    private volatile Snapshot snapshot;
+
+    public QuestWordSampler(LanguageWordRepository languageWordRepository, MeterRegistry meterRegistry) {
+        this.languageWordRepository = languageWordRepository;
+
+        this.refreshes = Counter.builder("ai.quest.index.refreshes").register(meterRegistry);
+        this.shortSamples = Counter.builder("ai.quest.sample.short")
+                .description("Samples that found fewer fresh words than requested")
+                .register(meterRegistry);
+        Gauge.builder("ai.quest.index.words", this, sampler -> {
+                    Snapshot current = sampler.snapshot;
+                    return current != null ? current.index.size() : 0;
+                })
+                .register(meterRegistry);
+    }
+
+    /**
+     * Up to {@code count} random word ids for a story of this child; fewer (possibly none) when
+     * the child has already collected most of the words in their language
+     */
+    public List<String> sample(ChildProfile child, int count) {
+        QuestWordIndex index = current();
+        String language = index.resolveLanguage(child.getTargetLanguage());
+        if (language == null && child.getTargetLanguage() != null && !child.getTargetLanguage().isBlank()) {
+            log.debug("No words for target language '{}'; sampling from all languages", child.getTargetLanguage());
+        }
+        Set<String> excluded = child.getWordBag() != null ? child.getWordBag() : Set.of();
+        List<String> wordIds = index.sample(language, difficultyOf(child.getProficiencyLevel()), null,
+                excluded, count, ThreadLocalRandom.current());
+        if (wordIds.size() < count) {
+            shortSamples.increment();
+        }
+        return wordIds;
+    }
+
+    @Scheduled(fixedDelayString = "${ai.quest.index.refreshInterval:PT10M}",
+            initialDelayString = "${ai.quest.index.refreshInterval:PT10M}")
+    public void refreshScheduled() {
+        if (snapshot != null) {
+            refresh();
+        }
+    }
+
+    private QuestWordIndex current() {
+        Snapshot current = snapshot;
+        if (current == null || current.version != LanguageWordChangeListener.version()) {
+            synchronized (this) {
+                current = snapshot;
+                if (current == null || current.version != LanguageWordChangeListener.version()) {
+                    current = refresh();
+                }
+            }
+        }
+        return current.index;
+    }
+
+    private synchronized Snapshot refresh() {
+        // Read the version first: a change made while loading leaves the snapshot behind and
+        // triggers another rebuild
+        long version = LanguageWordChangeListener.version();
+        QuestWordIndex index = QuestWordIndex.of(languageWordRepository.findAllIndexEntries());
+        Snapshot refreshed = new Snapshot(index, version);
+        snapshot = refreshed;
+        refreshes.increment();
+        log.debug("Quest word index rebuilt with {} words", index.size());
+        return refreshed;
+    }
+
+    private static LanguageWord.Difficulty difficultyOf(ChildProfile.ProficiencyLevel level) {
+        return level != null ? LanguageWord.Difficulty.valueOf(level.name()) : null;
+    }
+
+    private static final class Snapshot {
+        private final QuestWordIndex index;
+        private final long version;
+
+        private Snapshot(QuestWordIndex index, long version) {
+            this.index = index;
+            this.version = version;
+        }
+    }
+}
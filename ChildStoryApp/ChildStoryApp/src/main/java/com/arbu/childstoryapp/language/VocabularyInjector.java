@@ -0,0 +1,272 @@
+package com.arbu.childstoryapp.language;
+
+import com.arbu.childstoryapp.domain.LanguageWord;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Vocabulary injection for language-learning pages
+ * Replaces every whole-word, case-insensitive occurrence of a word's translation with the
+ * foreign word in brackets ("tree" -> "[árbol]") and reports which words were used.
+ * Built once per story as an Aho–Corasick automaton over all translations, so a page is
+ * scanned once however many words there are. Where translations overlap ("ice", "ice cream")
+ * the leftmost, then longest, match wins. Immutable and thread-safe once built.
+ */
+public final class VocabularyInjector {
+
+    private static final int ROOT = 0;
+    private static final char[] NO_KEYS = new char[0];
+    private static final int[] NO_TARGETS = new int[0];
+
+    /** Words by pattern index; a translation shared by several words belongs to the first */
+    private final List<LanguageWord> words;
+    private final int[] patternLengths;
+
+    // Trie with failure links; children are kept as sorted keys per node for binary search
+    private final char[][] childKeys;
+    private final int[][] childTargets;
+    private final int[] failure;
+    /** Longest pattern ending at the node (-1 if none) */
+    private final int[] output;
+    /** Nearest node on the failure chain that has an output (-1 if none) */
+    private final int[] outputLink;
+
+    private VocabularyInjector(List<LanguageWord> words, int[] patternLengths, char[][] childKeys,
+                               int[][] childTargets, int[] failure, int[] output, int[] outputLink) {
+        this.words = words;
+        this.patternLengths = patternLengths;
+        this.childKeys = childKeys;
+        this.childTargets = childTargets;
+        this.failure = failure;
+        this.output = output;
+        this.outputLink = outputLink;
+    }
+
+    /**
+     * Builds the automaton; words without a translation are ignored
+     */
+    public static VocabularyInjector of(List<LanguageWord> words) {
+        Builder builder = new Builder();
+        for (LanguageWord word : words) {
+            String translation = word.getTranslation();
+            if (translation != null && !translation.isBlank()) {
+                builder.add(fold(translation.strip()), word);
+            }
+        }
+        return builder.build();
+    }
+
+    public boolean isEmpty() {
+        return words.isEmpty();
+    }
+
+    /**
+     * One pass over the page: the text with translations replaced, and the ids of the words used
+     * in order of first use
+     */
+    public Injection inject(String text) {
+        if (words.isEmpty() || text.isEmpty()) {
+            return new Injection(text, List.of());
+        }
+
+        // Longest boundary-respecting match starting at each position
+        int length = text.length();
+        int[] bestAt = null;
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            state = step(state, Character.toLowerCase(text.charAt(i)));
+            for (int node = output[state] >= 0 ? state : outputLink[state]; node >= 0; node = outputLink[node]) {
+                int pattern = output[node];
+                int start = i - patternLengths[pattern] + 1;
+                if (isWordBoundary(text, start - 1) && isWordBoundary(text, i + 1)) {
+                    if (bestAt == null) {
+                        bestAt = new int[length];
+                        Arrays.fill(bestAt, -1);
+                    }
+                    if (bestAt[start] < 0 || patternLengths[pattern] > patternLengths[bestAt[start]]) {
+                        bestAt[start] = pattern;
+                    }
+                }
+            }
+        }
+        if (bestAt == null) {
+            return new Injection(text, List.of());
+        }
+
+        StringBuilder result = new StringBuilder(length + 32);
+        Set<String> used = new LinkedHashSet<>();
+        int copied = 0;
+        for (int start = 0; start < length; start++) {
+            int pattern = bestAt[start];
+            if (pattern < 0 || start < copied) {
+                continue;
+            }
+            LanguageWord word = words.get(pattern);
+            result.append(text, copied, start).append('[').append(word.getWord()).append(']');
+            copied = start + patternLengths[pattern];
+            used.add(word.getId());
+        }
+        result.append(text, copied, length);
+        return new Injection(result.toString(), new ArrayList<>(used));
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int next = child(state, c);
+            if (next >= 0) {
+                return next;
+            }
+            if (state == ROOT) {
+                return ROOT;
+            }
+            state = failure[state];
+        }
+    }
+
+    private int child(int node, char c) {
+        int index = Arrays.binarySearch(childKeys[node], c);
+        return index >= 0 ? childTargets[node][index] : -1;
+    }
+
+    /**
+     * True when position {@code index} is outside the text or not part of a word
+     */
+    private static boolean isWordBoundary(String text, int index) {
+        if (index < 0 || index >= text.length()) {
+            return true;
+        }
+        char c = text.charAt(index);
+        return !(Character.isLetterOrDigit(c) || c == '_');
+    }
+
+    /**
+     * Per-character lower case, so folded text keeps the positions of the original
+     * (String.toLowerCase can change the length, e.g. for 'İ')
+     */
+    private static String fold(String value) {
+        char[] chars = value.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Replaced page text and the ids of the words it now contains
+     */
+    public static final class Injection {
+        private final String text;
+        private final List<String> wordIds;
+
+        private Injection(String text, List<String> wordIds) {
+            this.text = text;
+            this.wordIds = wordIds;
+        }
+
+        public String getText() { return text; }
+
+        public List<String> getWordIds() { return wordIds; }
+    }
+
+    private static final class Builder {
+        private final List<LanguageWord> words = new ArrayList<>();
+        private final List<Integer> lengths = new ArrayList<>();
+        private final List<char[]> keys = new ArrayList<>();
+        private final List<int[]> targets = new ArrayList<>();
+        private final List<Integer> outputs = new ArrayList<>();
+
+        private Builder() {
+            newNode();
+        }
+
+        private void add(String pattern, LanguageWord word) {
+            int node = ROOT;
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                int next = childOf(node, c);
+                if (next < 0) {
+                    next = newNode();
+                    addChild(node, c, next);
+                }
+                node = next;
+            }
+            if (outputs.get(node) < 0) {
+                outputs.set(node, words.size());
+                words.add(word);
+                lengths.add(pattern.length());
+            }
+        }
+
+        private VocabularyInjector build() {
+            int size = keys.size();
+            int[] failure = new int[size];
+            int[] output = new int[size];
+            int[] outputLink = new int[size];
+            Arrays.fill(outputLink, -1);
+            for (int node = 0; node < size; node++) {
+                output[node] = outputs.get(node);
+            }
+
+            // Breadth-first, so a node's failure target is finished before its children
+            Deque<Integer> queue = new ArrayDeque<>();
+            for (int child : targets.get(ROOT)) {
+                failure[child] = ROOT;
+                queue.add(child);
+            }
+            while (!queue.isEmpty()) {
+                int node = queue.poll();
+                char[] nodeKeys = keys.get(node);
+                int[] nodeTargets = targets.get(node);
+                for (int i = 0; i < nodeKeys.length; i++) {
+                    int child = nodeTargets[i];
+                    int fallback = failure[node];
+                    while (fallback != ROOT && childOf(fallback, nodeKeys[i]) < 0) {
+                        fallback = failure[fallback];
+                    }
+                    int target = childOf(fallback, nodeKeys[i]);
+                    failure[child] = target >= 0 && target != child ? target : ROOT;
+                    outputLink[child] = output[failure[child]] >= 0 ? failure[child] : outputLink[failure[child]];
+                    queue.add(child);
+                }
+            }
+
+            int[] patternLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+            return new VocabularyInjector(List.copyOf(words), patternLengths,
+                    keys.toArray(char[][]::new), targets.toArray(int[][]::new), failure, output, outputLink);
+        }
+
+        private int newNode() {
+            keys.add(NO_KEYS);
+            targets.add(NO_TARGETS);
+            outputs.add(-1);
+            return keys.size() - 1;
+        }
+
+        private int childOf(int node, char c) {
+            int index = Arrays.binarySearch(keys.get(node), c);
+            return index >= 0 ? targets.get(node)[index] : -1;
+        }
+
+        private void addChild(int node, char c, int child) {
+            char[] oldKeys = keys.get(node);
+            int[] oldTargets = targets.get(node);
+            int insertAt = -Arrays.binarySearch(oldKeys, c) - 1;
+            char[] newKeys = new char[oldKeys.length + 1];
+            int[] newTargets = new int[oldTargets.length + 1];
+            System.arraycopy(oldKeys, 0, newKeys, 0, insertAt);
+            System.arraycopy(oldTargets, 0, newTargets, 0, insertAt);
+            newKeys[insertAt] = c;
+            newTargets[insertAt] = child;
+            System.arraycopy(oldKeys, insertAt, newKeys, insertAt + 1, oldKeys.length - insertAt);
+            System.arraycopy(oldTargets, insertAt, newTargets, insertAt + 1, oldTargets.length - insertAt);
+            keys.set(node, newKeys);
+            targets.set(node, newTargets);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.arbu.childstoryapp.media;
+
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Media Controller for DreamTales AI v3.0
+ * Serves generated media files. Range requests are supported (206 Partial Content), so
+ * players can start and seek without downloading the whole file. Files are content-addressed
+ * and never change, so they are cacheable forever.
+ */
+@RestController
+@RequestMapping("/api/media")
+public class MediaController {
+
+    private final MediaStore mediaStore;
+
+    public MediaController(MediaStore mediaStore) {
+        this.mediaStore = mediaStore;
+    }
+
+    @GetMapping("/{kind}/{name}")
+    public ResponseEntity<Resource> getMedia(@PathVariable String kind, @PathVariable String name) {
+        Optional<Path> file = mediaStore.resolve(kind, name);
+        if (file.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        Resource resource = new FileSystemResource(file.get());
+        MediaType contentType = MediaTypeFactory.getMediaType(resource).orElse(MediaType.APPLICATION_OCTET_STREAM);
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .cacheControl(CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable())
+                .header("Accept-Ranges", "bytes")
+                .body(resource);
+    }
+}
@@ -0,0 +1,178 @@
+package com.arbu.childstoryapp.media;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Local media storage for DreamTales AI v3.0
+ * Generated files (narration audio, scene images and thumbnails, slideshow videos) are stored under {@code <dir>/<kind>/<name>} and served
+ * by {@link MediaController}. Names are content addresses (hashes of what produced the file),
+ * so a file never changes once written and an existing file can be reused instead of regenerated.
+ */
+@Component
+public class MediaStore {
+    private static final Logger log = LoggerFactory.getLogger(MediaStore.class);
+
+    public static final String AUDIO = "audio";
+    public static final String IMAGES = "images";
+    public static final String VIDEO = "video";
+
+    private static final Set<String> KINDS = Set.of(AUDIO, IMAGES, VIDEO);
+    /** Work area for files written in pieces; not a kind, so never served */
+    private static final String TMP = "tmp";
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,128}\\.[a-z0-9]{1,8}");
+
+    private final Path root;
+    private final String baseUrl;
+
+    public MediaStore(@Value("${ai.storage.local.dir:./data/media}") String dir,
+                      @Value("${ai.storage.local.baseUrl:/api/media}") String baseUrl) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        try {
+            for (String kind : KINDS) {
+                Files.createDirectories(root.resolve(kind));
+            }
+            Files.createDirectories(root.resolve(TMP));
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot create media directory " + root, e);
+        }
+    }
+
+    /**
+     * Content address for the given inputs: SHA-256 over the parts, NUL-separated
+     */
+    public static String key(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (int i = 0; i < parts.length; i++) {
+                if (i > 0) {
+                    digest.update((byte) 0);
+                }
+                digest.update(String.valueOf(parts[i]).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Public URL of a stored file
+     */
+    public String url(String kind, String name) {
+        return baseUrl + "/" + kind + "/" + name;
+    }
+
+    /**
+     * Name of a stored file from its public URL, or null when the URL is not one of ours
+     */
+    public String nameOf(String kind, String url) {
+        if (url == null || !url.startsWith(url(kind, ""))) {
+            return null;
+        }
+        String name = url.substring(url(kind, "").length());
+        return NAME.matcher(name).matches() ? name : null;
+    }
+
+    /**
+     * URL of the file if it has already been stored
+     */
+    public Mono<String> findUrl(String kind, String name) {
+        return Mono.fromCallable(() -> Files.exists(path(kind, name)) ? url(kind, name) : null)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Stores the file unless it already exists, and returns its URL
+     */
+    public Mono<String> put(String kind, String name, byte[] data) {
+        return Mono.fromCallable(() -> {
+                    write(path(kind, name), data);
+                    return url(kind, name);
+                })
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Empty work file for output that is too large to build in memory; store it with {@link #putFile}
+     */
+    public Path createTempFile() throws IOException {
+        return Files.createTempFile(root.resolve(TMP), "media", ".part");
+    }
+
+    /**
+     * Moves a finished work file into the store (blocking) and returns its URL
+     */
+    public String putFile(String kind, String name, Path file) throws IOException {
+        Path target = path(kind, name);
+        try {
+            Files.move(file, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(file);
+        }
+        return url(kind, name);
+    }
+
+    public Mono<byte[]> read(String kind, String name) {
+        return Mono.fromCallable(() -> Files.readAllBytes(path(kind, name)))
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * Resolves a requested file, rejecting unknown kinds and names that could escape the store
+     */
+    public Optional<Path> resolve(String kind, String name) {
+        if (!KINDS.contains(kind) || !NAME.matcher(name).matches()) {
+            return Optional.empty();
+        }
+        Path file = root.resolve(kind).resolve(name);
+        return Files.isRegularFile(file) ? Optional.of(file) : Optional.empty();
+    }
+
+    private Path path(String kind, String name) {
+        if (!KINDS.contains(kind) || !NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException("Invalid media name: " + kind + "/" + name);
+        }
+        return root.resolve(kind).resolve(name);
+    }
+
+    private void write(Path file, byte[] data) {
+        if (Files.exists(file)) {
+            return;
+        }
+        try {
+            // Write then rename so readers (and range requests) never see a partial file
+            Path tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+            Files.write(tmp, data);
+            try {
+                Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Same content written concurrently
+                Files.deleteIfExists(tmp);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to store media file {}: {}", file, e.getMessage());
+            throw new UncheckedIOException(e);
+        }
+    }
+}
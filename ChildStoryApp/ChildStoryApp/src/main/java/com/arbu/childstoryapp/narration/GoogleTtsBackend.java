@@ -0,0 +1,87 @@
+package com.arbu.childstoryapp.narration;
+
+import com.arbu.childstoryapp.ai.ModelResilience;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Google Cloud Text-to-Speech backend (text:synthesize, LINEAR16).
+ * LINEAR16 responses are WAV files, so pages can be joined without re-encoding.
+ * Calls go through the shared AI HTTP client and the resilience layer. Audio comes back
+ * base64-encoded in JSON, so a long page can exceed the shared client's buffer limit;
+ * {@code ai.tts.google.maxResponseSize} applies instead.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.tts.backend", havingValue = "google")
+public class GoogleTtsBackend implements TtsBackend {
+
+    private static final String RESILIENCE_KEY = "google-tts";
+
+    private final WebClient webClient;
+    private final ModelResilience resilience;
+    private final String apiKey;
+    private final int sampleRate;
+    private final Duration timeout;
+
+    public GoogleTtsBackend(WebClient.Builder aiWebClientBuilder,
+                            ModelResilience resilience,
+                            @Value("${ai.tts.google.baseUrl:https://texttospeech.googleapis.com/v1}") String baseUrl,
+                            @Value("${ai.tts.google.apiKey:}") String apiKey,
+                            @Value("${ai.tts.google.sampleRate:24000}") int sampleRate,
+                            @Value("${ai.tts.google.timeout:PT20S}") Duration timeout,
+                            @Value("${ai.tts.google.maxResponseSize:8MB}") DataSize maxResponseSize) {
+        // The builder is a prototype, so this limit only applies to TTS
+        this.webClient = aiWebClientBuilder
+                .baseUrl(baseUrl)
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) maxResponseSize.toBytes()))
+                .build();
+        this.resilience = resilience;
+        this.apiKey = apiKey;
+        this.sampleRate = sampleRate;
+        this.timeout = timeout;
+    }
+
+    @Override
+    public String name() {
+        return "google-" + sampleRate;
+    }
+
+    @Override
+    public Mono<byte[]> synthesize(String text, String languageCode, String voiceName) {
+        return resilience.call(RESILIENCE_KEY, () -> Mono.defer(() -> {
+            if (apiKey == null || apiKey.isBlank()) {
+                return Mono.error(new IllegalStateException("ai.tts.google.apiKey (GOOGLE_TTS_API_KEY) is not set."));
+            }
+            Map<String, Object> body = Map.of(
+                    "input", Map.of("text", text),
+                    "voice", Map.of("languageCode", languageCode, "name", voiceName),
+                    "audioConfig", Map.of("audioEncoding", "LINEAR16", "sampleRateHertz", sampleRate));
+
+            return webClient.post()
+                    .uri(uriBuilder -> uriBuilder.path("/text:synthesize").queryParam("key", apiKey).build())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(BodyInserters.fromValue(body))
+                    .retrieve()
+                    .bodyToMono(JsonNode.class)
+                    .timeout(timeout);
+        })).handle((json, sink) -> {
+            String audio = json.path("audioContent").asText(null);
+            if (audio == null || audio.isEmpty()) {
+                sink.error(new RuntimeException("Empty response from text-to-speech"));
+                return;
+            }
+            sink.next(Base64.getDecoder().decode(audio));
+        });
+    }
+}
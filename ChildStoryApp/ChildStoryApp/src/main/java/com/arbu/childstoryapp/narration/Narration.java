@@ -0,0 +1,25 @@
+package com.arbu.childstoryapp.narration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Narration of a story: one audio file per page plus the whole story joined into one file
+ */
+public class Narration {
+    private String audioUrl;
+    private List<String> pageAudioUrls = new ArrayList<>();
+
+    public Narration() {}
+
+    public Narration(String audioUrl, List<String> pageAudioUrls) {
+        this.audioUrl = audioUrl;
+        this.pageAudioUrls = pageAudioUrls;
+    }
+
+    public String getAudioUrl() { return audioUrl; }
+    public void setAudioUrl(String audioUrl) { this.audioUrl = audioUrl; }
+
+    public List<String> getPageAudioUrls() { return pageAudioUrls; }
+    public void setPageAudioUrls(List<String> pageAudioUrls) { this.pageAudioUrls = pageAudioUrls; }
+}
@@ -0,0 +1,118 @@
+package com.arbu.childstoryapp.narration;
+
+import com.arbu.childstoryapp.media.MediaStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Story narration for DreamTales AI v3.0
+ * Each page is synthesized separately and in parallel, so the first page can play while the
+ * rest are still being narrated. Page audio is cached in the media store under a hash of
+ * (backend, language, voice, text); a page that was narrated before is never synthesized again.
+ * The pages are also joined into one file for the whole story. Clone voices (see
+ * {@link VoiceCloneService}) are spoken by the voice-clone backend instead of the TTS backend.
+ */
+@Service
+public class NarrationService {
+    private static final Logger log = LoggerFactory.getLogger(NarrationService.class);
+
+    private static final String EXTENSION = ".wav";
+
+    private final TtsBackend ttsBackend;
+    private final VoiceModelCache voiceModelCache;
+    private final MediaStore mediaStore;
+    private final int concurrency;
+    private final Duration pagePause;
+
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Timer synthesisTimer;
+
+    public NarrationService(TtsBackend ttsBackend,
+                            VoiceModelCache voiceModelCache,
+                            MediaStore mediaStore,
+                            MeterRegistry meterRegistry,
+                            @Value("${ai.tts.concurrency:4}") int concurrency,
+                            @Value("${ai.tts.pagePause:PT0.6S}") Duration pagePause) {
+        this.ttsBackend = ttsBackend;
+        this.voiceModelCache = voiceModelCache;
+        this.mediaStore = mediaStore;
+        this.concurrency = concurrency;
+        this.pagePause = pagePause;
+
+        this.cacheHits = Counter.builder("ai.tts.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.cacheMisses = Counter.builder("ai.tts.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.synthesisTimer = Timer.builder("ai.tts.synthesis")
+                .description("Time to synthesize one page")
+                .tag("backend", ttsBackend.name())
+                .register(meterRegistry);
+    }
+
+    /**
+     * Narrates every page and joins them into one file
+     */
+    public Mono<Narration> narrate(List<String> pages, String languageCode, String voiceName) {
+        return narratePages(pages, languageCode, voiceName)
+                .collectList()
+                .flatMap(pageUrls -> combine(pages, languageCode, voiceName)
+                        .map(audioUrl -> new Narration(audioUrl, pageUrls)));
+    }
+
+    /**
+     * Page audio URLs in page order, each emitted as soon as it and the pages before it are ready
+     */
+    public Flux<String> narratePages(List<String> pages, String languageCode, String voiceName) {
+        return Flux.fromIterable(pages)
+                .flatMapSequential(page -> narratePage(page, languageCode, voiceName), concurrency);
+    }
+
+    /**
+     * Joins already narrated pages into one file (cached like the pages)
+     */
+    public Mono<String> combine(List<String> pages, String languageCode, String voiceName) {
+        List<String> pageNames = pages.stream().map(page -> pageName(page, languageCode, voiceName)).toList();
+        String name = MediaStore.key(pageNames.toArray(String[]::new)) + EXTENSION;
+        return mediaStore.findUrl(MediaStore.AUDIO, name)
+                .switchIfEmpty(Mono.defer(() -> Flux.fromIterable(pageNames)
+                        .concatMap(pageName -> mediaStore.read(MediaStore.AUDIO, pageName))
+                        .map(WavAudio::parse)
+                        .collectList()
+                        .map(clips -> WavAudio.concat(clips, pagePause).toBytes())
+                        .flatMap(wav -> mediaStore.put(MediaStore.AUDIO, name, wav))));
+    }
+
+    private Mono<String> narratePage(String text, String languageCode, String voiceName) {
+        String name = pageName(text, languageCode, voiceName);
+        return mediaStore.findUrl(MediaStore.AUDIO, name)
+                .doOnNext(url -> cacheHits.increment())
+                .switchIfEmpty(Mono.defer(() -> {
+                    cacheMisses.increment();
+                    long started = System.nanoTime();
+                    return synthesize(text, languageCode, voiceName)
+                            .doOnNext(wav -> synthesisTimer.record(Duration.ofNanos(System.nanoTime() - started)))
+                            .flatMap(wav -> mediaStore.put(MediaStore.AUDIO, name, wav))
+                            .doOnError(e -> log.warn("Failed to narrate page ({} chars): {}", text.length(), e.getMessage()));
+                }));
+    }
+
+    private Mono<byte[]> synthesize(String text, String languageCode, String voiceName) {
+        return VoiceModelCache.isCloneVoice(voiceName)
+                ? voiceModelCache.synthesize(voiceName, text, languageCode)
+                : ttsBackend.synthesize(text, languageCode, voiceName);
+    }
+
+    private String pageName(String text, String languageCode, String voiceName) {
+        String backend = VoiceModelCache.isCloneVoice(voiceName) ? voiceModelCache.backendName() : ttsBackend.name();
+        return MediaStore.key(backend, languageCode, voiceName, text.trim()) + EXTENSION;
+    }
+}
@@ -0,0 +1,34 @@
+package com.arbu.childstoryapp.narration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Local TTS backend that makes no network calls.
+ * Produces silent WAV audio as long as the text would take to read aloud, so narration,
+ * caching and range requests can be run and tested without a speech API.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.tts.backend", havingValue = "stub", matchIfMissing = true)
+public class StubTtsBackend implements TtsBackend {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final long MILLIS_PER_WORD = 400;
+
+    @Override
+    public String name() {
+        return "stub";
+    }
+
+    @Override
+    public Mono<byte[]> synthesize(String text, String languageCode, String voiceName) {
+        return Mono.fromCallable(() -> {
+            int words = text.isBlank() ? 0 : text.trim().split("\\s+").length;
+            Duration duration = Duration.ofMillis(Math.max(1000, Math.min(60_000, words * MILLIS_PER_WORD)));
+            return WavAudio.silence(SAMPLE_RATE, duration).toBytes();
+        });
+    }
+}
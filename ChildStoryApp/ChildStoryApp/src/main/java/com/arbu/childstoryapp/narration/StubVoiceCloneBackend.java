@@ -0,0 +1,64 @@
+package com.arbu.childstoryapp.narration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Local voice-clone backend that makes no network calls.
+ * "Loading" a model takes {@code ai.voiceclone.stub.loadDelay}, so the warm cache can be
+ * observed; synthesis produces silent WAV of the spoken length, like {@link StubTtsBackend}.
+ */
+@Component
+@ConditionalOnProperty(name = "ai.voiceclone.backend", havingValue = "stub", matchIfMissing = true)
+public class StubVoiceCloneBackend implements VoiceCloneBackend {
+
+    private static final int SAMPLE_RATE = 16000;
+    private static final long MILLIS_PER_WORD = 400;
+
+    private final Duration loadDelay;
+
+    public StubVoiceCloneBackend(@Value("${ai.voiceclone.stub.loadDelay:PT0.5S}") Duration loadDelay) {
+        this.loadDelay = loadDelay;
+    }
+
+    @Override
+    public String name() {
+        return "stub-clone";
+    }
+
+    @Override
+    public Mono<LoadedVoice> load(String voiceModelId) {
+        return Mono.delay(loadDelay).thenReturn(new StubVoice(voiceModelId));
+    }
+
+    @Override
+    public Mono<byte[]> synthesize(LoadedVoice voice, String text, String languageCode) {
+        return Mono.fromCallable(() -> {
+            int words = text.isBlank() ? 0 : text.trim().split("\\s+").length;
+            Duration duration = Duration.ofMillis(Math.max(1000, Math.min(60_000, words * MILLIS_PER_WORD)));
+            return WavAudio.silence(SAMPLE_RATE, duration).toBytes();
+        });
+    }
+
+    @Override
+    public void unload(LoadedVoice voice) {
+        // Nothing held
+    }
+
+    private static final class StubVoice implements LoadedVoice {
+        private final String voiceModelId;
+
+        private StubVoice(String voiceModelId) {
+            this.voiceModelId = voiceModelId;
+        }
+
+        @Override
+        public String getVoiceModelId() {
+            return voiceModelId;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.arbu.childstoryapp.narration;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Text-to-speech backend for DreamTales AI v3.0
+ * Synthesizes one chunk of text (a story page) to WAV audio. All pages of a story must come
+ * back in the same WAV format so they can be joined into one narration file.
+ */
+public interface TtsBackend {
+
+    /**
+     * Identifies the backend in narration cache keys, so switching backends never serves
+     * audio made by the other one
+     */
+    String name();
+
+    /**
+     * @param text Text to speak
+     * @param languageCode BCP-47 language, e.g. "tr-TR"
+     * @param voiceName Backend voice name, e.g. "tr-TR-Wavenet-A"
+     * @return WAV file bytes (16-bit PCM)
+     */
+    Mono<byte[]> synthesize(String text, String languageCode, String voiceName);
+}
@@ -0,0 +1,39 @@
+package com.arbu.childstoryapp.narration;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Voice-clone synthesis backend for DreamTales AI v3.0
+ * Speaks text in a cloned voice ("Parent Voice Narration"). Loading a voice model is expensive,
+ * so models are loaded once and kept warm by {@link VoiceModelCache}; synthesis always runs
+ * against an already loaded model. Output must be WAV like {@link TtsBackend}.
+ */
+public interface VoiceCloneBackend {
+
+    /**
+     * Identifies the backend in narration cache keys
+     */
+    String name();
+
+    /**
+     * Loads the provider's voice model so it can be used for synthesis
+     */
+    Mono<LoadedVoice> load(String voiceModelId);
+
+    /**
+     * @return WAV file bytes (16-bit PCM)
+     */
+    Mono<byte[]> synthesize(LoadedVoice voice, String text, String languageCode);
+
+    /**
+     * Releases a model evicted from the warm cache, once no synthesis is running on it any more.
+     */
+    void unload(LoadedVoice voice);
+
+    /**
+     * A voice model held in memory by the backend
+     */
+    interface LoadedVoice {
+        String getVoiceModelId();
+    }
+}
@@ -0,0 +1,113 @@
+package com.arbu.childstoryapp.narration;
+
+import com.arbu.childstoryapp.domain.VoiceCloneData;
+import com.arbu.childstoryapp.repository.VoiceCloneDataRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Voice clone selection for DreamTales AI v3.0
+ * Resolves GenerateStoryRequest.voiceCloneId to a narration voice when the clone belongs to the
+ * user, is ready and has consent. Usage statistics (usageCount, lastUsedAt) are counted in memory
+ * and written in one batch per {@code ai.voiceclone.usage.flushInterval} instead of an update per
+ * narration.
+ */
+@Service
+public class VoiceCloneService {
+    private static final Logger log = LoggerFactory.getLogger(VoiceCloneService.class);
+
+    private static final String READY = "ready";
+
+    private final VoiceCloneDataRepository voiceCloneRepo;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<Long, Usage> pendingUsage = new ConcurrentHashMap<>();
+
+    public VoiceCloneService(VoiceCloneDataRepository voiceCloneRepo, PlatformTransactionManager transactionManager) {
+        this.voiceCloneRepo = voiceCloneRepo;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Narration voice for the user's clone, or empty when it cannot be used (blocking, uses JPA).
+     * Counts as one use of the clone.
+     */
+    public Optional<String> voiceFor(Long userId, Long voiceCloneId) {
+        Optional<VoiceCloneData> clone = voiceCloneRepo.findByIdAndUser_Id(voiceCloneId, userId)
+                .filter(data -> READY.equals(data.getStatus()))
+                .filter(data -> Boolean.TRUE.equals(data.getConsentConfirmed()))
+                .filter(data -> data.getVoiceModelId() != null && !data.getVoiceModelId().isBlank());
+        if (clone.isEmpty()) {
+            log.info("Voice clone {} is not available for user {}; using the default voice", voiceCloneId, userId);
+            return Optional.empty();
+        }
+        recordUsage(voiceCloneId);
+        return Optional.of(VoiceModelCache.voiceName(clone.get().getVoiceModelId()));
+    }
+
+    public void recordUsage(Long voiceCloneId) {
+        Instant now = Instant.now();
+        pendingUsage.merge(voiceCloneId, new Usage(1, now), Usage::plus);
+    }
+
+    /**
+     * Writes the usage counted since the last flush in one transaction. If any update (or the
+     * commit) fails, the whole batch is rolled back and all of it is kept for the next run.
+     */
+    @Scheduled(fixedDelayString = "${ai.voiceclone.usage.flushInterval:PT30S}")
+    public void flushUsage() {
+        if (pendingUsage.isEmpty()) {
+            return;
+        }
+        // Take the counts out one by one, so uses recorded meanwhile land in the next batch
+        Map<Long, Usage> batch = new HashMap<>();
+        for (Long voiceCloneId : pendingUsage.keySet()) {
+            Usage usage = pendingUsage.remove(voiceCloneId);
+            if (usage != null) {
+                batch.put(voiceCloneId, usage);
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> batch.forEach((voiceCloneId, usage) ->
+                    voiceCloneRepo.addUsage(voiceCloneId, usage.uses, usage.lastUsedAt)));
+        } catch (RuntimeException e) {
+            batch.forEach((voiceCloneId, usage) -> pendingUsage.merge(voiceCloneId, usage, Usage::plus));
+            throw e;
+        }
+        log.debug("Flushed usage for {} voice clones", batch.size());
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        try {
+            flushUsage();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush voice clone usage on shutdown: {}", e.getMessage());
+        }
+    }
+
+    private static final class Usage {
+        private final int uses;
+        private final Instant lastUsedAt;
+
+        private Usage(int uses, Instant lastUsedAt) {
+            this.uses = uses;
+            this.lastUsedAt = lastUsedAt;
+        }
+
+        private Usage plus(Usage other) {
+            return new Usage(uses + other.uses,
+                    lastUsedAt.isAfter(other.lastUsedAt) ? lastUsedAt : other.lastUsedAt);
+        }
+    }
+}
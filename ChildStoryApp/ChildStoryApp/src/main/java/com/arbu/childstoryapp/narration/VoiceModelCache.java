@@ -0,0 +1,198 @@
+package com.arbu.childstoryapp.narration;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warm cache of loaded voice-clone models for DreamTales AI v3.0
+ * Keeps up to {@code maxModels} models loaded, keyed by voiceModelId, and evicts the least
+ * recently used one (unloading it from the backend). Concurrent requests for a model that is
+ * still loading share the same load, so a parent's voice is loaded once however many pages or
+ * stories are narrated with it. An evicted model is unloaded outside the cache lock, and only
+ * once no synthesis is using it any more.
+ */
+@Component
+public class VoiceModelCache {
+    private static final Logger log = LoggerFactory.getLogger(VoiceModelCache.class);
+
+    /** Narration voices of the form "clone:{voiceModelId}" are spoken by the voice-clone backend */
+    private static final String VOICE_PREFIX = "clone:";
+
+    private final VoiceCloneBackend backend;
+    private final int maxModels;
+    private final Map<String, Entry> models;
+    /** Entries dropped by the last put; guarded by the cache lock and drained right after it */
+    private final List<Entry> removed = new ArrayList<>();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Timer loadTimer;
+
+    public VoiceModelCache(VoiceCloneBackend backend,
+                           MeterRegistry meterRegistry,
+                           @Value("${ai.voiceclone.cache.maxModels:8}") int maxModels) {
+        this.backend = backend;
+        this.maxModels = maxModels;
+        this.models = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() <= VoiceModelCache.this.maxModels) {
+                    return false;
+                }
+                removed.add(eldest.getValue());
+                return true;
+            }
+        };
+
+        this.hits = Counter.builder("ai.voiceclone.cache.requests").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("ai.voiceclone.cache.requests").tag("result", "miss").register(meterRegistry);
+        this.evictions = Counter.builder("ai.voiceclone.cache.evictions").register(meterRegistry);
+        this.loadTimer = Timer.builder("ai.voiceclone.load")
+                .description("Time to load a voice model")
+                .tag("backend", backend.name())
+                .register(meterRegistry);
+        Gauge.builder("ai.voiceclone.cache.size", this, VoiceModelCache::size).register(meterRegistry);
+    }
+
+    public static String voiceName(String voiceModelId) {
+        return VOICE_PREFIX + voiceModelId;
+    }
+
+    public static boolean isCloneVoice(String voiceName) {
+        return voiceName != null && voiceName.startsWith(VOICE_PREFIX);
+    }
+
+    public String backendName() {
+        return backend.name();
+    }
+
+    /**
+     * Speaks the text with the voice model, loading it first unless it is warm. The model is not
+     * unloaded while the synthesis runs, even if it is evicted meanwhile.
+     */
+    public Mono<byte[]> synthesize(String voiceName, String text, String languageCode) {
+        return Mono.defer(() -> {
+            List<Entry> evicted = new ArrayList<>();
+            Entry entry = acquire(voiceName.substring(VOICE_PREFIX.length()), evicted);
+            // Backend unloads may do I/O, so they run after the cache lock is released
+            evicted.forEach(this::evict);
+            return entry.model
+                    .flatMap(voice -> backend.synthesize(voice, text, languageCode))
+                    .doFinally(signal -> entry.release());
+        });
+    }
+
+    public synchronized int size() {
+        return models.size();
+    }
+
+    /**
+     * The cache entry for the model, marked in use; entries it pushed out are added to {@code evicted}
+     */
+    private synchronized Entry acquire(String voiceModelId, List<Entry> evicted) {
+        Entry entry = models.get(voiceModelId);
+        if (entry != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            entry = new Entry(voiceModelId);
+            models.put(voiceModelId, entry);
+            evicted.addAll(removed);
+            removed.clear();
+        }
+        entry.users++;
+        return entry;
+    }
+
+    private void evict(Entry entry) {
+        evictions.increment();
+        log.debug("Evicting voice model {}", entry.voiceModelId);
+        entry.evict();
+    }
+
+    private void unload(VoiceCloneBackend.LoadedVoice voice) {
+        if (voice == null) {
+            return;
+        }
+        try {
+            backend.unload(voice);
+        } catch (RuntimeException e) {
+            log.warn("Failed to unload voice model {}: {}", voice.getVoiceModelId(), e.getMessage());
+        }
+    }
+
+    private final class Entry {
+        private final String voiceModelId;
+        private final Mono<VoiceCloneBackend.LoadedVoice> model;
+        private VoiceCloneBackend.LoadedVoice loaded;
+        /** Synthesis calls holding this entry; incremented under the cache lock */
+        private int users;
+        private boolean evicted;
+        private boolean unloaded;
+
+        private Entry(String voiceModelId) {
+            this.voiceModelId = voiceModelId;
+            // Loaded once on first use; a failed load is not cached, so the next request tries again
+            this.model = Mono.defer(() -> {
+                        long started = System.nanoTime();
+                        return backend.load(voiceModelId)
+                                .doOnNext(voice -> loadTimer.record(Duration.ofNanos(System.nanoTime() - started)))
+                                .doOnNext(this::loaded)
+                                .doOnError(e -> log.warn("Failed to load voice model {}: {}", voiceModelId, e.getMessage()));
+                    })
+                    .cache(voice -> Duration.ofMillis(Long.MAX_VALUE), e -> Duration.ZERO, () -> Duration.ZERO);
+        }
+
+        private void loaded(VoiceCloneBackend.LoadedVoice voice) {
+            VoiceCloneBackend.LoadedVoice idle;
+            synchronized (VoiceModelCache.this) {
+                loaded = voice;
+                idle = takeIfIdle();
+            }
+            unload(idle);
+        }
+
+        private void release() {
+            VoiceCloneBackend.LoadedVoice idle;
+            synchronized (VoiceModelCache.this) {
+                users--;
+                idle = takeIfIdle();
+            }
+            unload(idle);
+        }
+
+        private void evict() {
+            VoiceCloneBackend.LoadedVoice idle;
+            synchronized (VoiceModelCache.this) {
+                evicted = true;
+                idle = takeIfIdle();
+            }
+            unload(idle);
+        }
+
+        /**
+         * The model to unload once it is evicted, loaded and unused; null otherwise or if already taken
+         */
+        private VoiceCloneBackend.LoadedVoice takeIfIdle() {
+            if (!evicted || users > 0 || loaded == null || unloaded) {
+                return null;
+            }
+            unloaded = true;
+            return loaded;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.arbu.childstoryapp.narration;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Minimal WAV (RIFF, integer PCM) reader/writer used to join narrated pages into one file
+ */
+public final class WavAudio {
+
+    private final int sampleRate;
+    private final int channels;
+    private final int bitsPerSample;
+    private final byte[] pcm;
+
+    public WavAudio(int sampleRate, int channels, int bitsPerSample, byte[] pcm) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.bitsPerSample = bitsPerSample;
+        this.pcm = pcm;
+    }
+
+    /**
+     * Reads the format and data chunks of a WAV file; other chunks are skipped
+     *
+     * @throws IllegalArgumentException when the bytes are not a well-formed WAV file
+     */
+    public static WavAudio parse(byte[] wav) {
+        ByteBuffer buffer = ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN);
+        if (wav.length < 12 || !"RIFF".equals(fourCc(buffer, 0)) || !"WAVE".equals(fourCc(buffer, 8))) {
+            throw new IllegalArgumentException("Not a WAV file");
+        }
+        int sampleRate = 0;
+        int channels = 0;
+        int bitsPerSample = 0;
+        int offset = 12;
+        while (offset + 8 <= wav.length) {
+            String id = fourCc(buffer, offset);
+            int size = buffer.getInt(offset + 4);
+            int body = offset + 8;
+            if ("fmt ".equals(id)) {
+                if (size < 16 || body + 16 > wav.length) {
+                    throw new IllegalArgumentException("WAV format chunk is truncated");
+                }
+                channels = buffer.getShort(body + 2);
+                sampleRate = buffer.getInt(body + 4);
+                bitsPerSample = buffer.getShort(body + 14);
+            } else if ("data".equals(id)) {
+                // Streamed WAVs may carry a placeholder size; take what is there
+                int length = size <= 0 || body + size > wav.length ? wav.length - body : size;
+                byte[] pcm = new byte[length];
+                System.arraycopy(wav, body, pcm, 0, length);
+                if (sampleRate == 0) {
+                    throw new IllegalArgumentException("WAV data chunk before format chunk");
+                }
+                return new WavAudio(sampleRate, channels, bitsPerSample, pcm);
+            }
+            // A negative size would move backwards (or not at all) and loop forever
+            if (size < 0) {
+                throw new IllegalArgumentException("Invalid WAV chunk size " + size + " for '" + id + "'");
+            }
+            long next = (long) body + size + (size & 1);
+            if (next > wav.length) {
+                break;
+            }
+            offset = (int) next;
+        }
+        throw new IllegalArgumentException("WAV file has no data chunk");
+    }
+
+    /**
+     * Joins clips of the same format, with a pause between them
+     */
+    public static WavAudio concat(List<WavAudio> clips, Duration pause) {
+        if (clips.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to join");
+        }
+        WavAudio first = clips.get(0);
+        int frameSize = first.channels * first.bitsPerSample / 8;
+        int pauseBytes = (int) (pause.toMillis() * first.sampleRate / 1000) * frameSize;
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < clips.size(); i++) {
+            WavAudio clip = clips.get(i);
+            if (clip.sampleRate != first.sampleRate || clip.channels != first.channels
+                    || clip.bitsPerSample != first.bitsPerSample) {
+                throw new IllegalStateException("Narration pages have different audio formats");
+            }
+            if (i > 0) {
+                out.writeBytes(new byte[pauseBytes]);
+            }
+            out.writeBytes(clip.pcm);
+        }
+        return new WavAudio(first.sampleRate, first.channels, first.bitsPerSample, out.toByteArray());
+    }
+
+    /**
+     * Silence of the given length (16-bit mono)
+     */
+    public static WavAudio silence(int sampleRate, Duration duration) {
+        int frames = (int) (duration.toMillis() * sampleRate / 1000);
+        return new WavAudio(sampleRate, 1, 16, new byte[frames * 2]);
+    }
+
+    public byte[] toBytes() {
+        int byteRate = sampleRate * channels * bitsPerSample / 8;
+        ByteBuffer buffer = ByteBuffer.allocate(44 + pcm.length).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("RIFF".getBytes(StandardCharsets.US_ASCII)).putInt(36 + pcm.length)
+                .put("WAVE".getBytes(StandardCharsets.US_ASCII))
+                .put("fmt ".getBytes(StandardCharsets.US_ASCII)).putInt(16)
+                .putShort((short) 1) // PCM
+                .putShort((short) channels)
+                .putInt(sampleRate)
+                .putInt(byteRate)
+                .putShort((short) (channels * bitsPerSample / 8))
+                .putShort((short) bitsPerSample)
+                .put("data".getBytes(StandardCharsets.US_ASCII)).putInt(pcm.length)
+                .put(pcm);
+        return buffer.array();
+    }
+
+    public int getSampleRate() { return sampleRate; }
+
+    public int getChannels() { return channels; }
+
+    public int getBitsPerSample() { return bitsPerSample; }
+
+    public byte[] getPcm() { return pcm; }
+
+    public Duration getDuration() {
+        long frames = (long) pcm.length / Math.max(1, channels * bitsPerSample / 8);
+        return Duration.ofMillis(frames * 1000 / Math.max(1, sampleRate));
+    }
+
+    private static String fourCc(ByteBuffer buffer, int offset) {
+        byte[] id = new byte[4];
+        buffer.get(offset, id);
+        return new String(id, StandardCharsets.US_ASCII);
+    }
+}
@@ -2,9 +2,15 @@ package com.arbu.childstoryapp.repository;
 
 import com.arbu.childstoryapp.domain.InteractiveStoryChoice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Repository for InteractiveStoryChoice entity - DreamTales AI v3.0
@@ -21,4 +27,36 @@ public interface InteractiveStoryChoiceRepository extends JpaRepository<Interact
      * Find all choices made by users for a specific story
      */
     List<InteractiveStoryChoice> findByStory_IdAndSelectedOptionIsNotNullOrderByChoicePointAsc(Long storyId);
+
+    Optional<InteractiveStoryChoice> findByIdAndStory_Id(Long id, Long storyId);
+
+    /**
+     * The choice point reached by a branch path ("" for the first one)
+     */
+    Optional<InteractiveStoryChoice> findByStory_IdAndBranchPath(Long storyId, String branchPath);
+
+    /**
+     * Stores one option's continuation without touching the others, so a branch generated in the
+     * background cannot overwrite one that was stored meanwhile
+     */
+    @Transactional
+    @Modifying
+    @Query("update InteractiveStoryChoice c set "
+            + "c.continuationA = case when :option = 'A' then :continuation else c.continuationA end, "
+            + "c.imageUrlA = case when :option = 'A' then :imageUrl else c.imageUrlA end, "
+            + "c.continuationB = case when :option = 'B' then :continuation else c.continuationB end, "
+            + "c.imageUrlB = case when :option = 'B' then :imageUrl else c.imageUrlB end, "
+            + "c.continuationC = case when :option = 'C' then :continuation else c.continuationC end, "
+            + "c.imageUrlC = case when :option = 'C' then :imageUrl else c.imageUrlC end "
+            + "where c.id = :id")
+    int storeContinuation(@Param("id") Long id, @Param("option") String option,
+                          @Param("continuation") String continuation, @Param("imageUrl") String imageUrl);
+
+    /**
+     * Records the option that was picked last at this choice point
+     */
+    @Transactional
+    @Modifying
+    @Query("update InteractiveStoryChoice c set c.selectedOption = :option, c.selectedAt = :selectedAt where c.id = :id")
+    int select(@Param("id") Long id, @Param("option") String option, @Param("selectedAt") Instant selectedAt);
 }
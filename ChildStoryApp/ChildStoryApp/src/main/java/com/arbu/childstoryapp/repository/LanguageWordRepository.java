@@ -2,6 +2,7 @@ package com.arbu.childstoryapp.repository;
 
 import com.arbu.childstoryapp.domain.LanguageWord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -10,4 +11,16 @@ import java.util.List;
 public interface LanguageWordRepository extends JpaRepository<LanguageWord, String> {
     List<LanguageWord> findByDifficulty(LanguageWord.Difficulty difficulty);
     List<LanguageWord> findByCategory(LanguageWord.Category category);
+
+    /**
+     * Only the columns the quest-word index partitions by, without the text columns
+     */
+    @Query("select w.id as id, w.difficulty as difficulty, w.category as category from LanguageWord w")
+    List<IndexEntry> findAllIndexEntries();
+
+    interface IndexEntry {
+        String getId();
+        LanguageWord.Difficulty getDifficulty();
+        LanguageWord.Category getCategory();
+    }
 }
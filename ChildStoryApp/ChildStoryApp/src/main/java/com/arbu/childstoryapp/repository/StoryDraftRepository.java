@@ -0,0 +1,49 @@
+package com.arbu.childstoryapp.repository;
+
+import com.arbu.childstoryapp.domain.StoryDraft;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Repository for StoryDraft entity - DreamTales AI v3.0
+ */
+@Repository
+public interface StoryDraftRepository extends JpaRepository<StoryDraft, Long> {
+
+    /**
+     * Unclaimed, unexpired drafts for a child and (normalized) theme, oldest first
+     */
+    List<StoryDraft> findByChild_IdAndThemeAndClaimedAtIsNullAndExpiresAtAfterOrderByCreatedAtAsc(
+            Long childId, String theme, Instant now);
+
+    boolean existsByChild_IdAndThemeAndClaimedAtIsNullAndExpiresAtAfter(Long childId, String theme, Instant now);
+
+    long countByUser_IdAndClaimedAtIsNullAndExpiresAtAfter(Long userId, Instant now);
+
+    long countByClaimedAtIsNullAndExpiresAtAfter(Instant now);
+
+    /**
+     * Marks a draft as claimed unless another request got it first
+     *
+     * @return 1 if this call claimed the draft, 0 otherwise
+     */
+    @Transactional
+    @Modifying
+    @Query("update StoryDraft d set d.claimedAt = :now where d.id = :id and d.claimedAt is null")
+    int claim(@Param("id") Long id, @Param("now") Instant now);
+
+    /**
+     * Removes claimed and expired drafts
+     */
+    @Transactional
+    @Modifying
+    @Query("delete from StoryDraft d where d.claimedAt is not null or d.expiresAt < :now")
+    int deleteStale(@Param("now") Instant now);
+}
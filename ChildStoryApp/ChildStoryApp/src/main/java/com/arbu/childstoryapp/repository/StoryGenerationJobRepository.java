@@ -0,0 +1,26 @@
+package com.arbu.childstoryapp.repository;
+
+import com.arbu.childstoryapp.domain.StoryGenerationJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Repository for StoryGenerationJob entity - DreamTales AI v3.0
+ */
+@Repository
+public interface StoryGenerationJobRepository extends JpaRepository<StoryGenerationJob, Long> {
+
+    /**
+     * Find a job by ID and user ID (for access control)
+     */
+    Optional<StoryGenerationJob> findByIdAndUser_Id(Long jobId, Long userId);
+
+    /**
+     * Find jobs in the given states, oldest first (used to resume work after a restart)
+     */
+    List<StoryGenerationJob> findByStatusInOrderByCreatedAtAsc(Collection<String> statuses);
+}
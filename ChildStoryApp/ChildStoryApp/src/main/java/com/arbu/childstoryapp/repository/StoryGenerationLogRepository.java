@@ -2,7 +2,21 @@ package com.arbu.childstoryapp.repository;
 
 import com.arbu.childstoryapp.domain.StoryGenerationLog;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
 
 public interface StoryGenerationLogRepository extends JpaRepository<StoryGenerationLog, Long> {
     long countByUser_Id(Long userId);
+
+    /**
+     * Generations per (child, user, theme) since the given time, most frequent first.
+     * Rows are [childId, userId, theme, count].
+     */
+    @Query("select l.child.id, l.user.id, l.theme, count(l) from StoryGenerationLog l "
+            + "where l.createdAt >= :since and l.child is not null and l.user is not null "
+            + "group by l.child.id, l.user.id, l.theme order by count(l) desc")
+    List<Object[]> countThemesByChildSince(@Param("since") Instant since);
 }
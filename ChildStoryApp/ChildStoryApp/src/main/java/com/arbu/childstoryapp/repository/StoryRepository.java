@@ -1,9 +1,16 @@
 package com.arbu.childstoryapp.repository;
 
 import com.arbu.childstoryapp.domain.Story;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -47,4 +54,89 @@ public interface StoryRepository extends JpaRepository<Story, Long> {
      * Find a specific story by ID and user ID (for access control)
      */
     Optional<Story> findByIdAndUser_Id(Long storyId, Long userId);
+
+    /**
+     * Variants with the child fetched in the same select, for anything rendered as a StoryResponse
+     * or StoryListResponse (which read the child's id and name)
+     */
+    @EntityGraph(Story.WITH_CHILD)
+    Optional<Story> findWithChildById(Long storyId);
+
+    @EntityGraph(Story.WITH_CHILD)
+    Optional<Story> findWithChildByIdAndUser_Id(Long storyId, Long userId);
+
+    @EntityGraph(Story.WITH_CHILD)
+    Optional<Story> findWithChildByShareToken(String shareToken);
+
+    @EntityGraph(Story.WITH_CHILD)
+    List<Story> findWithChildByParentStory_IdOrderByCreatedAtAsc(Long parentStoryId);
+
+    boolean existsByIdAndUser_Id(Long storyId, Long userId);
+
+    /**
+     * Library list columns only: no content or image JSON, the child joined in the same select
+     * and the content preview cut in SQL. Ordered newest first with the id as tie-breaker, so
+     * (createdAt, id) is a stable cursor.
+     */
+    String LIBRARY_SELECT = "select s.id as id, s.title as title, s.theme as theme, s.mode as mode, "
+            + "s.isInteractive as isInteractive, s.isFavorite as isFavorite, c.id as childId, c.name as childName, "
+            + "s.thumbnail as thumbnail, s.duration as duration, s.createdAt as createdAt, s.upvotes as upvotes, "
+            + "s.category as category, substring(s.content, 1, " + (StoryListRow.PREVIEW_LENGTH + 1) + ") as contentStart, "
+            + "case when s.audioUrl is null or s.audioUrl = '' then false else true end as hasAudio, "
+            + "case when s.videoUrl is null or s.videoUrl = '' then false else true end as hasVideo "
+            + "from Story s left join s.child c "
+            + "where s.user.id = :userId and (:favoritesOnly = false or s.isFavorite = true) ";
+    String LIBRARY_ORDER = "order by s.createdAt desc, s.id desc";
+
+    /**
+     * First page of a user's library (or all of it with an unpaged request)
+     */
+    @Query(LIBRARY_SELECT + LIBRARY_ORDER)
+    List<StoryListRow> findLibrary(@Param("userId") Long userId, @Param("favoritesOnly") boolean favoritesOnly,
+                                   Pageable pageable);
+
+    /**
+     * Library page after the story at (createdAt, id)
+     */
+    @Query(LIBRARY_SELECT + "and (s.createdAt < :createdAt or (s.createdAt = :createdAt and s.id < :id)) "
+            + LIBRARY_ORDER)
+    List<StoryListRow> findLibraryAfter(@Param("userId") Long userId, @Param("favoritesOnly") boolean favoritesOnly,
+                                        @Param("createdAt") Instant createdAt, @Param("id") Long id,
+                                        Pageable pageable);
+
+    interface StoryListRow {
+        /** Characters of content shown in the library; one more is selected to tell if it was cut */
+        int PREVIEW_LENGTH = 100;
+
+        Long getId();
+        String getTitle();
+        String getTheme();
+        String getMode();
+        Boolean getIsInteractive();
+        Boolean getIsFavorite();
+        Long getChildId();
+        String getChildName();
+        String getThumbnail();
+        String getDuration();
+        Instant getCreatedAt();
+        Integer getUpvotes();
+        String getCategory();
+        String getContentStart();
+        Boolean getHasAudio();
+        Boolean getHasVideo();
+    }
+
+    /**
+     * Ids of stories in the given slideshow rendering state, oldest first
+     */
+    @Query("select s.id from Story s where s.videoStatus = :status order by s.createdAt asc")
+    List<Long> findIdsByVideoStatus(@Param("status") String status);
+
+    /**
+     * Sets the slideshow video and its rendering state
+     */
+    @Transactional
+    @Modifying
+    @Query("update Story s set s.videoUrl = :videoUrl, s.videoStatus = :status where s.id = :id")
+    int updateVideo(@Param("id") Long id, @Param("videoUrl") String videoUrl, @Param("status") String status);
 }
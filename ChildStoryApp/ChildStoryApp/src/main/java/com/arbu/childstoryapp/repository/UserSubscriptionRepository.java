@@ -1,7 +1,11 @@
 package com.arbu.childstoryapp.repository;
 
 import com.arbu.childstoryapp.domain.UserSubscription;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -21,4 +25,12 @@ public interface UserSubscriptionRepository extends JpaRepository<UserSubscripti
      * Find an active subscription by user ID
      */
     Optional<UserSubscription> findByUser_IdAndStatus(Long userId, String status);
+
+    /**
+     * Find a user's subscription and lock its row until the transaction ends
+     * (serializes daily quota reservations for the same user)
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from UserSubscription s where s.user.id = :userId")
+    Optional<UserSubscription> findLockedByUserId(@Param("userId") Long userId);
 }
@@ -2,8 +2,13 @@ package com.arbu.childstoryapp.repository;
 
 import com.arbu.childstoryapp.domain.VoiceCloneData;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,4 +37,13 @@ public interface VoiceCloneDataRepository extends JpaRepository<VoiceCloneData,
      * Find a specific voice clone by ID and user ID (for access control)
      */
     Optional<VoiceCloneData> findByIdAndUser_Id(Long voiceCloneId, Long userId);
+
+    /**
+     * Adds narrations to the usage statistics without loading the entity
+     */
+    @Transactional
+    @Modifying
+    @Query("update VoiceCloneData v set v.usageCount = coalesce(v.usageCount, 0) + :uses, "
+            + "v.lastUsedAt = :lastUsedAt where v.id = :id")
+    int addUsage(@Param("id") Long id, @Param("uses") int uses, @Param("lastUsedAt") Instant lastUsedAt);
 }
@@ -0,0 +1,86 @@
+package com.arbu.childstoryapp.stories;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Rolling series summaries for DreamTales AI v3.0
+ * Each story in a series stores a summary of the series so far, one line per episode
+ * ("Episode N: ..."). Adding an episode appends one line; the first episode (the premise)
+ * and the most recent ones are kept, so the summary stays the same size however long
+ * the series gets.
+ */
+public final class SeriesSummaries {
+
+    /** Episodes kept in a summary: the first one plus the most recent ones */
+    static final int MAX_EPISODES = 4;
+
+    /** Longest single-episode line, in characters */
+    static final int MAX_EPISODE_CHARS = 180;
+
+    private static final Pattern EPISODE_LINE = Pattern.compile("^Episode (\\d+): ");
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?…])\\s+");
+
+    private SeriesSummaries() {}
+
+    /**
+     * Appends an episode to the previous series summary
+     *
+     * @param previous Summary of the series up to the parent story (null for the first episode)
+     * @param episode Short summary of the new episode
+     */
+    public static String roll(String previous, String episode) {
+        List<String> lines = new ArrayList<>();
+        if (previous != null && !previous.isBlank()) {
+            for (String line : previous.split("\n")) {
+                if (!line.isBlank()) {
+                    lines.add(line.strip());
+                }
+            }
+        }
+
+        int number = lines.isEmpty() ? 1 : episodeNumber(lines.get(lines.size() - 1)) + 1;
+        lines.add("Episode " + number + ": " + clip(episode));
+
+        // Keep the premise and the latest episodes
+        while (lines.size() > MAX_EPISODES) {
+            lines.remove(1);
+        }
+        return String.join("\n", lines);
+    }
+
+    /**
+     * Extractive fallback when the model did not provide an episode summary:
+     * the opening and closing sentences of the story
+     */
+    public static String digest(String content) {
+        if (content == null || content.isBlank()) {
+            return "";
+        }
+        String[] sentences = SENTENCE_END.split(content.strip().replaceAll("\\s+", " "));
+        if (sentences.length <= 2) {
+            return clip(String.join(" ", sentences));
+        }
+        return clip(sentences[0] + " … " + sentences[sentences.length - 1]);
+    }
+
+    private static int episodeNumber(String line) {
+        Matcher matcher = EPISODE_LINE.matcher(line);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 1;
+    }
+
+    private static String clip(String text) {
+        String clean = text == null ? "" : text.strip().replaceAll("\\s+", " ");
+        if (clean.length() <= MAX_EPISODE_CHARS) {
+            return clean;
+        }
+        String head = clean.substring(0, MAX_EPISODE_CHARS - 1);
+        int space = head.lastIndexOf(' ');
+        if (space > MAX_EPISODE_CHARS / 2) {
+            head = head.substring(0, space);
+        }
+        return head + "…";
+    }
+}
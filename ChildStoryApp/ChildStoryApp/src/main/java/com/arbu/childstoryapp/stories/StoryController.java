@@ -4,6 +4,7 @@ import com.arbu.childstoryapp.auth.AuthService;
 import com.arbu.childstoryapp.common.UnauthorizedException;
 import com.arbu.childstoryapp.domain.Story;
 import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.stories.dto.StoryLibraryResponse;
 import com.arbu.childstoryapp.stories.dto.StoryListResponse;
 import com.arbu.childstoryapp.stories.dto.StoryResponse;
 import org.springframework.http.HttpStatus;
@@ -44,12 +45,7 @@ public class StoryController {
         UserAccount user = authService.authenticate(token)
                 .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
 
-        List<Story> stories = storyService.getUserStories(user.getId());
-        List<StoryListResponse> response = stories.stream()
-                .map(StoryListResponse::fromEntity)
-                .collect(Collectors.toList());
-
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(storyService.getUserStories(user.getId()));
     }
 
     /**
@@ -63,12 +59,24 @@ public class StoryController {
         UserAccount user = authService.authenticate(token)
                 .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
 
-        List<Story> stories = storyService.getFavoriteStories(user.getId());
-        List<StoryListResponse> response = stories.stream()
-                .map(StoryListResponse::fromEntity)
-                .collect(Collectors.toList());
+        return ResponseEntity.ok(storyService.getFavoriteStories(user.getId()));
+    }
 
-        return ResponseEntity.ok(response);
+    /**
+     * GET /api/stories/library?cursor=&limit=&favorites=
+     * One page of the user's library, newest first; follow nextCursor for the next page
+     */
+    @GetMapping("/library")
+    public ResponseEntity<StoryLibraryResponse> getLibrary(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "false") boolean favorites,
+            @RequestHeader(value = "X-Auth-Token", required = false) String token) {
+
+        UserAccount user = authService.authenticate(token)
+                .orElseThrow(() -> new UnauthorizedException("Invalid or missing authentication token"));
+
+        return ResponseEntity.ok(storyService.getLibraryPage(user.getId(), favorites, cursor, limit));
     }
 
     /**
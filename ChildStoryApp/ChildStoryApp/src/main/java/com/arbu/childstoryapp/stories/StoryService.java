@@ -3,14 +3,23 @@ package com.arbu.childstoryapp.stories;
 import com.arbu.childstoryapp.domain.ChildProfile;
 import com.arbu.childstoryapp.domain.Story;
 import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.language.QuestWordSampler;
+import com.arbu.childstoryapp.language.VocabularyInjector;
 import com.arbu.childstoryapp.repository.ChildProfileRepository;
 import com.arbu.childstoryapp.repository.StoryRepository;
 import com.arbu.childstoryapp.stories.dto.CreateStoryRequest;
+import com.arbu.childstoryapp.stories.dto.StoryLibraryResponse;
+import com.arbu.childstoryapp.stories.dto.StoryListResponse;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -22,18 +31,21 @@ import java.util.UUID;
 @Service
 public class StoryService {
 
+    private static final int QUEST_WORDS = 3;
+    private static final int MAX_LIBRARY_PAGE = 100;
+
     private final StoryRepository storyRepo;
     private final ChildProfileRepository childRepo;
-    private final com.arbu.childstoryapp.repository.StoryPageRepository storyPageRepo;
     private final com.arbu.childstoryapp.language.LanguageService languageService;
+    private final QuestWordSampler questWordSampler;
 
     public StoryService(StoryRepository storyRepo, ChildProfileRepository childRepo,
-                        com.arbu.childstoryapp.repository.StoryPageRepository storyPageRepo,
-                        com.arbu.childstoryapp.language.LanguageService languageService) {
+                        com.arbu.childstoryapp.language.LanguageService languageService,
+                        QuestWordSampler questWordSampler) {
         this.storyRepo = storyRepo;
         this.childRepo = childRepo;
-        this.storyPageRepo = storyPageRepo;
         this.languageService = languageService;
+        this.questWordSampler = questWordSampler;
     }
 
     /**
@@ -63,83 +75,62 @@ public class StoryService {
         // Convert imageUrls List to JSON string
         if (request.getImageUrls() != null && !request.getImageUrls().isEmpty()) {
             story.setImageUrls(serializeImageUrls(request.getImageUrls()));
-            // Set the first image as the thumbnail
-            story.setThumbnail(request.getImageUrls().get(0));
+            // Prefer the small thumbnail; fall back to the first image
+            story.setThumbnail(request.getThumbnail() != null ? request.getThumbnail() : request.getImageUrls().get(0));
         }
 
         // Handle parent story for series
+        String previousSummary = null;
         if (request.getParentStoryId() != null) {
             Story parentStory = storyRepo.findByIdAndUser_Id(request.getParentStoryId(), user.getId())
                     .orElseThrow(() -> new IllegalArgumentException("Parent story not found or does not belong to user"));
             story.setParentStory(parentStory);
+            previousSummary = seriesSummaryOf(parentStory);
         }
 
+        // Extend the series summary once, at save time, so sequels never re-read the whole chain
+        String episodeSummary = request.getSummary() != null && !request.getSummary().isBlank()
+                ? request.getSummary()
+                : SeriesSummaries.digest(content);
+        story.setSeriesSummary(SeriesSummaries.roll(previousSummary, episodeSummary));
+
         story.setCreatedAt(Instant.now());
         story.setUpdatedAt(Instant.now());
         
         // --- Language Learning Logic ---
         if (Boolean.TRUE.equals(childProfile.getLanguageLearningEnabled())) {
-            // 1. Get random words (mock logic for now, picking 3 random words)
-            List<com.arbu.childstoryapp.domain.LanguageWord> allWords = languageService.getAllWords();
-            if (!allWords.isEmpty()) {
-                java.util.Collections.shuffle(allWords);
-                List<com.arbu.childstoryapp.domain.LanguageWord> selectedWords = allWords.stream().limit(3).toList();
-                
-                List<String> questWordIds = selectedWords.stream().map(com.arbu.childstoryapp.domain.LanguageWord::getId).toList();
+            // Pick 3 quest words the child has not collected yet, from the in-memory index
+            List<String> questWordIds = questWordSampler.sample(childProfile, QUEST_WORDS);
+            if (!questWordIds.isEmpty()) {
                 story.setQuestWordIds(questWordIds);
                 story.setTotalVocabularyWords(questWordIds.size()); // Simplified for now
-
-                // 2. Inject words into content (simple replacement)
-                // Note: This is a basic implementation. A real one would need NLP to match context/grammar.
-                // We are just replacing exact matches of the English translation with the Spanish word in brackets.
-                // e.g. "tree" -> "[árbol]"
-                // But wait, our LanguageWord has 'word' (foreign) and 'translation' (native).
-                // If the story is in English, we replace English words (translation) with Foreign words (word).
-                
-                // We'll do this replacement when creating StoryPages
+                // Words are injected into the content when creating StoryPages
             }
         }
 
-        Story savedStory = storyRepo.save(story);
-
         // --- Create Story Pages ---
         // Split content by double newlines to create pages
-        String[] pageTexts = content.split("\n\n");
+        List<String> pageTexts = splitIntoPages(content);
         int pageNum = 1;
-        
-        for (String pageText : pageTexts) {
-            if (pageText.trim().isEmpty()) continue;
 
+        // Quest words are the same for every page: load them once and build one injector that
+        // replaces all of their translations in a single pass per page
+        List<com.arbu.childstoryapp.domain.LanguageWord> questWords = List.of();
+        if (Boolean.TRUE.equals(childProfile.getLanguageLearningEnabled()) && !story.getQuestWordIds().isEmpty()) {
+            questWords = languageService.getWordsByIds(story.getQuestWordIds());
+        }
+        VocabularyInjector vocabularyInjector = VocabularyInjector.of(questWords);
+
+        for (String pageText : pageTexts) {
             com.arbu.childstoryapp.domain.StoryPage page = new com.arbu.childstoryapp.domain.StoryPage();
-            page.setStory(savedStory);
+            page.setStory(story);
             page.setPageNumber(pageNum++);
             page.setText(pageText.trim());
-            
-            // Generate textWithLanguage
-            String textWithLanguage = pageText.trim();
-            List<String> pageVocabIds = new java.util.ArrayList<>();
-            
-            if (Boolean.TRUE.equals(childProfile.getLanguageLearningEnabled()) && story.getQuestWordIds() != null) {
-                List<com.arbu.childstoryapp.domain.LanguageWord> questWords = languageService.getWordsByIds(story.getQuestWordIds());
-                
-                for (com.arbu.childstoryapp.domain.LanguageWord word : questWords) {
-                    // Case-insensitive replacement of the English translation
-                    // This is very naive and might replace parts of other words, but sufficient for MVP
-                    String target = word.getTranslation(); // e.g. "tree"
-                    String replacement = "[" + word.getWord() + "]"; // e.g. "[árbol]"
-                    
-                    if (textWithLanguage.toLowerCase().contains(target.toLowerCase())) {
-                        // Use regex to replace whole words only
-                        textWithLanguage = textWithLanguage.replaceAll("(?i)\\b" + java.util.regex.Pattern.quote(target) + "\\b", replacement);
-                        if (!pageVocabIds.contains(word.getId())) {
-                            pageVocabIds.add(word.getId());
-                        }
-                    }
-                }
-            }
-            
-            page.setTextWithLanguage(textWithLanguage);
-            page.setVocabularyWordIds(pageVocabIds);
+
+            // Generate textWithLanguage: whole-word, case-insensitive "tree" -> "[árbol]"
+            VocabularyInjector.Injection injection = vocabularyInjector.inject(pageText.trim());
+            page.setTextWithLanguage(injection.getText());
+            page.setVocabularyWordIds(new ArrayList<>(injection.getWordIds()));
             
             // Assign image URL if available (distribute images across pages)
             if (request.getImageUrls() != null && !request.getImageUrls().isEmpty()) {
@@ -149,26 +140,90 @@ public class StoryService {
                 }
             }
 
-            storyPageRepo.save(page);
+            // Page narration is index-aligned with the pages
+            if (request.getPageAudioUrls() != null && pageNum - 2 < request.getPageAudioUrls().size()) {
+                page.setAudioUrl(request.getPageAudioUrls().get(pageNum - 2));
+            }
+
+            story.getPages().add(page);
         }
 
-        return savedStory;
+        // One save cascades to the pages; with sequence ids and hibernate.jdbc.batch_size the story,
+        // its pages and their vocabulary rows go out as a few batched INSERTs at flush
+        return storyRepo.save(story);
     }
 
     /**
-     * Get all stories for a user
+     * Series summary up to and including the given story
+     * Stories saved before summaries existed get one built from their own text
+     */
+    public static String seriesSummaryOf(Story story) {
+        if (story.getSeriesSummary() != null && !story.getSeriesSummary().isBlank()) {
+            return story.getSeriesSummary();
+        }
+        return SeriesSummaries.roll(null, SeriesSummaries.digest(story.getContent()));
+    }
+
+    /**
+     * Split generated story text into page texts (paragraphs separated by a blank line)
+     * Shared with the streaming endpoint so page boundaries match what is saved
+     */
+    public static List<String> splitIntoPages(String content) {
+        List<String> pages = new ArrayList<>();
+        for (String pageText : content.split("\n\n")) {
+            if (!pageText.trim().isEmpty()) {
+                pages.add(pageText.trim());
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Get all stories for a user (library list columns only)
      */
     @Transactional(readOnly = true)
-    public List<Story> getUserStories(Long userId) {
-        return storyRepo.findByUser_IdOrderByCreatedAtDesc(userId);
+    public List<StoryListResponse> getUserStories(Long userId) {
+        return storyRepo.findLibrary(userId, false, Pageable.unpaged()).stream()
+                .map(StoryListResponse::fromRow)
+                .toList();
     }
 
     /**
-     * Get favorite stories for a user
+     * Get favorite stories for a user (library list columns only)
      */
     @Transactional(readOnly = true)
-    public List<Story> getFavoriteStories(Long userId) {
-        return storyRepo.findByUser_IdAndIsFavoriteTrueOrderByCreatedAtDesc(userId);
+    public List<StoryListResponse> getFavoriteStories(Long userId) {
+        return storyRepo.findLibrary(userId, true, Pageable.unpaged()).stream()
+                .map(StoryListResponse::fromRow)
+                .toList();
+    }
+
+    /**
+     * One page of a user's library, newest first
+     * @param cursor nextCursor of the previous page, or null for the first page
+     */
+    @Transactional(readOnly = true)
+    public StoryLibraryResponse getLibraryPage(Long userId, boolean favoritesOnly, String cursor, int limit) {
+        if (limit < 1 || limit > MAX_LIBRARY_PAGE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIBRARY_PAGE);
+        }
+        // One extra row tells whether there is a next page
+        Pageable pageable = PageRequest.of(0, limit + 1);
+        List<StoryRepository.StoryListRow> rows;
+        if (cursor == null || cursor.isBlank()) {
+            rows = storyRepo.findLibrary(userId, favoritesOnly, pageable);
+        } else {
+            LibraryCursor after = LibraryCursor.decode(cursor);
+            rows = storyRepo.findLibraryAfter(userId, favoritesOnly, after.createdAt, after.id, pageable);
+        }
+
+        String nextCursor = null;
+        if (rows.size() > limit) {
+            rows = rows.subList(0, limit);
+            StoryRepository.StoryListRow last = rows.get(limit - 1);
+            nextCursor = new LibraryCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+        return new StoryLibraryResponse(rows.stream().map(StoryListResponse::fromRow).toList(), nextCursor);
     }
 
     /**
@@ -176,7 +231,7 @@ public class StoryService {
      */
     @Transactional(readOnly = true)
     public Optional<Story> getStoryById(Long storyId, Long userId) {
-        return storyRepo.findByIdAndUser_Id(storyId, userId);
+        return storyRepo.findWithChildByIdAndUser_Id(storyId, userId);
     }
 
     /**
@@ -184,7 +239,7 @@ public class StoryService {
      */
     @Transactional
     public Story toggleFavorite(Long storyId, Long userId) {
-        Story story = storyRepo.findByIdAndUser_Id(storyId, userId)
+        Story story = storyRepo.findWithChildByIdAndUser_Id(storyId, userId)
                 .orElseThrow(() -> new IllegalArgumentException("Story not found or does not belong to user"));
 
         story.setIsFavorite(!Boolean.TRUE.equals(story.getIsFavorite()));
@@ -198,7 +253,7 @@ public class StoryService {
      */
     @Transactional
     public Story toggleUpvote(Long storyId) {
-        Story story = storyRepo.findById(storyId)
+        Story story = storyRepo.findWithChildById(storyId)
                 .orElseThrow(() -> new IllegalArgumentException("Story not found"));
 
         // Simple increment/decrement logic (in a real app, track user upvotes to prevent duplicates)
@@ -232,7 +287,7 @@ public class StoryService {
      */
     @Transactional(readOnly = true)
     public Optional<Story> getSharedStory(String shareToken) {
-        return storyRepo.findByShareToken(shareToken);
+        return storyRepo.findWithChildByShareToken(shareToken);
     }
 
     /**
@@ -251,7 +306,7 @@ public class StoryService {
      */
     @Transactional
     public Story updateUserDrawing(Long storyId, Long userId, String drawingUrl) {
-        Story story = storyRepo.findByIdAndUser_Id(storyId, userId)
+        Story story = storyRepo.findWithChildByIdAndUser_Id(storyId, userId)
                 .orElseThrow(() -> new IllegalArgumentException("Story not found or does not belong to user"));
 
         story.setUserDrawingUrl(drawingUrl);
@@ -266,10 +321,11 @@ public class StoryService {
     @Transactional(readOnly = true)
     public List<Story> getSeriesStories(Long parentStoryId, Long userId) {
         // First verify parent story belongs to user
-        storyRepo.findByIdAndUser_Id(parentStoryId, userId)
-                .orElseThrow(() -> new IllegalArgumentException("Parent story not found or does not belong to user"));
+        if (!storyRepo.existsByIdAndUser_Id(parentStoryId, userId)) {
+            throw new IllegalArgumentException("Parent story not found or does not belong to user");
+        }
 
-        return storyRepo.findByParentStory_IdOrderByCreatedAtAsc(parentStoryId);
+        return storyRepo.findWithChildByParentStory_IdOrderByCreatedAtAsc(parentStoryId);
     }
 
     /**
@@ -517,4 +573,33 @@ public class StoryService {
         
         return newStory;
     }
+
+    /**
+     * Library position: the (createdAt, id) of the last story on a page, as an opaque URL-safe token
+     */
+    private static final class LibraryCursor {
+        private final Instant createdAt;
+        private final Long id;
+
+        private LibraryCursor(Instant createdAt, Long id) {
+            this.createdAt = createdAt;
+            this.id = id;
+        }
+
+        private String encode() {
+            String value = createdAt + "|" + id;
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private static LibraryCursor decode(String cursor) {
+            try {
+                String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+                int separator = value.indexOf('|');
+                return new LibraryCursor(Instant.parse(value.substring(0, separator)),
+                        Long.parseLong(value.substring(separator + 1)));
+            } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Invalid library cursor");
+            }
+        }
+    }
 }
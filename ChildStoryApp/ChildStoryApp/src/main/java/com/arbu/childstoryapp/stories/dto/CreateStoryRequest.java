@@ -24,8 +24,12 @@ public class CreateStoryRequest {
 
     private List<String> imageUrls;
 
+    private String thumbnail; // Small preview image; defaults to the first image
+
     private String audioUrl;
 
+    private List<String> pageAudioUrls; // Narration per page, in page order
+
     private String videoUrl;
 
     @Size(max = 20, message = "Mode must not exceed 20 characters")
@@ -40,6 +44,8 @@ public class CreateStoryRequest {
 
     private String userDrawingUrl;
 
+    private String summary; // Short summary of this episode, for series continuity
+
     // Constructors
     public CreateStoryRequest() {}
 
@@ -47,6 +53,9 @@ public class CreateStoryRequest {
     public Long getChildProfileId() { return childProfileId; }
     public void setChildProfileId(Long childProfileId) { this.childProfileId = childProfileId; }
 
+    public String getSummary() { return summary; }
+    public void setSummary(String summary) { this.summary = summary; }
+
     public String getTitle() { return title; }
     public void setTitle(String title) { this.title = title; }
 
@@ -56,9 +65,15 @@ public class CreateStoryRequest {
     public List<String> getImageUrls() { return imageUrls; }
     public void setImageUrls(List<String> imageUrls) { this.imageUrls = imageUrls; }
 
+    public String getThumbnail() { return thumbnail; }
+    public void setThumbnail(String thumbnail) { this.thumbnail = thumbnail; }
+
     public String getAudioUrl() { return audioUrl; }
     public void setAudioUrl(String audioUrl) { this.audioUrl = audioUrl; }
 
+    public List<String> getPageAudioUrls() { return pageAudioUrls; }
+    public void setPageAudioUrls(List<String> pageAudioUrls) { this.pageAudioUrls = pageAudioUrls; }
+
     public String getVideoUrl() { return videoUrl; }
     public void setVideoUrl(String videoUrl) { this.videoUrl = videoUrl; }
 
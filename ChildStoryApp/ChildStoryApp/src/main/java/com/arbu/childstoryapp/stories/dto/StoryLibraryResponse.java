@@ -0,0 +1,28 @@
+package com.arbu.childstoryapp.stories.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One page of the story library
+ * Pass nextCursor back as ?cursor= to get the following page; it is absent on the last page.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StoryLibraryResponse {
+    private List<StoryListResponse> stories;
+    private String nextCursor;
+
+    public StoryLibraryResponse() {}
+
+    public StoryLibraryResponse(List<StoryListResponse> stories, String nextCursor) {
+        this.stories = stories;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<StoryListResponse> getStories() { return stories; }
+    public void setStories(List<StoryListResponse> stories) { this.stories = stories; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+}
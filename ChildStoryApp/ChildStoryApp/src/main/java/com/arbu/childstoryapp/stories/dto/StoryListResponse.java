@@ -1,6 +1,7 @@
 package com.arbu.childstoryapp.stories.dto;
 
 import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.repository.StoryRepository;
 import com.fasterxml.jackson.annotation.JsonInclude;
 
 import java.time.Instant;
@@ -55,13 +56,7 @@ public class StoryListResponse {
         response.setDuration(story.getDuration());
         
         // Create content preview (first 100 chars)
-        if (story.getContent() != null && !story.getContent().startsWith("[")) {
-            String preview = story.getContent();
-            if (preview.length() > 100) {
-                preview = preview.substring(0, 100) + "...";
-            }
-            response.setContentPreview(preview);
-        }
+        response.setContentPreview(previewOf(story.getContent()));
 
         // Set media availability flags
         response.setHasAudio(story.getAudioUrl() != null && !story.getAudioUrl().isEmpty());
@@ -70,6 +65,41 @@ public class StoryListResponse {
         return response;
     }
 
+    /**
+     * From a library projection row; the row already holds just the start of the content
+     */
+    public static StoryListResponse fromRow(StoryRepository.StoryListRow row) {
+        StoryListResponse response = new StoryListResponse();
+        response.setId(row.getId());
+        response.setTitle(row.getTitle());
+        response.setTheme(row.getTheme());
+        response.setMode(row.getMode());
+        response.setIsInteractive(row.getIsInteractive());
+        response.setIsFavorite(row.getIsFavorite());
+        response.setCreatedAt(row.getCreatedAt());
+        response.setUpvotes(row.getUpvotes());
+        response.setCategory(row.getCategory());
+        response.setChildId(row.getChildId());
+        response.setChildName(row.getChildName());
+        response.setThumbnail(row.getThumbnail());
+        response.setDuration(row.getDuration());
+        response.setContentPreview(previewOf(row.getContentStart()));
+        response.setHasAudio(row.getHasAudio());
+        response.setHasVideo(row.getHasVideo());
+        return response;
+    }
+
+    /**
+     * First 100 chars of plain-text content; none for structured (JSON array) content
+     */
+    private static String previewOf(String content) {
+        if (content == null || content.startsWith("[")) {
+            return null;
+        }
+        int length = StoryRepository.StoryListRow.PREVIEW_LENGTH;
+        return content.length() > length ? content.substring(0, length) + "..." : content;
+    }
+
     /**
      * Extract the first image URL from JSON array string
      * Format: ["url1", "url2", "url3"] -> returns "url1"
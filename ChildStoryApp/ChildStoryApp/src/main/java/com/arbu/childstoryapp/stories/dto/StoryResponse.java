@@ -20,6 +20,7 @@ public class StoryResponse {
     private List<String> imageUrls;
     private String audioUrl;
     private String videoUrl;
+    private String videoStatus;
     private String mode;
     private String theme;
     private Boolean isInteractive;
@@ -55,6 +56,7 @@ public class StoryResponse {
         response.setContent(story.getContent());
         response.setAudioUrl(story.getAudioUrl());
         response.setVideoUrl(story.getVideoUrl());
+        response.setVideoStatus(story.getVideoStatus());
         response.setMode(story.getMode());
         response.setTheme(story.getTheme());
         response.setIsInteractive(story.getIsInteractive());
@@ -161,6 +163,9 @@ public class StoryResponse {
     public String getVideoUrl() { return videoUrl; }
     public void setVideoUrl(String videoUrl) { this.videoUrl = videoUrl; }
 
+    public String getVideoStatus() { return videoStatus; }
+    public void setVideoStatus(String videoStatus) { this.videoStatus = videoStatus; }
+
     public String getMode() { return mode; }
     public void setMode(String mode) { this.mode = mode; }
 
@@ -102,6 +102,77 @@ public class SubscriptionService {
         userSubRepo.save(subscription);
     }
 
+    /**
+     * Count one story against today's limit up front, if the limit allows it.
+     * The check and the increment happen under a row lock, so concurrent reservations
+     * cannot both take the last story of the day.
+     *
+     * @return false when the daily limit is reached or the subscription is not active
+     */
+    @Transactional
+    public boolean reserveStory(Long userId) {
+        getUserSubscription(userId);
+        UserSubscription subscription = userSubRepo.findLockedByUserId(userId)
+                .orElseThrow(() -> new IllegalStateException("Subscription not found"));
+        if (!"active".equals(subscription.getStatus())) {
+            return false;
+        }
+
+        LocalDate today = LocalDate.now();
+        int generatedToday = today.equals(subscription.getLastStoryDate()) && subscription.getStoriesGeneratedToday() != null
+                ? subscription.getStoriesGeneratedToday() : 0;
+        Integer dailyLimit = subscription.getPlan().getDailyStoryLimit();
+        if (dailyLimit != null && dailyLimit != -1 && generatedToday >= dailyLimit) {
+            return false;
+        }
+
+        subscription.setStoriesGeneratedToday(generatedToday + 1);
+        subscription.setLastStoryDate(today);
+        subscription.setUpdatedAt(Instant.now());
+        userSubRepo.save(subscription);
+        return true;
+    }
+
+    /**
+     * Give back a story reserved with {@link #reserveStory} on {@code reservedOn} that was never
+     * generated. Nothing to give back once that day is over.
+     */
+    @Transactional
+    public void releaseStory(Long userId, LocalDate reservedOn) {
+        UserSubscription subscription = userSubRepo.findLockedByUserId(userId).orElse(null);
+        if (subscription == null || reservedOn == null || !reservedOn.equals(subscription.getLastStoryDate())) {
+            return;
+        }
+        Integer current = subscription.getStoriesGeneratedToday();
+        if (current != null && current > 0) {
+            subscription.setStoriesGeneratedToday(current - 1);
+            subscription.setUpdatedAt(Instant.now());
+            userSubRepo.save(subscription);
+        }
+    }
+
+    /**
+     * Check if user's subscription is active
+     */
+    @Transactional(readOnly = true)
+    public boolean isActive(Long userId) {
+        return "active".equals(getUserSubscription(userId).getStatus());
+    }
+
+    /**
+     * Check if user is on a paid plan (active or trial)
+     * Paid users are admitted first when story generation is at capacity
+     */
+    @Transactional(readOnly = true)
+    public boolean hasPaidPlan(Long userId) {
+        UserSubscription subscription = getUserSubscription(userId);
+        if (!"active".equals(subscription.getStatus()) && !"trial".equals(subscription.getStatus())) {
+            return false;
+        }
+        Integer price = subscription.getPlan().getPriceInCents();
+        return price != null && price > 0;
+    }
+
     /**
      * Check if user has access to a specific feature
      */
@@ -0,0 +1,173 @@
+package com.arbu.childstoryapp.video;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streaming AVI writer (Motion-JPEG video, optional 16-bit PCM audio)
+ * Chunks are appended to the file as they are produced, so memory stays bounded by one frame
+ * plus the index (16 bytes per chunk). Frame counts and sizes in the headers are filled in on
+ * {@link #close()}.
+ */
+public class AviWriter implements Closeable {
+
+    private static final int AVIF_HASINDEX = 0x10;
+    private static final int AVIIF_KEYFRAME = 0x10;
+    private static final int STRH_SIZE = 56;
+
+    private final FileChannel channel;
+    private final int width;
+    private final int height;
+    private final int fps;
+    private final int sampleRate;
+    private final int channels;
+    private final int blockAlign;
+
+    /** idx1 entries, written at the end */
+    private ByteBuffer index = ByteBuffer.allocate(16 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+    /** Offset of the next chunk, relative to the "movi" fourcc */
+    private long moviOffset = 4;
+    private int frames;
+    private int chunks;
+    private long audioBytes;
+    private int maxChunkSize;
+
+    /**
+     * @param sampleRate Audio sample rate, or 0 for a video without sound
+     */
+    public AviWriter(Path file, int width, int height, int fps, int sampleRate, int channels) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        this.sampleRate = sampleRate;
+        this.channels = Math.max(1, channels);
+        this.blockAlign = this.channels * 2;
+        channel.write(header());
+    }
+
+    public boolean hasAudio() {
+        return sampleRate > 0;
+    }
+
+    public void writeFrame(byte[] jpeg) throws IOException {
+        writeChunk("00dc", jpeg, 0, jpeg.length);
+        frames++;
+    }
+
+    /**
+     * Appends interleaved audio (16-bit little-endian PCM in the writer's format)
+     */
+    public void writeAudio(byte[] pcm, int offset, int length) throws IOException {
+        if (!hasAudio() || length == 0) {
+            return;
+        }
+        writeChunk("01wb", pcm, offset, length);
+        audioBytes += length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            index.flip();
+            ByteBuffer idx1 = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+            idx1.put(fourCc("idx1")).putInt(index.remaining()).flip();
+            channel.write(idx1);
+            channel.write(index);
+            channel.write(header(), 0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void writeChunk(String id, byte[] data, int offset, int length) throws IOException {
+        int padded = length + (length & 1);
+        ByteBuffer chunk = ByteBuffer.allocate(8 + padded).order(ByteOrder.LITTLE_ENDIAN);
+        chunk.put(fourCc(id)).putInt(length).put(data, offset, length);
+        chunk.position(8 + padded).flip();
+        channel.write(chunk);
+
+        if (index.remaining() < 16) {
+            ByteBuffer larger = ByteBuffer.allocate(index.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+            index.flip();
+            larger.put(index);
+            index = larger;
+        }
+        index.put(fourCc(id)).putInt(AVIIF_KEYFRAME).putInt((int) moviOffset).putInt(length);
+        moviOffset += 8 + padded;
+        chunks++;
+        maxChunkSize = Math.max(maxChunkSize, length);
+    }
+
+    /**
+     * RIFF/hdrl headers and the start of the movi list, with the current counts
+     */
+    private ByteBuffer header() {
+        int streams = hasAudio() ? 2 : 1;
+        int videoStrl = 4 + (8 + STRH_SIZE) + (8 + 40);
+        int audioStrl = 4 + (8 + STRH_SIZE) + (8 + 18);
+        int hdrl = 4 + (8 + 56) + (8 + videoStrl) + (hasAudio() ? 8 + audioStrl : 0);
+        int size = 12 + 8 + hdrl + 12;
+        long riffSize = 4 + (8 + hdrl) + (8 + moviOffset) + (8 + (long) chunks * 16);
+
+        ByteBuffer b = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+        b.put(fourCc("RIFF")).putInt((int) riffSize).put(fourCc("AVI "));
+        b.put(fourCc("LIST")).putInt(hdrl).put(fourCc("hdrl"));
+
+        // Main header
+        b.put(fourCc("avih")).putInt(56)
+                .putInt(1_000_000 / fps)
+                .putInt(0)
+                .putInt(0)
+                .putInt(AVIF_HASINDEX)
+                .putInt(frames)
+                .putInt(0)
+                .putInt(streams)
+                .putInt(maxChunkSize)
+                .putInt(width)
+                .putInt(height)
+                .putInt(0).putInt(0).putInt(0).putInt(0);
+
+        // Video stream
+        b.put(fourCc("LIST")).putInt(videoStrl).put(fourCc("strl"));
+        b.put(fourCc("strh")).putInt(STRH_SIZE)
+                .put(fourCc("vids")).put(fourCc("MJPG"))
+                .putInt(0).putShort((short) 0).putShort((short) 0).putInt(0)
+                .putInt(1).putInt(fps).putInt(0).putInt(frames)
+                .putInt(maxChunkSize).putInt(-1).putInt(0)
+                .putShort((short) 0).putShort((short) 0).putShort((short) width).putShort((short) height);
+        b.put(fourCc("strf")).putInt(40)
+                .putInt(40).putInt(width).putInt(height).putShort((short) 1).putShort((short) 24)
+                .put(fourCc("MJPG")).putInt(width * height * 3)
+                .putInt(0).putInt(0).putInt(0).putInt(0);
+
+        // Audio stream
+        if (hasAudio()) {
+            b.put(fourCc("LIST")).putInt(audioStrl).put(fourCc("strl"));
+            b.put(fourCc("strh")).putInt(STRH_SIZE)
+                    .put(fourCc("auds")).putInt(0)
+                    .putInt(0).putShort((short) 0).putShort((short) 0).putInt(0)
+                    .putInt(blockAlign).putInt(sampleRate * blockAlign).putInt(0).putInt((int) (audioBytes / blockAlign))
+                    .putInt(sampleRate * blockAlign).putInt(-1).putInt(blockAlign)
+                    .putShort((short) 0).putShort((short) 0).putShort((short) 0).putShort((short) 0);
+            b.put(fourCc("strf")).putInt(18)
+                    .putShort((short) 1).putShort((short) channels).putInt(sampleRate)
+                    .putInt(sampleRate * blockAlign).putShort((short) blockAlign).putShort((short) 16)
+                    .putShort((short) 0);
+        }
+
+        b.put(fourCc("LIST")).putInt((int) moviOffset).put(fourCc("movi"));
+        return b.flip();
+    }
+
+    private static byte[] fourCc(String id) {
+        return id.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,255 @@
+package com.arbu.childstoryapp.video;
+
+import com.arbu.childstoryapp.narration.WavAudio;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Renders story pages into a slideshow video (Motion-JPEG AVI with the page narration)
+ * Each page is shown for as long as its narration lasts (plus a short pause), with a slow
+ * zoom over the page image and the page text as a caption. Frames are drawn, encoded and
+ * written one at a time into a single reused buffer; only the current page's image and
+ * audio are held in memory.
+ */
+public class SlideshowRenderer {
+
+    private static final double MAX_ZOOM = 1.08;
+
+    private final int width;
+    private final int height;
+    private final int fps;
+    private final float jpegQuality;
+    private final Duration silentPageDuration;
+    private final Duration pagePause;
+
+    public SlideshowRenderer(int width, int height, int fps, float jpegQuality,
+                             Duration silentPageDuration, Duration pagePause) {
+        this.width = width;
+        this.height = height;
+        this.fps = fps;
+        this.jpegQuality = jpegQuality;
+        this.silentPageDuration = silentPageDuration;
+        this.pagePause = pagePause;
+    }
+
+    /**
+     * One page of the slideshow; image and audio are optional local files
+     */
+    public static final class Slide {
+        private final String text;
+        private final Path image;
+        private final Path audio;
+
+        public Slide(String text, Path image, Path audio) {
+            this.text = text;
+            this.image = image;
+            this.audio = audio;
+        }
+    }
+
+    /**
+     * Writes the slideshow to {@code output}
+     *
+     * @return Number of video frames written
+     */
+    public int render(List<Slide> slides, Path output) throws IOException {
+        WavAudio format = audioFormat(slides);
+        ImageWriter jpegWriter = ImageIO.getImageWritersByFormatName("jpg").next();
+        ImageWriteParam jpegParam = jpegWriter.getDefaultWriteParam();
+        jpegParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        jpegParam.setCompressionQuality(jpegQuality);
+
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream(64 * 1024);
+        Font font = new Font(Font.SANS_SERIF, Font.BOLD, Math.max(12, height / 26));
+
+        int written = 0;
+        try (AviWriter avi = new AviWriter(output, width, height, fps,
+                format != null ? format.getSampleRate() : 0, format != null ? format.getChannels() : 1)) {
+            for (Slide slide : slides) {
+                BufferedImage background = background(slide.image);
+                byte[] pcm = pageAudio(slide.audio, format);
+                int frameSize = format != null ? format.getChannels() * 2 : 0;
+                Duration duration = pcm != null
+                        ? Duration.ofMillis((long) pcm.length / frameSize * 1000 / format.getSampleRate()).plus(pagePause)
+                        : silentPageDuration;
+                int frames = Math.max(1, (int) Math.round(duration.toMillis() * fps / 1000.0));
+                long pageSamples = format != null ? (long) frames * format.getSampleRate() / fps : 0;
+
+                Graphics2D graphics = frame.createGraphics();
+                try {
+                    graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                    graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+                    graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    graphics.setFont(font);
+                    List<String> caption = wrap(slide.text, graphics.getFontMetrics(), width * 9 / 10);
+
+                    for (int i = 0; i < frames; i++) {
+                        double zoom = 1.0 + (MAX_ZOOM - 1.0) * i / Math.max(1, frames - 1);
+                        drawFrame(graphics, background, zoom, caption);
+                        jpeg.reset();
+                        try (MemoryCacheImageOutputStream out = new MemoryCacheImageOutputStream(jpeg)) {
+                            jpegWriter.setOutput(out);
+                            jpegWriter.write(null, new IIOImage(frame, null, null), jpegParam);
+                        }
+                        avi.writeFrame(jpeg.toByteArray());
+                        written++;
+
+                        if (format != null) {
+                            // Audio for this frame's time slice; past the narration it is silence
+                            long from = pageSamples * i / frames * frameSize;
+                            long to = pageSamples * (i + 1) / frames * frameSize;
+                            writeAudio(avi, pcm, (int) from, (int) (to - from));
+                        }
+                    }
+                } finally {
+                    graphics.dispose();
+                }
+                if (background != null) {
+                    background.flush();
+                }
+            }
+        } finally {
+            jpegWriter.dispose();
+        }
+        return written;
+    }
+
+    private void drawFrame(Graphics2D graphics, BufferedImage background, double zoom, List<String> caption) {
+        if (background == null) {
+            graphics.setPaint(new GradientPaint(0, 0, new Color(40, 44, 92), 0, height, new Color(92, 64, 120)));
+            graphics.fillRect(0, 0, width, height);
+        } else {
+            int drawWidth = (int) Math.round(background.getWidth() * zoom / MAX_ZOOM);
+            int drawHeight = (int) Math.round(background.getHeight() * zoom / MAX_ZOOM);
+            graphics.drawImage(background, (width - drawWidth) / 2, (height - drawHeight) / 2, drawWidth, drawHeight, null);
+        }
+        if (caption.isEmpty()) {
+            return;
+        }
+        FontMetrics metrics = graphics.getFontMetrics();
+        int lineHeight = metrics.getHeight();
+        int boxHeight = lineHeight * caption.size() + lineHeight / 2;
+        int boxTop = height - boxHeight - height / 30;
+
+        graphics.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.55f));
+        graphics.setColor(Color.BLACK);
+        graphics.fillRoundRect(width / 30, boxTop, width - width / 15, boxHeight, lineHeight / 2, lineHeight / 2);
+        graphics.setComposite(AlphaComposite.SrcOver);
+        graphics.setColor(Color.WHITE);
+        int y = boxTop + lineHeight / 4 + metrics.getAscent();
+        for (String line : caption) {
+            graphics.drawString(line, (width - metrics.stringWidth(line)) / 2, y);
+            y += lineHeight;
+        }
+    }
+
+    /**
+     * The page image scaled once to cover the frame at the largest zoom
+     */
+    private BufferedImage background(Path image) throws IOException {
+        if (image == null) {
+            return null;
+        }
+        BufferedImage source = ImageIO.read(image.toFile());
+        if (source == null) {
+            return null;
+        }
+        double scale = Math.max((double) width / source.getWidth(), (double) height / source.getHeight()) * MAX_ZOOM;
+        int scaledWidth = (int) Math.ceil(source.getWidth() * scale);
+        int scaledHeight = (int) Math.ceil(source.getHeight() * scale);
+        BufferedImage scaled = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.drawImage(source.getScaledInstance(scaledWidth, scaledHeight, Image.SCALE_SMOOTH), 0, 0, null);
+        } finally {
+            graphics.dispose();
+            source.flush();
+        }
+        return scaled;
+    }
+
+    /**
+     * Format of the first page narration; the video gets no sound when no page has any
+     */
+    private static WavAudio audioFormat(List<Slide> slides) throws IOException {
+        for (Slide slide : slides) {
+            WavAudio audio = slide.audio == null ? null : WavAudio.parse(Files.readAllBytes(slide.audio));
+            if (audio != null && audio.getBitsPerSample() == 16) {
+                return new WavAudio(audio.getSampleRate(), audio.getChannels(), 16, new byte[0]);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * PCM of the page narration when it matches the video's audio format, otherwise null (silence)
+     */
+    private static byte[] pageAudio(Path audio, WavAudio format) throws IOException {
+        if (format == null || audio == null) {
+            return null;
+        }
+        WavAudio page = WavAudio.parse(Files.readAllBytes(audio));
+        if (page.getSampleRate() != format.getSampleRate() || page.getChannels() != format.getChannels()
+                || page.getBitsPerSample() != 16) {
+            return null;
+        }
+        return page.getPcm();
+    }
+
+    private static void writeAudio(AviWriter avi, byte[] pcm, int from, int length) throws IOException {
+        int available = pcm == null ? 0 : Math.max(0, Math.min(length, pcm.length - from));
+        if (available == length) {
+            avi.writeAudio(pcm, from, length);
+            return;
+        }
+        byte[] slice = new byte[length];
+        if (available > 0) {
+            System.arraycopy(pcm, from, slice, 0, available);
+        }
+        avi.writeAudio(slice, 0, length);
+    }
+
+    private static List<String> wrap(String text, FontMetrics metrics, int maxWidth) {
+        List<String> lines = new ArrayList<>();
+        if (text == null || text.isBlank()) {
+            return lines;
+        }
+        StringBuilder line = new StringBuilder();
+        for (String word : text.trim().split("\\s+")) {
+            String candidate = line.isEmpty() ? word : line + " " + word;
+            if (metrics.stringWidth(candidate) > maxWidth && !line.isEmpty()) {
+                lines.add(line.toString());
+                line.setLength(0);
+                line.append(word);
+            } else {
+                line.setLength(0);
+                line.append(candidate);
+            }
+        }
+        if (!line.isEmpty()) {
+            lines.add(line.toString());
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,216 @@
+package com.arbu.childstoryapp.video;
+
+import com.arbu.childstoryapp.domain.StoryPage;
+import com.arbu.childstoryapp.media.MediaStore;
+import com.arbu.childstoryapp.repository.StoryPageRepository;
+import com.arbu.childstoryapp.repository.StoryRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * Slideshow video rendering for DreamTales AI v3.0
+ * Stories saved with generateSlideshow are rendered in the background on the videoRenderExecutor
+ * pool, never on the request path. The story's videoStatus is "rendering" while queued or running,
+ * then "ready" with videoUrl set, or "failed"; renders cut short by a restart are queued again on
+ * startup, as fast as the workers take them. Videos are content-addressed by the pages they show, so identical stories (e.g. copies
+ * of a template) share one file.
+ */
+@Service
+public class VideoRenderService {
+    private static final Logger log = LoggerFactory.getLogger(VideoRenderService.class);
+
+    public static final String RENDERING = "rendering";
+    public static final String READY = "ready";
+    public static final String FAILED = "failed";
+
+    /** Bump when the rendering changes, so old videos are not reused */
+    private static final String RENDER_VERSION = "slideshow-v1";
+    private static final String EXTENSION = ".avi";
+
+    private final StoryRepository storyRepo;
+    private final StoryPageRepository storyPageRepo;
+    private final MediaStore mediaStore;
+    private final ThreadPoolTaskExecutor executor;
+    private final SlideshowRenderer renderer;
+    private final String settingsKey;
+    /** Renders resumed at startup that did not fit the queue yet, oldest first */
+    private final Deque<Long> resumeBacklog = new ConcurrentLinkedDeque<>();
+
+    private final Counter rendered;
+    private final Counter reused;
+    private final Counter failed;
+    private final Counter rejected;
+    private final Timer renderTimer;
+
+    public VideoRenderService(StoryRepository storyRepo,
+                              StoryPageRepository storyPageRepo,
+                              MediaStore mediaStore,
+                              @Qualifier("videoRenderExecutor") ThreadPoolTaskExecutor executor,
+                              MeterRegistry meterRegistry,
+                              @Value("${ai.video.width:720}") int width,
+                              @Value("${ai.video.height:720}") int height,
+                              @Value("${ai.video.fps:10}") int fps,
+                              @Value("${ai.video.jpegQuality:0.8}") float jpegQuality,
+                              @Value("${ai.video.silentPageDuration:PT5S}") Duration silentPageDuration,
+                              @Value("${ai.tts.pagePause:PT0.6S}") Duration pagePause) {
+        this.storyRepo = storyRepo;
+        this.storyPageRepo = storyPageRepo;
+        this.mediaStore = mediaStore;
+        this.executor = executor;
+        this.renderer = new SlideshowRenderer(width, height, fps, jpegQuality, silentPageDuration, pagePause);
+        this.settingsKey = RENDER_VERSION + ":" + width + "x" + height + "@" + fps + ":" + jpegQuality
+                + ":" + silentPageDuration + ":" + pagePause;
+
+        this.rendered = Counter.builder("ai.video.jobs").tag("result", "rendered").register(meterRegistry);
+        this.reused = Counter.builder("ai.video.jobs").tag("result", "reused").register(meterRegistry);
+        this.failed = Counter.builder("ai.video.jobs").tag("result", "failed").register(meterRegistry);
+        this.rejected = Counter.builder("ai.video.jobs").tag("result", "rejected").register(meterRegistry);
+        this.renderTimer = Timer.builder("ai.video.render")
+                .description("Time to render one slideshow video")
+                .register(meterRegistry);
+        Gauge.builder("ai.video.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Slideshow renders waiting for a worker")
+                .register(meterRegistry);
+        Gauge.builder("ai.video.resume.backlog", resumeBacklog, Deque::size)
+                .description("Resumed slideshow renders waiting for room in the queue")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues the slideshow for a saved story
+     *
+     * @return false when the render queue is full (the story is marked "failed")
+     */
+    public boolean submit(Long storyId) {
+        storyRepo.updateVideo(storyId, null, RENDERING);
+        try {
+            executor.execute(() -> render(storyId));
+            return true;
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            log.warn("Slideshow render queue is full; story {} gets no video", storyId);
+            storyRepo.updateVideo(storyId, null, FAILED);
+            return false;
+        }
+    }
+
+    /**
+     * Re-queue slideshows that were queued or rendering when the application stopped; the render
+     * queue lives in memory, so without this they would stay "rendering" forever. Those that do not
+     * fit the queue wait in a backlog and are handed over as renders finish, instead of failing.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinishedRenders() {
+        List<Long> unfinished = storyRepo.findIdsByVideoStatus(RENDERING);
+        if (unfinished.isEmpty()) {
+            return;
+        }
+        resumeBacklog.addAll(unfinished);
+        int queued = drainResumeBacklog();
+        log.info("Resuming {} unfinished slideshow renders: {} queued, {} waiting for room", unfinished.size(),
+                queued, unfinished.size() - queued);
+    }
+
+    /**
+     * Hands backlogged renders to the pool while its queue has room; the rest stay "rendering"
+     *
+     * @return how many were queued
+     */
+    private int drainResumeBacklog() {
+        int queued = 0;
+        Long storyId;
+        while ((storyId = resumeBacklog.pollFirst()) != null) {
+            Long id = storyId;
+            try {
+                executor.execute(() -> render(id));
+                queued++;
+            } catch (TaskRejectedException e) {
+                resumeBacklog.addFirst(id);
+                break;
+            }
+        }
+        return queued;
+    }
+
+    private void render(Long storyId) {
+        try {
+            renderStory(storyId);
+        } finally {
+            // This render's queue slot is free again
+            if (!resumeBacklog.isEmpty()) {
+                drainResumeBacklog();
+            }
+        }
+    }
+
+    private void renderStory(Long storyId) {
+        long started = System.nanoTime();
+        try {
+            List<StoryPage> pages = storyPageRepo.findByStoryIdOrderByPageNumberAsc(storyId);
+            if (pages.isEmpty()) {
+                throw new IllegalStateException("Story has no pages");
+            }
+            List<SlideshowRenderer.Slide> slides = new ArrayList<>(pages.size());
+            List<String> keyParts = new ArrayList<>();
+            keyParts.add(settingsKey);
+            for (StoryPage page : pages) {
+                slides.add(new SlideshowRenderer.Slide(page.getText(),
+                        localFile(MediaStore.IMAGES, page.getImageUrl()),
+                        localFile(MediaStore.AUDIO, page.getAudioUrl())));
+                keyParts.add(page.getText());
+                keyParts.add(page.getImageUrl());
+                keyParts.add(page.getAudioUrl());
+            }
+            String name = MediaStore.key(keyParts.toArray(String[]::new)) + EXTENSION;
+
+            if (mediaStore.resolve(MediaStore.VIDEO, name).isPresent()) {
+                reused.increment();
+            } else {
+                Path work = mediaStore.createTempFile();
+                try {
+                    int frames = renderer.render(slides, work);
+                    mediaStore.putFile(MediaStore.VIDEO, name, work);
+                    log.info("Rendered slideshow for story {}: {} pages, {} frames in {} ms", storyId, pages.size(),
+                            frames, (System.nanoTime() - started) / 1_000_000);
+                } finally {
+                    Files.deleteIfExists(work);
+                }
+                rendered.increment();
+                renderTimer.record(Duration.ofNanos(System.nanoTime() - started));
+            }
+            storyRepo.updateVideo(storyId, mediaStore.url(MediaStore.VIDEO, name), READY);
+        } catch (Exception e) {
+            failed.increment();
+            log.warn("Failed to render slideshow for story {}: {}", storyId, e.getMessage());
+            storyRepo.updateVideo(storyId, null, FAILED);
+        }
+    }
+
+    /**
+     * The stored file behind a media URL; media that is not in the local store is left out
+     */
+    private Path localFile(String kind, String url) {
+        String name = url == null ? null : mediaStore.nameOf(kind, url);
+        return name == null ? null : mediaStore.resolve(kind, name).orElse(null);
+    }
+}
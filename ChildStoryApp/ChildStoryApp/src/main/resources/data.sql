@@ -156,4 +156,5 @@ VALUES
 -- =====================================================
 ALTER TABLE users ALTER COLUMN id RESTART WITH 200;
 ALTER TABLE children ALTER COLUMN id RESTART WITH 200;
-ALTER TABLE stories ALTER COLUMN id RESTART WITH 200;
+-- Stories take ids from a pooled sequence (see Story)
+ALTER SEQUENCE story_seq RESTART WITH 200;
@@ -0,0 +1,123 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.common.TooManyRequestsException;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.subscriptions.SubscriptionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlTest {
+
+    private static final Duration MAX_WAIT = Duration.ofSeconds(20);
+    private static final Duration AGING_AFTER = Duration.ofSeconds(5);
+    private static final Set<Long> PAID_USERS = Set.of(3L);
+
+    private final AtomicLong now = new AtomicLong();
+    private final List<Long> started = new CopyOnWriteArrayList<>();
+    private final SubscriptionService subscriptionService = new SubscriptionService(null, null) {
+        @Override
+        public boolean hasPaidPlan(Long userId) {
+            return PAID_USERS.contains(userId);
+        }
+    };
+
+    private AdmissionControl control(int maxConcurrent, int maxPerUser, int maxQueuedPerUser) {
+        return new AdmissionControl(subscriptionService, new SimpleMeterRegistry(), maxConcurrent, maxPerUser, 100,
+                maxQueuedPerUser, MAX_WAIT, AGING_AFTER, 8, now::get);
+    }
+
+    private static UserAccount user(long id) {
+        UserAccount user = new UserAccount();
+        user.setId(id);
+        return user;
+    }
+
+    /**
+     * Starts a generation for the user that records when it runs and holds its slot until the sink is completed
+     */
+    private Sinks.One<String> hold(AdmissionControl control, long userId) {
+        Sinks.One<String> done = Sinks.one();
+        control.admit(user(userId), () -> {
+            started.add(userId);
+            return done.asMono();
+        }).subscribe(value -> { }, error -> { });
+        return done;
+    }
+
+    @Test
+    void paidRequestsGoFirst() {
+        AdmissionControl control = control(1, 2, 2);
+        Sinks.One<String> first = hold(control, 1L);
+        hold(control, 2L);
+        Sinks.One<String> paid = hold(control, 3L);
+        assertThat(control.getWaiting()).isEqualTo(2);
+
+        first.tryEmitValue("done");
+        assertThat(started).containsExactly(1L, 3L);
+
+        paid.tryEmitValue("done");
+        assertThat(started).containsExactly(1L, 3L, 2L);
+    }
+
+    @Test
+    void freeRequestsThatWaitedPastAgingCountAsPaid() {
+        AdmissionControl control = control(1, 2, 2);
+        Sinks.One<String> first = hold(control, 1L);
+        hold(control, 2L);
+        now.addAndGet(AGING_AFTER.toNanos());
+        hold(control, 3L);
+
+        first.tryEmitValue("done");
+
+        assertThat(started).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void userOverTheirCapWaitsWhileOthersRun() {
+        AdmissionControl control = control(4, 1, 1);
+        Sinks.One<String> first = hold(control, 1L);
+        hold(control, 1L);
+        hold(control, 2L);
+        assertThat(started).containsExactly(1L, 2L);
+        assertThat(control.getRunning()).isEqualTo(2);
+        assertThat(control.getWaiting()).isEqualTo(1);
+
+        // Only maxQueuedPerUser requests may wait per user
+        StepVerifier.create(control.admit(user(1L), () -> Mono.just("extra")))
+                .expectError(TooManyRequestsException.class)
+                .verify();
+
+        first.tryEmitValue("done");
+        assertThat(started).containsExactly(1L, 2L, 1L);
+        assertThat(control.getWaiting()).isZero();
+    }
+
+    @Test
+    void requestWaitingLongerThanMaxWaitIsRejectedWith429() {
+        AdmissionControl control = control(1, 2, 2);
+        hold(control, 1L);
+
+        StepVerifier.withVirtualTime(() -> control.admit(user(2L), () -> Mono.just("late")))
+                .expectSubscription()
+                .expectNoEvent(MAX_WAIT.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(TooManyRequestsException.class)
+                        .satisfies(t -> assertThat(((TooManyRequestsException) t).getRetryAfterSeconds()).isPositive()))
+                .verify();
+
+        assertThat(control.getWaiting()).isZero();
+        assertThat(started).containsExactly(1L);
+    }
+}
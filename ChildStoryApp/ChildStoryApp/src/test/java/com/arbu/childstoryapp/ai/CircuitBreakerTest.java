@@ -0,0 +1,72 @@
+package com.arbu.childstoryapp.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final AtomicLong now = new AtomicLong();
+    private final CircuitBreaker breaker = new CircuitBreaker(4, 2, 0.5, OPEN_DURATION, now::get);
+
+    private void open() {
+        breaker.tryAcquirePermission();
+        breaker.onFailure();
+        breaker.tryAcquirePermission();
+        breaker.onFailure();
+    }
+
+    @Test
+    void opensOnceFailureRateReachesThreshold() {
+        breaker.onSuccess();
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+        assertThat(breaker.getRetryAfterSeconds()).isEqualTo(31);
+
+        now.addAndGet(Duration.ofSeconds(20).toNanos());
+        assertThat(breaker.getRetryAfterSeconds()).isEqualTo(11);
+    }
+
+    @Test
+    void halfOpenAdmitsOneProbeAtATime() {
+        open();
+        now.addAndGet(OPEN_DURATION.toNanos());
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+
+        // A cancelled probe says nothing about the upstream; the next caller probes instead
+        breaker.onIgnored();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+    }
+
+    @Test
+    void failedProbeReopensAndSuccessfulProbeCloses() {
+        open();
+        now.addAndGet(OPEN_DURATION.toNanos());
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onFailure();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.tryAcquirePermission()).isFalse();
+
+        now.addAndGet(OPEN_DURATION.toNanos());
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        breaker.onSuccess();
+
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        assertThat(breaker.tryAcquirePermission()).isTrue();
+        // The window starts afresh after closing
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+}
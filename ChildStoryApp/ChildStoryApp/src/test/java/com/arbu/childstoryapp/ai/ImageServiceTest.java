@@ -0,0 +1,137 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.media.MediaStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ImageServiceTest {
+
+    private static final List<String> SCENES = List.of(
+            "Elif under a big oak tree", "A red book by the river", "A garden full of stars");
+
+    @TempDir
+    Path mediaDir;
+
+    private final StubImageBackend stub = new StubImageBackend();
+    private final List<List<String>> requests = new ArrayList<>();
+    private MediaStore mediaStore;
+
+    @BeforeEach
+    void setUp() {
+        mediaStore = new MediaStore(mediaDir.toString(), "/api/media");
+    }
+
+    @Test
+    void stubBackendRendersOnePngPerPrompt() throws Exception {
+        List<byte[]> images = stub.generateImages(List.of("a", "b"), "high").block();
+
+        assertThat(images).hasSize(2);
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(images.get(0)));
+        assertThat(image.getWidth()).isEqualTo(1024);
+        assertThat(stub.generateImages(List.of("a"), "high").block().get(0)).isEqualTo(images.get(0));
+    }
+
+    @Test
+    void rendersInBatchesAndReusesStoredScenes() {
+        ImageService images = service(batch -> stub.generateImages(batch, "standard"), 2);
+
+        List<String> first = images.render(SCENES, "standard").block();
+        List<String> again = images.render(List.of(SCENES.get(2), SCENES.get(0)), "standard").block();
+
+        assertThat(first).hasSize(3).doesNotHaveDuplicates();
+        assertThat(again).containsExactly(first.get(2), first.get(0));
+        // Three scenes in batches of two, then nothing new to render
+        assertThat(requests).extracting(List::size).containsExactly(2, 1);
+    }
+
+    @Test
+    void rendersRepeatedScenesOnce() {
+        ImageService images = service(batch -> stub.generateImages(batch, "standard"), 5);
+
+        List<String> urls = images.render(List.of(SCENES.get(0), SCENES.get(0)), "standard").block();
+
+        assertThat(urls).hasSize(2);
+        assertThat(urls.get(0)).isEqualTo(urls.get(1));
+        assertThat(requests).extracting(List::size).containsExactly(1);
+    }
+
+    @Test
+    void thumbnailIsStoredNextToTheImage() {
+        ImageService images = service(batch -> stub.generateImages(batch, "standard"), 5);
+
+        String url = images.render(SCENES.subList(0, 1), "standard").block().get(0);
+
+        String thumbnail = images.thumbnailUrl(url);
+        assertThat(thumbnail).isNotEqualTo(url).endsWith("-thumb.jpg");
+        assertThat(mediaStore.resolve(MediaStore.IMAGES, mediaStore.nameOf(MediaStore.IMAGES, thumbnail))).isPresent();
+    }
+
+    @Test
+    void fallsBackToTheImageWithoutAThumbnail() {
+        // Not a PNG, so no thumbnail can be made
+        ImageService images = service(batch -> Mono.just(batch.stream().map(prompt -> new byte[]{1, 2, 3}).toList()), 5);
+
+        String url = images.render(SCENES.subList(0, 1), "standard").block().get(0);
+
+        assertThat(images.thumbnailUrl(url)).isEqualTo(url);
+        assertThat(images.thumbnailUrl("https://example.com/image.png")).isEqualTo("https://example.com/image.png");
+    }
+
+    @Test
+    void keepsScenesFromBatchesThatSucceeded() {
+        ImageService images = service(batch -> batch.get(0).startsWith(SCENES.get(1))
+                ? Mono.error(new RuntimeException("quota exceeded"))
+                : stub.generateImages(batch, "standard"), 1);
+
+        List<String> urls = images.render(SCENES, "standard").block();
+
+        assertThat(urls).hasSize(2);
+        assertThat(images.render(List.of(SCENES.get(0), SCENES.get(2)), "standard").block()).isEqualTo(urls);
+    }
+
+    @Test
+    void dropsBatchesStillRenderingAtTheDeadline() {
+        ImageService images = service(batch -> batch.get(0).startsWith(SCENES.get(2))
+                ? Mono.never()
+                : stub.generateImages(batch, "standard"), 1);
+
+        List<String> urls = images.render(SCENES, "standard", Duration.ofMillis(500)).block(Duration.ofSeconds(10));
+
+        assertThat(urls).hasSize(2);
+    }
+
+    private ImageService service(Function<List<String>, Mono<List<byte[]>>> render, int batchSize) {
+        ImageBackend backend = new ImageBackend() {
+            @Override
+            public String name() {
+                return stub.name();
+            }
+
+            @Override
+            public Mono<List<byte[]>> generateImages(List<String> prompts, String quality) {
+                requests.add(prompts);
+                return render.apply(prompts);
+            }
+
+            @Override
+            public int maxBatchSize() {
+                return stub.maxBatchSize();
+            }
+        };
+        return new ImageService(backend, mediaStore, new SimpleMeterRegistry(), batchSize, 4, "soft colors", 128);
+    }
+}
@@ -0,0 +1,91 @@
+package com.arbu.childstoryapp.ai;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBufferLimitException;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ImagenBackendTest {
+
+    /** Same limit as the shared AI client (ai.http.maxInMemorySize) */
+    private static final DataSize SHARED_LIMIT = DataSize.ofMegabytes(2);
+
+    private HttpServer server;
+    private byte[] image;
+    private final AtomicInteger requests = new AtomicInteger();
+
+    @BeforeEach
+    void startServer() throws Exception {
+        // 2.25 MB of image, 3 MB once base64-encoded
+        image = new byte[2_359_296];
+        ThreadLocalRandom.current().nextBytes(image);
+        byte[] response = ("{\"predictions\": [{\"mimeType\": \"image/png\", \"bytesBase64Encoded\": \""
+                + Base64.getEncoder().encodeToString(image) + "\"}]}").getBytes(StandardCharsets.US_ASCII);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/models/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    @Test
+    void readsImagesLargerThanTheSharedBufferLimit() {
+        ImagenBackend backend = backend(DataSize.ofMegabytes(16));
+
+        List<byte[]> images = backend.generateImages(List.of("A garden full of stars"), "high").block(Duration.ofSeconds(20));
+
+        assertThat(images).hasSize(1);
+        assertThat(images.get(0)).isEqualTo(image);
+        assertThat(requests).hasValue(1);
+    }
+
+    @Test
+    void failsWhenTheResponseExceedsTheConfiguredLimit() {
+        ImagenBackend backend = backend(SHARED_LIMIT);
+
+        assertThatThrownBy(() -> backend.generateImages(List.of("A garden full of stars"), "high")
+                .block(Duration.ofSeconds(20)))
+                .hasRootCauseInstanceOf(DataBufferLimitException.class);
+    }
+
+    private ImagenBackend backend(DataSize maxResponseSize) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ModelRateLimiter rateLimiter = new ModelRateLimiter(new MockEnvironment(), meterRegistry,
+                true, 60, 250_000, 800, Duration.ofSeconds(10), 0.1, 0.02);
+        ModelResilience resilience = new ModelResilience(meterRegistry, rateLimiter, 0, Duration.ofMillis(10),
+                Duration.ofMillis(100), Duration.ofSeconds(30), Duration.ZERO, 4, 20, 10, 0.5, Duration.ofSeconds(30));
+        WebClient.Builder shared = WebClient.builder()
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize((int) SHARED_LIMIT.toBytes()));
+        return new ImagenBackend(shared, resilience, "http://127.0.0.1:" + server.getAddress().getPort(), "test-key",
+                "imagen-fast", "imagen-full", "1:1", Duration.ofSeconds(20), maxResponseSize);
+    }
+}
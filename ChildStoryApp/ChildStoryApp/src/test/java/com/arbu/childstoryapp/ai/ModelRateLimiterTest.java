@@ -0,0 +1,161 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.common.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class ModelRateLimiterTest {
+
+    private static final String MODEL = "gemini-test";
+    private static final WebClientResponseException TOO_MANY_REQUESTS =
+            WebClientResponseException.create(429, "Too Many Requests", HttpHeaders.EMPTY, new byte[0], null);
+
+    private final AtomicLong now = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private MockEnvironment environment = new MockEnvironment();
+
+    private ModelRateLimiter limiter(int rpm, int tpm, Duration maxWait) {
+        return new ModelRateLimiter(environment, meterRegistry, true, rpm, tpm, 0, maxWait, 0.2, 0.1, now::get);
+    }
+
+    private List<ModelRateLimiter.Lease> acquire(ModelRateLimiter limiter, int calls) {
+        List<ModelRateLimiter.Lease> leases = new ArrayList<>();
+        for (int i = 0; i < calls; i++) {
+            leases.add(limiter.acquire(MODEL, 1).block());
+        }
+        return leases;
+    }
+
+    private double rateFactor() {
+        return meterRegistry.get("ai.ratelimit.rate.factor").tag("model", MODEL).gauge().value();
+    }
+
+    private void advance(Duration duration) {
+        now.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void throttledCallHalvesRateOncePerIntervalDownToTheFloor() {
+        ModelRateLimiter limiter = limiter(60, 1_000_000, Duration.ofMinutes(10));
+        List<ModelRateLimiter.Lease> leases = acquire(limiter, 4);
+
+        leases.get(0).fail(TOO_MANY_REQUESTS);
+        assertThat(rateFactor()).isEqualTo(0.5);
+
+        // A burst of 429s is one signal
+        leases.get(1).fail(TOO_MANY_REQUESTS);
+        assertThat(rateFactor()).isEqualTo(0.5);
+
+        advance(Duration.ofSeconds(2));
+        leases.get(2).fail(TOO_MANY_REQUESTS);
+        assertThat(rateFactor()).isEqualTo(0.25);
+
+        advance(Duration.ofSeconds(2));
+        leases.get(3).fail(TOO_MANY_REQUESTS);
+        assertThat(rateFactor()).isEqualTo(0.2);
+        assertThat(meterRegistry.get("ai.ratelimit.throttled").counter().count()).isEqualTo(4);
+    }
+
+    @Test
+    void successRestoresRateByRecoveryStep() {
+        ModelRateLimiter limiter = limiter(60, 1_000_000, Duration.ofMinutes(10));
+        List<ModelRateLimiter.Lease> leases = acquire(limiter, 3);
+
+        leases.get(0).fail(TOO_MANY_REQUESTS);
+        leases.get(1).complete(0);
+        assertThat(rateFactor()).isCloseTo(0.6, offset(1e-9));
+
+        leases.get(2).complete(0);
+        assertThat(rateFactor()).isCloseTo(0.7, offset(1e-9));
+    }
+
+    @Test
+    void cancelledLeaseGivesItsRequestBack() {
+        ModelRateLimiter limiter = limiter(2, 1_000_000, Duration.ZERO);
+        List<ModelRateLimiter.Lease> leases = acquire(limiter, 2);
+        assertThatThrownBy(() -> limiter.acquire(MODEL, 1).block())
+                .isInstanceOf(UpstreamUnavailableException.class);
+
+        leases.get(0).cancel();
+        leases.get(0).cancel();
+
+        assertThat(limiter.acquire(MODEL, 1).block()).isNotNull();
+        assertThatThrownBy(() -> limiter.acquire(MODEL, 1).block())
+                .isInstanceOf(UpstreamUnavailableException.class);
+    }
+
+    @Test
+    void failedCallKeepsItsQuotaSpent() {
+        ModelRateLimiter limiter = limiter(2, 1_000_000, Duration.ZERO);
+        List<ModelRateLimiter.Lease> leases = acquire(limiter, 2);
+
+        leases.get(0).fail(new IllegalStateException("boom"));
+
+        assertThat(rateFactor()).isEqualTo(1.0);
+        assertThatThrownBy(() -> limiter.acquire(MODEL, 1).block())
+                .isInstanceOf(UpstreamUnavailableException.class);
+    }
+
+    @Test
+    void completedLeaseCorrectsTheTokenEstimate() {
+        ModelRateLimiter limiter = limiter(100, 1000, Duration.ZERO);
+        ModelRateLimiter.Lease first = limiter.acquire(MODEL, 500).block();
+        limiter.acquire(MODEL, 500).block();
+        assertThatThrownBy(() -> limiter.acquire(MODEL, 500).block())
+                .isInstanceOf(UpstreamUnavailableException.class);
+
+        // The model reported 100 tokens for a 500-token reservation
+        first.complete(100);
+
+        assertThat(limiter.acquire(MODEL, 400).block()).isNotNull();
+        assertThatThrownBy(() -> limiter.acquire(MODEL, 1).block())
+                .isInstanceOf(UpstreamUnavailableException.class);
+    }
+
+    @Test
+    void perModelLimitsOverrideTheDefaults() {
+        environment = new MockEnvironment().withProperty("ai.ratelimit.models.imagen-test.rpm", "1");
+        ModelRateLimiter limiter = limiter(3, 1_000_000, Duration.ZERO);
+
+        limiter.acquireRequest("imagen-test").block();
+        assertThatThrownBy(() -> limiter.acquireRequest("imagen-test").block())
+                .isInstanceOf(UpstreamUnavailableException.class)
+                .satisfies(e -> assertThat(((UpstreamUnavailableException) e).getRetryAfterSeconds()).isEqualTo(60));
+
+        acquire(limiter, 3);
+        assertThatThrownBy(() -> limiter.acquire(MODEL, 1).block())
+                .isInstanceOf(UpstreamUnavailableException.class);
+    }
+
+    @Test
+    void waitsLocallyUntilQuotaRefills() {
+        ModelRateLimiter limiter = limiter(60, 1_000_000, Duration.ofSeconds(10));
+        acquire(limiter, 60);
+
+        // One request per second comes back; the 61st call is held for that second, not rejected
+        StepVerifier.withVirtualTime(() -> limiter.acquire(MODEL, 1))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(999))
+                .thenAwait(Duration.ofMillis(1))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        advance(Duration.ofSeconds(2));
+        StepVerifier.create(limiter.acquire(MODEL, 1))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,99 @@
+package com.arbu.childstoryapp.ai;
+
+import com.arbu.childstoryapp.common.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.test.scheduler.VirtualTimeScheduler;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ModelResilienceTest {
+
+    private static final String MODEL = "gemini-test";
+    private static final Duration TOTAL_TIMEOUT = Duration.ofSeconds(60);
+    private static final Duration MIN_ATTEMPT_TIME = Duration.ofSeconds(15);
+
+    private final VirtualTimeScheduler scheduler = VirtualTimeScheduler.create();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ModelRateLimiter rateLimiter = new ModelRateLimiter(new MockEnvironment(), meterRegistry, false,
+            60, 250_000, 0, Duration.ZERO, 0.1, 0.02);
+    private final ModelResilience resilience = new ModelResilience(meterRegistry, rateLimiter, 10,
+            Duration.ofMillis(500), Duration.ofSeconds(30), TOTAL_TIMEOUT, MIN_ATTEMPT_TIME, 20, 100, 100, 0.5,
+            Duration.ofSeconds(30), () -> scheduler.now(TimeUnit.NANOSECONDS));
+    private final AtomicInteger attempts = new AtomicInteger();
+
+    private static WebClientResponseException unavailable(long retryAfterSeconds) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        return WebClientResponseException.create(503, "Service Unavailable", headers, new byte[0], null);
+    }
+
+    private <T> StepVerifier.FirstStep<T> withVirtualTime(Supplier<? extends Publisher<? extends T>> call) {
+        return StepVerifier.withVirtualTime(call, () -> scheduler, Long.MAX_VALUE);
+    }
+
+    @Test
+    void stopsRetryingWhenTheDeadlineLeavesNoRoomForAnotherAttempt() {
+        // Fails every 10s; after the attempt at 40s only 20s are left, less than 10s backoff + 15s attempt
+        withVirtualTime(() -> resilience.call(MODEL, () -> Mono.defer(() -> {
+                    attempts.incrementAndGet();
+                    return Mono.<String>error(unavailable(10));
+                })))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(40))
+                .expectError(UpstreamUnavailableException.class)
+                .verify();
+
+        assertThat(attempts).hasValue(5);
+    }
+
+    @Test
+    void hangingCallFailsAtTheTotalTimeout() {
+        withVirtualTime(() -> resilience.call(MODEL, () -> Mono.<String>never()))
+                .expectSubscription()
+                .expectNoEvent(TOTAL_TIMEOUT.minusMillis(1))
+                .thenAwait(Duration.ofMillis(1))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(UpstreamUnavailableException.class)
+                        .hasMessageContaining("did not answer within 60s"))
+                .verify();
+    }
+
+    @Test
+    void streamIsRetriedWhileNothingWasEmitted() {
+        withVirtualTime(() -> resilience.stream(MODEL, 10, lease -> Flux.defer(() ->
+                        attempts.incrementAndGet() == 1 ? Flux.error(unavailable(1)) : Flux.just("a", "b"))))
+                .expectSubscription()
+                .expectNoEvent(Duration.ofSeconds(1))
+                .expectNext("a", "b")
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void streamIsNotRetriedAfterItsFirstChunk() {
+        withVirtualTime(() -> resilience.stream(MODEL, 10, lease -> Flux.defer(() -> {
+                    attempts.incrementAndGet();
+                    return Flux.just("a").concatWith(Flux.error(unavailable(1)));
+                })))
+                .expectSubscription()
+                .expectNext("a")
+                .expectError(UpstreamUnavailableException.class)
+                .verify();
+
+        assertThat(attempts).hasValue(1);
+    }
+}
@@ -0,0 +1,59 @@
+package com.arbu.childstoryapp.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromptCacheTest {
+
+    @TempDir
+    Path diskDir;
+
+    private PromptCache cache(Duration ttl, int diskMaxEntries, int diskPruneEvery) {
+        return new PromptCache(true, List.of("quick"), ttl, 10, diskDir.toString(),
+                diskMaxEntries, diskPruneEvery, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void diskHitKeepsItsOriginalTimestampInMemory() throws Exception {
+        PromptCache cache = cache(Duration.ofSeconds(2), 10, 1);
+        String key = cache.key("model", "prompt");
+        Path file = diskDir.resolve(key + ".txt");
+        Files.writeString(file, "cached");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().minusMillis(1500)));
+
+        assertThat(cache.lookup(key).block()).isEqualTo("cached");
+        Thread.sleep(1000);
+
+        assertThat(cache.lookup(key).block()).isNull();
+    }
+
+    @Test
+    void prunesDiskOnlyEveryConfiguredNumberOfWrites() throws IOException {
+        PromptCache cache = cache(Duration.ofHours(1), 1, 3);
+
+        cache.store(cache.key("model", "a"), "a").block();
+        cache.store(cache.key("model", "b"), "b").block();
+        assertThat(diskEntries()).isEqualTo(2);
+
+        cache.store(cache.key("model", "c"), "c").block();
+        assertThat(diskEntries()).isEqualTo(1);
+    }
+
+    private long diskEntries() throws IOException {
+        try (Stream<Path> files = Files.list(diskDir)) {
+            return files.filter(path -> path.toString().endsWith(".txt")).count();
+        }
+    }
+}
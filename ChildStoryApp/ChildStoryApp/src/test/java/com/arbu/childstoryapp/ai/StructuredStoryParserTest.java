@@ -0,0 +1,95 @@
+package com.arbu.childstoryapp.ai;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class StructuredStoryParserTest {
+
+    private static final String JSON = """
+            {"title": " Elif ve Yıldızlı Bahçe ",
+             "pages": ["Elif ağacın altında küçük bir anahtar buldu.", "Anahtar \\"eski\\" duvardaki kapıyı açtı.\\n\\nİçeride bir bahçe vardı.", "  "],
+             "sceneDescriptions": ["Elif under an oak tree", "A door in an old wall"],
+             "vocabulary": ["tree", "key"],
+             "meta": {"pages": ["not a page"], "rating": 5},
+             "summary": "Elif finds a hidden garden.",
+             "choicePrompt": "Where should Elif go?",
+             "choiceOptions": ["Into the garden", "Back home"]}""";
+
+    @Test
+    void parsesTheWholeDocument() {
+        StructuredStory story = StructuredStoryParser.parse(JSON);
+
+        assertThat(story.getTitle()).isEqualTo("Elif ve Yıldızlı Bahçe");
+        assertThat(story.getPages()).containsExactly(
+                "Elif ağacın altında küçük bir anahtar buldu.",
+                "Anahtar \"eski\" duvardaki kapıyı açtı.\nİçeride bir bahçe vardı.");
+        assertThat(story.getSceneDescriptions()).containsExactly("Elif under an oak tree", "A door in an old wall");
+        assertThat(story.getVocabulary()).containsExactly("tree", "key");
+        assertThat(story.getSummary()).isEqualTo("Elif finds a hidden garden.");
+        assertThat(story.getChoicePrompt()).isEqualTo("Where should Elif go?");
+        assertThat(story.getChoiceOptions()).containsExactly("Into the garden", "Back home");
+    }
+
+    @Test
+    void givesTheSameStoryForAnySplitIntoChunks() {
+        StructuredStory whole = StructuredStoryParser.parse(JSON);
+        for (int chunkSize = 1; chunkSize <= 13; chunkSize++) {
+            StructuredStoryParser parser = new StructuredStoryParser();
+            List<StructuredStoryParser.Part> parts = new ArrayList<>();
+            for (int i = 0; i < JSON.length(); i += chunkSize) {
+                parts.addAll(parser.feed(JSON.substring(i, Math.min(JSON.length(), i + chunkSize))));
+            }
+            StructuredStory story = parser.finish();
+
+            assertThat(story.getTitle()).as("chunk size %d", chunkSize).isEqualTo(whole.getTitle());
+            assertThat(story.getPages()).as("chunk size %d", chunkSize).isEqualTo(whole.getPages());
+            assertThat(story.getChoiceOptions()).as("chunk size %d", chunkSize).isEqualTo(whole.getChoiceOptions());
+            assertThat(parts).extracting(StructuredStoryParser.Part::getField)
+                    .containsExactly(StructuredStoryParser.TITLE, StructuredStoryParser.PAGES, StructuredStoryParser.PAGES);
+            assertThat(parts).extracting(StructuredStoryParser.Part::getIndex).containsExactly(0, 0, 1);
+        }
+    }
+
+    @Test
+    void reportsEachPageOnceItsStringIsClosed() {
+        StructuredStoryParser parser = new StructuredStoryParser();
+
+        assertThat(parser.feed("{\"title\": \"Ti")).isEmpty();
+        assertThat(parser.feed("tle\", \"pages\": [\"One")).extracting(StructuredStoryParser.Part::getValue)
+                .containsExactly("Title");
+        assertThat(parser.feed(" page")).isEmpty();
+        assertThat(parser.feed("\", \"Two")).extracting(StructuredStoryParser.Part::getValue)
+                .containsExactly("One page");
+        assertThat(parser.feed("\"]}")).extracting(StructuredStoryParser.Part::getValue)
+                .containsExactly("Two");
+        assertThat(parser.finish().getPages()).containsExactly("One page", "Two");
+    }
+
+    @Test
+    void ignoresTextAroundTheObject() {
+        StructuredStoryParser parser = new StructuredStoryParser();
+
+        parser.feed("```js");
+        parser.feed("on\n{\"title\": \"T\", \"pages\": [\"P\"]}");
+        parser.feed("\n```");
+
+        assertThat(parser.finish().getPages()).containsExactly("P");
+    }
+
+    @Test
+    void rejectsTruncatedOrEmptyStories() {
+        StructuredStoryParser truncated = new StructuredStoryParser();
+        assertThat(truncated.feed("{\"title\": \"T\", \"pages\": [\"One\", \"Tw")).hasSize(2);
+        assertThatThrownBy(truncated::finish).hasMessageContaining("Invalid structured story JSON");
+
+        assertThatThrownBy(() -> StructuredStoryParser.parse("{\"title\": \"T\", \"pages\": []}"))
+                .hasMessageContaining("no pages");
+        assertThatThrownBy(() -> StructuredStoryParser.parse("I cannot write that story."))
+                .hasMessageContaining("no pages");
+    }
+}
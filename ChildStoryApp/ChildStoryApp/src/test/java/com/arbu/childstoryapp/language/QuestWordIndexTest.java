@@ -0,0 +1,88 @@
+package com.arbu.childstoryapp.language;
+
+import com.arbu.childstoryapp.domain.LanguageWord;
+import com.arbu.childstoryapp.repository.LanguageWordRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuestWordIndexTest {
+
+    private static LanguageWordRepository.IndexEntry entry(String id, LanguageWord.Difficulty difficulty,
+                                                           LanguageWord.Category category) {
+        return new LanguageWordRepository.IndexEntry() {
+            public String getId() { return id; }
+            public LanguageWord.Difficulty getDifficulty() { return difficulty; }
+            public LanguageWord.Category getCategory() { return category; }
+        };
+    }
+
+    private static QuestWordIndex index() {
+        List<LanguageWordRepository.IndexEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            entries.add(entry(String.format("es_%03d", i),
+                    i < 10 ? LanguageWord.Difficulty.BEGINNER : LanguageWord.Difficulty.ADVANCED,
+                    i % 2 == 0 ? LanguageWord.Category.NOUN : LanguageWord.Category.VERB));
+        }
+        entries.add(entry("fr_001", LanguageWord.Difficulty.BEGINNER, LanguageWord.Category.NOUN));
+        return QuestWordIndex.of(entries);
+    }
+
+    @Test
+    void resolvesLanguageCodesAndNames() {
+        QuestWordIndex index = index();
+
+        assertThat(index.resolveLanguage("Spanish")).isEqualTo("es");
+        assertThat(index.resolveLanguage(" es ")).isEqualTo("es");
+        assertThat(index.resolveLanguage("french")).isEqualTo("fr");
+        assertThat(index.resolveLanguage("German")).isNull();
+        assertThat(index.resolveLanguage(null)).isNull();
+    }
+
+    @Test
+    void samplesDistinctWordsFromThePartition() {
+        QuestWordIndex index = index();
+        Random random = new Random(7);
+
+        for (int i = 0; i < 100; i++) {
+            List<String> ids = index.sample("es", LanguageWord.Difficulty.BEGINNER, LanguageWord.Category.NOUN,
+                    Set.of(), 3, random);
+
+            assertThat(ids).hasSize(3).doesNotHaveDuplicates();
+            // Even ids below 10 are the Spanish beginner nouns
+            assertThat(ids).allSatisfy(id -> {
+                int n = Integer.parseInt(id.substring(3));
+                assertThat(id).startsWith("es_");
+                assertThat(n).isLessThan(10);
+                assertThat(n % 2).isZero();
+            });
+        }
+    }
+
+    @Test
+    void skipsExcludedWordsAndWidensWhenThePartitionRunsOut() {
+        QuestWordIndex index = index();
+        Set<String> learned = Set.of("es_000", "es_002", "es_004", "es_006");
+
+        List<String> ids = index.sample("es", LanguageWord.Difficulty.BEGINNER, LanguageWord.Category.NOUN,
+                learned, 3, new Random(1));
+
+        // es_008 is the only fresh beginner noun; the rest are other Spanish beginner words
+        assertThat(ids).hasSize(3).doesNotHaveDuplicates().contains("es_008").doesNotContainAnyElementsOf(learned);
+        assertThat(ids).allSatisfy(id -> assertThat(Integer.parseInt(id.substring(3))).isLessThan(10));
+    }
+
+    @Test
+    void returnsFewerWordsWhenEverythingIsLearned() {
+        QuestWordIndex index = index();
+
+        List<String> ids = index.sample("fr", null, null, Set.of("fr_001"), 3, new Random(1));
+
+        assertThat(ids).isEmpty();
+    }
+}
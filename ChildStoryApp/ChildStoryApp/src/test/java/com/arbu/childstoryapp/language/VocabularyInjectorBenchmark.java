@@ -0,0 +1,111 @@
+package com.arbu.childstoryapp.language;
+
+import com.arbu.childstoryapp.domain.LanguageWord;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmark: vocabulary injection for one story, {@link VocabularyInjector} against the
+ * previous per-word approach (lower-case the page and run a fresh (?i)\b...\b replaceAll
+ * for every word, on every page).
+ * Not part of the regular test run; start it with
+ * {@code mvn test -Dtest=VocabularyInjectorBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VocabularyInjectorBenchmark {
+
+    private static final String[] FILLER = {"the", "a", "little", "fox", "ran", "over", "soft", "green", "hill",
+            "and", "saw", "bright", "stars", "while", "her", "friend", "sang", "quietly", "near", "river"};
+
+    /** Quest words per story (the app picks 3; larger sets stand in for richer lessons) */
+    @Param({"3", "50", "500"})
+    private int wordCount;
+
+    /** Words per page; 12 pages per story */
+    @Param({"60", "400"})
+    private int pageWords;
+
+    private List<LanguageWord> words;
+    private List<String> pages;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        words = new ArrayList<>(wordCount);
+        for (int i = 0; i < wordCount; i++) {
+            words.add(new LanguageWord("w" + i, "palabra" + i, "word" + i, null, null, null, null, null));
+        }
+        pages = new ArrayList<>(12);
+        for (int page = 0; page < 12; page++) {
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < pageWords; i++) {
+                if (i > 0) {
+                    text.append(i % 12 == 0 ? ". " : " ");
+                }
+                // About one word in ten is a quest word, sometimes capitalised
+                String token = random.nextInt(10) == 0
+                        ? words.get(random.nextInt(wordCount)).getTranslation()
+                        : FILLER[random.nextInt(FILLER.length)];
+                text.append(random.nextInt(4) == 0 ? Character.toUpperCase(token.charAt(0)) + token.substring(1) : token);
+            }
+            pages.add(text.append('.').toString());
+        }
+    }
+
+    @Benchmark
+    public void automaton(Blackhole blackhole) {
+        VocabularyInjector injector = VocabularyInjector.of(words);
+        for (String page : pages) {
+            blackhole.consume(injector.inject(page));
+        }
+    }
+
+    @Benchmark
+    public void regexPerWord(Blackhole blackhole) {
+        for (String page : pages) {
+            String textWithLanguage = page;
+            List<String> pageVocabIds = new ArrayList<>();
+            for (LanguageWord word : words) {
+                String target = word.getTranslation();
+                String replacement = "[" + word.getWord() + "]";
+                if (textWithLanguage.toLowerCase().contains(target.toLowerCase())) {
+                    textWithLanguage = textWithLanguage.replaceAll("(?i)\\b" + java.util.regex.Pattern.quote(target) + "\\b", replacement);
+                    if (!pageVocabIds.contains(word.getId())) {
+                        pageVocabIds.add(word.getId());
+                    }
+                }
+            }
+            blackhole.consume(textWithLanguage);
+            blackhole.consume(pageVocabIds);
+        }
+    }
+
+    @Test
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder().include(getClass().getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,55 @@
+package com.arbu.childstoryapp.language;
+
+import com.arbu.childstoryapp.domain.LanguageWord;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VocabularyInjectorTest {
+
+    private static LanguageWord word(String id, String word, String translation) {
+        return new LanguageWord(id, word, translation, null, null, null, null, null);
+    }
+
+    @Test
+    void replacesWholeWordsIgnoringCase() {
+        VocabularyInjector injector = VocabularyInjector.of(List.of(
+                word("es_001", "árbol", "tree"), word("es_009", "libro", "book")));
+
+        VocabularyInjector.Injection injection = injector.inject("A Book under the TREE, on a tree-lined street.");
+
+        assertThat(injection.getText()).isEqualTo("A [libro] under the [árbol], on a [árbol]-lined street.");
+        assertThat(injection.getWordIds()).containsExactly("es_009", "es_001");
+    }
+
+    @Test
+    void doesNotMatchInsideWords() {
+        VocabularyInjector injector = VocabularyInjector.of(List.of(word("es_002", "sol", "sun")));
+
+        VocabularyInjector.Injection injection = injector.inject("On Sunday sunny Güneşsun sun_ shines.");
+
+        assertThat(injection.getText()).isEqualTo("On Sunday sunny Güneşsun sun_ shines.");
+        assertThat(injection.getWordIds()).isEmpty();
+    }
+
+    @Test
+    void prefersTheLongestOverlappingTranslation() {
+        VocabularyInjector injector = VocabularyInjector.of(List.of(
+                word("es_003", "hielo", "ice"), word("es_004", "helado", "ice cream"), word("es_005", "crema", "cream")));
+
+        VocabularyInjector.Injection injection = injector.inject("Ice cream, then ice and cream.");
+
+        assertThat(injection.getText()).isEqualTo("[helado], then [hielo] and [crema].");
+        assertThat(injection.getWordIds()).containsExactly("es_004", "es_003", "es_005");
+    }
+
+    @Test
+    void leavesTextAloneWithoutWords() {
+        VocabularyInjector injector = VocabularyInjector.of(List.of());
+
+        assertThat(injector.isEmpty()).isTrue();
+        assertThat(injector.inject("Elif slept.").getText()).isEqualTo("Elif slept.");
+    }
+}
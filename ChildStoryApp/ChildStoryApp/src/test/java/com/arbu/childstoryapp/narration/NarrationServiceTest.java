@@ -0,0 +1,93 @@
+package com.arbu.childstoryapp.narration;
+
+import com.arbu.childstoryapp.media.MediaStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NarrationServiceTest {
+
+    private static final List<String> PAGES = List.of(
+            "Elif found a small key under the tree.",
+            "The key opened a door in the old wall.",
+            "Behind the door was a garden full of stars.");
+    private static final Duration PAUSE = Duration.ofMillis(600);
+
+    @TempDir
+    Path mediaDir;
+
+    private final AtomicInteger synthesized = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private MediaStore mediaStore;
+    private NarrationService narrationService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        mediaStore = new MediaStore(mediaDir.toString(), "/api/media");
+        StubTtsBackend stub = new StubTtsBackend();
+        TtsBackend counting = new TtsBackend() {
+            @Override
+            public String name() {
+                return stub.name();
+            }
+
+            @Override
+            public Mono<byte[]> synthesize(String text, String languageCode, String voiceName) {
+                synthesized.incrementAndGet();
+                return stub.synthesize(text, languageCode, voiceName);
+            }
+        };
+        VoiceModelCache voiceModelCache = new VoiceModelCache(new StubVoiceCloneBackend(Duration.ZERO), meterRegistry, 2);
+        narrationService = new NarrationService(counting, voiceModelCache, mediaStore, meterRegistry, 2, PAUSE);
+    }
+
+    @Test
+    void narratesPagesInOrderAndCachesThem() {
+        List<String> first = narrationService.narratePages(PAGES, "tr-TR", "tr-TR-Wavenet-A").collectList().block();
+        List<String> second = narrationService.narratePages(PAGES, "tr-TR", "tr-TR-Wavenet-A").collectList().block();
+
+        assertThat(first).hasSize(PAGES.size()).doesNotHaveDuplicates().allMatch(url -> url.startsWith("/api/media/audio/"));
+        assertThat(second).isEqualTo(first);
+        assertThat(synthesized).hasValue(PAGES.size());
+        assertThat(meterRegistry.counter("ai.tts.cache.requests", "result", "hit").count()).isEqualTo(PAGES.size());
+        assertThat(meterRegistry.counter("ai.tts.cache.requests", "result", "miss").count()).isEqualTo(PAGES.size());
+    }
+
+    @Test
+    void cachesPerVoice() {
+        narrationService.narratePages(PAGES.subList(0, 1), "tr-TR", "tr-TR-Wavenet-A").blockLast();
+        narrationService.narratePages(PAGES.subList(0, 1), "tr-TR", "tr-TR-Wavenet-B").blockLast();
+
+        assertThat(synthesized).hasValue(2);
+    }
+
+    @Test
+    void combinesPagesWithPausesBetweenThem() {
+        Narration narration = narrationService.narrate(PAGES, "tr-TR", "tr-TR-Wavenet-A").block();
+
+        Duration pages = Duration.ZERO;
+        for (String pageUrl : narration.getPageAudioUrls()) {
+            pages = pages.plus(read(pageUrl).getDuration());
+        }
+        WavAudio combined = read(narration.getAudioUrl());
+        assertThat(combined.getDuration()).isEqualTo(pages.plus(PAUSE.multipliedBy(PAGES.size() - 1)));
+
+        // The joined file is cached too
+        assertThat(narrationService.combine(PAGES, "tr-TR", "tr-TR-Wavenet-A").block()).isEqualTo(narration.getAudioUrl());
+        assertThat(synthesized).hasValue(PAGES.size());
+    }
+
+    private WavAudio read(String url) {
+        return WavAudio.parse(mediaStore.read(MediaStore.AUDIO, mediaStore.nameOf(MediaStore.AUDIO, url)).block());
+    }
+}
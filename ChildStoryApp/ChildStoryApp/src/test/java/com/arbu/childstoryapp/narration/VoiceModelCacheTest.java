@@ -0,0 +1,68 @@
+package com.arbu.childstoryapp.narration;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VoiceModelCacheTest {
+
+    private static final byte[] AUDIO = {1, 2, 3};
+
+    private final List<String> unloaded = new CopyOnWriteArrayList<>();
+    private final Sinks.One<byte[]> held = Sinks.one();
+    private VoiceModelCache cache;
+
+    private final VoiceCloneBackend backend = new VoiceCloneBackend() {
+        @Override
+        public String name() {
+            return "test";
+        }
+
+        @Override
+        public Mono<LoadedVoice> load(String voiceModelId) {
+            return Mono.just(() -> voiceModelId);
+        }
+
+        @Override
+        public Mono<byte[]> synthesize(LoadedVoice voice, String text, String languageCode) {
+            return "hold".equals(text) ? held.asMono() : Mono.just(AUDIO);
+        }
+
+        @Override
+        public void unload(LoadedVoice voice) {
+            assertThat(Thread.holdsLock(cache)).isFalse();
+            unloaded.add(voice.getVoiceModelId());
+        }
+    };
+
+    @Test
+    void unloadsEvictedModelOutsideTheCacheLock() {
+        cache = new VoiceModelCache(backend, new SimpleMeterRegistry(), 1);
+
+        assertThat(cache.synthesize(VoiceModelCache.voiceName("a"), "hi", "tr-TR").block()).isEqualTo(AUDIO);
+        assertThat(cache.synthesize(VoiceModelCache.voiceName("b"), "hi", "tr-TR").block()).isEqualTo(AUDIO);
+
+        assertThat(unloaded).containsExactly("a");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void keepsEvictedModelLoadedUntilRunningSynthesisFinishes() {
+        cache = new VoiceModelCache(backend, new SimpleMeterRegistry(), 1);
+        List<byte[]> results = new CopyOnWriteArrayList<>();
+        cache.synthesize(VoiceModelCache.voiceName("a"), "hold", "tr-TR").subscribe(results::add);
+
+        cache.synthesize(VoiceModelCache.voiceName("b"), "hi", "tr-TR").block();
+        assertThat(unloaded).isEmpty();
+
+        held.tryEmitValue(AUDIO);
+        assertThat(results).containsExactly(AUDIO);
+        assertThat(unloaded).containsExactly("a");
+    }
+}
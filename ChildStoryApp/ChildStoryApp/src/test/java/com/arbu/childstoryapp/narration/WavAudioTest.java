@@ -0,0 +1,108 @@
+package com.arbu.childstoryapp.narration;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class WavAudioTest {
+
+    private final StubTtsBackend tts = new StubTtsBackend();
+
+    @Test
+    void parsesWhatTheStubBackendSynthesizes() {
+        byte[] wav = tts.synthesize("Elif saw a big tree near the river", "tr-TR", null).block();
+
+        WavAudio audio = WavAudio.parse(wav);
+
+        assertThat(audio.getSampleRate()).isEqualTo(16000);
+        assertThat(audio.getChannels()).isEqualTo(1);
+        assertThat(audio.getBitsPerSample()).isEqualTo(16);
+        // 8 words at 400 ms each
+        assertThat(audio.getDuration()).isEqualTo(Duration.ofMillis(3200));
+        assertThat(audio.toBytes()).isEqualTo(wav);
+    }
+
+    @Test
+    void skipsUnknownChunksBeforeTheData() {
+        byte[] wav = WavAudio.silence(8000, Duration.ofMillis(100)).toBytes();
+        byte[] withList = insertChunk(wav, "LIST", new byte[]{1, 2, 3});
+
+        WavAudio audio = WavAudio.parse(withList);
+
+        assertThat(audio.getPcm()).hasSize(1600);
+    }
+
+    @Test
+    void takesTheRestOfTheFileForAPlaceholderDataSize() {
+        byte[] wav = WavAudio.silence(8000, Duration.ofMillis(100)).toBytes();
+        ByteBuffer.wrap(wav).order(ByteOrder.LITTLE_ENDIAN).putInt(40, -1);
+
+        assertThat(WavAudio.parse(wav).getPcm()).hasSize(1600);
+    }
+
+    @Test
+    void rejectsNegativeChunkSizes() {
+        byte[] wav = WavAudio.silence(8000, Duration.ofMillis(100)).toBytes();
+        byte[] withList = insertChunk(wav, "LIST", new byte[0]);
+        // LIST chunk of size -8 points back at itself
+        ByteBuffer.wrap(withList).order(ByteOrder.LITTLE_ENDIAN).putInt(40, -8);
+
+        assertThatThrownBy(() -> WavAudio.parse(withList))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("chunk size");
+    }
+
+    @Test
+    void rejectsFilesWithoutData() {
+        byte[] wav = WavAudio.silence(8000, Duration.ofMillis(100)).toBytes();
+
+        assertThatThrownBy(() -> WavAudio.parse(Arrays.copyOf(wav, 36)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> WavAudio.parse(Arrays.copyOf(wav, 30)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> WavAudio.parse(new byte[]{'R', 'I', 'F', 'F'}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void joinsClipsWithAPauseBetweenThem() {
+        WavAudio first = WavAudio.parse(tts.synthesize("one two three", "tr-TR", null).block());
+        WavAudio second = WavAudio.parse(tts.synthesize("four five six", "tr-TR", null).block());
+
+        WavAudio joined = WavAudio.concat(List.of(first, second), Duration.ofMillis(600));
+
+        assertThat(joined.getDuration()).isEqualTo(first.getDuration().plus(Duration.ofMillis(600)).plus(second.getDuration()));
+        assertThat(WavAudio.parse(joined.toBytes()).getPcm()).isEqualTo(joined.getPcm());
+    }
+
+    @Test
+    void refusesToJoinDifferentFormats() {
+        List<WavAudio> clips = List.of(WavAudio.silence(16000, Duration.ofSeconds(1)),
+                WavAudio.silence(8000, Duration.ofSeconds(1)));
+
+        assertThatThrownBy(() -> WavAudio.concat(clips, Duration.ZERO))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    /**
+     * The WAV with an extra chunk between the format and data chunks (the header is 36 bytes up to "data")
+     */
+    private static byte[] insertChunk(byte[] wav, String id, byte[] body) {
+        int padded = body.length + (body.length & 1);
+        ByteBuffer out = ByteBuffer.allocate(wav.length + 8 + padded).order(ByteOrder.LITTLE_ENDIAN);
+        out.put(wav, 0, 36);
+        out.put(id.getBytes(StandardCharsets.US_ASCII)).putInt(body.length).put(body);
+        out.position(36 + 8 + padded);
+        out.put(wav, 36, wav.length - 36);
+        out.putInt(4, out.capacity() - 8);
+        return out.array();
+    }
+}
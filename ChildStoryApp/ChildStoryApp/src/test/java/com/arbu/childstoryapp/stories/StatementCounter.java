@@ -0,0 +1,40 @@
+package com.arbu.childstoryapp.stories;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.util.function.Supplier;
+
+/**
+ * Counts the JDBC statements Hibernate prepares for one call, starting from an empty persistence
+ * context and including the flush at the end, so lazy loads and writes made while building a
+ * response are counted too. Needs hibernate.generate_statistics=true.
+ */
+class StatementCounter {
+
+    private final TestEntityManager entityManager;
+    private final Statistics statistics;
+
+    StatementCounter(TestEntityManager entityManager, EntityManagerFactory entityManagerFactory) {
+        this.entityManager = entityManager;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    long count(Supplier<?> call) {
+        entityManager.flush();
+        entityManager.clear();
+        statistics.clear();
+        call.get();
+        entityManager.flush();
+        return statistics.getPrepareStatementCount();
+    }
+
+    /**
+     * Entities inserted by the last counted call
+     */
+    long entityInserts() {
+        return statistics.getEntityInsertCount();
+    }
+}
@@ -0,0 +1,54 @@
+package com.arbu.childstoryapp.stories;
+
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.language.LanguageService;
+import com.arbu.childstoryapp.language.QuestWordSampler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.time.Instant;
+
+/**
+ * Shared setup for StoryService tests against the JPA layer: one Spring context with Hibernate
+ * statistics on (for {@link StatementCounter}), and helpers to persist the owning user and child.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@Import({StoryService.class, LanguageService.class, QuestWordSampler.class, SimpleMeterRegistry.class})
+abstract class StoryJpaTest {
+
+    @Autowired
+    protected StoryService storyService;
+
+    @Autowired
+    protected TestEntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    protected StatementCounter statements;
+
+    @BeforeEach
+    void createStatementCounter() {
+        statements = new StatementCounter(entityManager, entityManagerFactory);
+    }
+
+    protected UserAccount persistUser(String email) {
+        UserAccount user = new UserAccount();
+        user.setEmail(email);
+        user.setCreatedAt(Instant.now());
+        return entityManager.persist(user);
+    }
+
+    protected ChildProfile persistChild(UserAccount user, String name) {
+        ChildProfile child = new ChildProfile();
+        child.setUser(user);
+        child.setName(name);
+        return entityManager.persist(child);
+    }
+}
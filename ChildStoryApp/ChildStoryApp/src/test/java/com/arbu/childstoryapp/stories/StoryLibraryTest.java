@@ -0,0 +1,86 @@
+package com.arbu.childstoryapp.stories;
+
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.stories.dto.StoryLibraryResponse;
+import com.arbu.childstoryapp.stories.dto.StoryListResponse;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Keyset-paginated story library: every story exactly once, newest first, one select per page
+ */
+class StoryLibraryTest extends StoryJpaTest {
+
+    private static final int STORIES = 25;
+
+    @Test
+    void pagesThroughTheLibraryWithACursor() {
+        UserAccount user = persistUser("library@example.com");
+        ChildProfile child = persistChild(user, "Elif");
+
+        // Stories share timestamps in threes, so the id has to break ties
+        Instant start = Instant.parse("2025-01-01T00:00:00Z");
+        List<Story> saved = new ArrayList<>();
+        for (int i = 0; i < STORIES; i++) {
+            Story story = new Story();
+            story.setUser(user);
+            story.setChild(child);
+            story.setTitle("Story " + i);
+            story.setContent("Once upon a time ".repeat(50));
+            story.setCreatedAt(start.plusSeconds(i / 3));
+            story.setUpdatedAt(story.getCreatedAt());
+            story.setIsFavorite(i % 5 == 0);
+            entityManager.persist(story);
+            saved.add(story);
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Long> expected = saved.stream()
+                .sorted(Comparator.comparing(Story::getCreatedAt).thenComparing(Story::getId).reversed())
+                .map(Story::getId)
+                .toList();
+
+        List<Long> ids = new ArrayList<>();
+        long statementCount = statements.count(() -> {
+            String cursor = null;
+            do {
+                StoryLibraryResponse page = storyService.getLibraryPage(user.getId(), false, cursor, 10);
+                page.getStories().forEach(story -> ids.add(story.getId()));
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+            return ids;
+        });
+
+        assertThat(ids).isEqualTo(expected);
+        // Three pages of at most ten, one select each
+        assertThat(statementCount).isEqualTo(3);
+
+        StoryListResponse first = storyService.getLibraryPage(user.getId(), false, null, 1).getStories().get(0);
+        assertThat(first.getChildName()).isEqualTo("Elif");
+        assertThat(first.getContentPreview()).hasSize(103).endsWith("...");
+        assertThat(first.getHasAudio()).isFalse();
+
+        assertThat(storyService.getLibraryPage(user.getId(), true, null, 100).getStories())
+                .extracting(StoryListResponse::getIsFavorite)
+                .hasSize(5)
+                .containsOnly(true);
+    }
+
+    @Test
+    void rejectsInvalidCursorsAndLimits() {
+        assertThatThrownBy(() -> storyService.getLibraryPage(1L, false, "not-a-cursor", 10))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storyService.getLibraryPage(1L, false, null, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
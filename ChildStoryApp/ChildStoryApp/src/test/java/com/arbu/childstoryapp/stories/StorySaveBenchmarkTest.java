@@ -0,0 +1,68 @@
+package com.arbu.childstoryapp.stories;
+
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.stories.dto.CreateStoryRequest;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Round trips needed to save a generated story with its pages.
+ * Counts prepared JDBC statements (one per round trip; a batch is prepared once) with
+ * Hibernate statistics while saving 12-page stories with language learning on.
+ * With IDENTITY ids every page, and every vocabulary row, was its own INSERT.
+ */
+class StorySaveBenchmarkTest extends StoryJpaTest {
+
+    private static final int PAGES = 12;
+    private static final int STORIES = 20;
+
+    @Test
+    void savingATwelvePageStoryTakesAFewRoundTrips() {
+        UserAccount user = persistUser("benchmark@example.com");
+        ChildProfile child = persistChild(user, "Elif");
+        child.setLanguageLearningEnabled(true);
+        entityManager.flush();
+        entityManager.clear();
+
+        // Warm up (sequence pools, query plans)
+        save(user, child);
+
+        long statementCount = statements.count(() -> {
+            for (int i = 0; i < STORIES; i++) {
+                save(user, child);
+            }
+            return null;
+        });
+        double statementsPerStory = (double) statementCount / STORIES;
+        double insertsPerStory = (double) statements.entityInserts() / STORIES;
+        String measured = String.format("Saving a %d-page story: %.1f JDBC statements, %.1f entity inserts",
+                PAGES, statementsPerStory, insertsPerStory);
+
+        assertThat(insertsPerStory).as(measured).isEqualTo(PAGES + 1);
+        assertThat(statementsPerStory).as(measured).isLessThanOrEqualTo(10);
+    }
+
+    private void save(UserAccount user, ChildProfile child) {
+        List<String> pages = new ArrayList<>();
+        for (int page = 1; page <= PAGES; page++) {
+            pages.add("Page " + page + ": Elif saw a big tree and a red book near the river.");
+        }
+        CreateStoryRequest request = new CreateStoryRequest();
+        request.setChildProfileId(child.getId());
+        request.setTitle("Benchmark");
+        request.setContent(String.join("\n\n", pages));
+        request.setMode("quick");
+        request.setImageUrls(List.of("/api/media/images/a.png", "/api/media/images/b.png"));
+
+        Story story = storyService.saveStory(request, user);
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(story.getId()).isNotNull();
+    }
+}
@@ -0,0 +1,106 @@
+package com.arbu.childstoryapp.stories;
+
+import com.arbu.childstoryapp.domain.ChildProfile;
+import com.arbu.childstoryapp.domain.Story;
+import com.arbu.childstoryapp.domain.UserAccount;
+import com.arbu.childstoryapp.stories.dto.StoryListResponse;
+import com.arbu.childstoryapp.stories.dto.StoryResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JDBC statements per story endpoint, measured the way StoryController builds each response.
+ * Every read is one select with the child joined in; a write adds its UPDATE. A new lazy load
+ * in StoryResponse or StoryListResponse shows up here as an extra statement.
+ */
+class StoryStatementCountTest extends StoryJpaTest {
+
+    private static final int EPISODES = 4;
+
+    private UserAccount user;
+    private Story parent;
+
+    @BeforeEach
+    void setUp() {
+        user = persistUser("statements@example.com");
+        ChildProfile child = persistChild(user, "Elif");
+
+        parent = story(child, null, "Episode 1");
+        parent.setShareToken("share-token");
+        parent.setIsFavorite(true);
+        for (int i = 2; i <= EPISODES; i++) {
+            story(child, parent, "Episode " + i);
+        }
+        entityManager.flush();
+    }
+
+    private Story story(ChildProfile child, Story parentStory, String title) {
+        Story story = new Story();
+        story.setUser(user);
+        story.setChild(child);
+        story.setParentStory(parentStory);
+        story.setTitle(title);
+        story.setContent("Once upon a time...");
+        story.setCreatedAt(Instant.now());
+        story.setUpdatedAt(story.getCreatedAt());
+        return entityManager.persist(story);
+    }
+
+    @Test
+    void storyDetail() {
+        assertThat(statements.count(() -> StoryResponse.fromEntity(
+                storyService.getStoryById(parent.getId(), user.getId()).orElseThrow()))).isEqualTo(1);
+    }
+
+    @Test
+    void episodeDetailReadsTheParentIdWithoutLoadingIt() {
+        Long episodeId = storyService.getSeriesStories(parent.getId(), user.getId()).get(0).getId();
+
+        assertThat(statements.count(() -> {
+            StoryResponse response = StoryResponse.fromEntity(
+                    storyService.getStoryById(episodeId, user.getId()).orElseThrow());
+            assertThat(response.getParentStoryId()).isEqualTo(parent.getId());
+            assertThat(response.getChildName()).isEqualTo("Elif");
+            return response;
+        })).isEqualTo(1);
+    }
+
+    @Test
+    void sharedStory() {
+        assertThat(statements.count(() -> StoryResponse.fromEntity(
+                storyService.getSharedStory("share-token").orElseThrow()))).isEqualTo(1);
+    }
+
+    @Test
+    void seriesStories() {
+        // Ownership check, then the episodes with their child
+        assertThat(statements.count(() -> storyService.getSeriesStories(parent.getId(), user.getId()).stream()
+                .map(StoryListResponse::fromEntity)
+                .toList())).isEqualTo(2);
+    }
+
+    @Test
+    void libraryLists() {
+        assertThat(statements.count(() -> storyService.getUserStories(user.getId()))).isEqualTo(1);
+        assertThat(statements.count(() -> storyService.getFavoriteStories(user.getId()))).isEqualTo(1);
+        assertThat(statements.count(() -> storyService.getLibraryPage(user.getId(), false, null, 20)))
+                .isEqualTo(1);
+    }
+
+    @Test
+    void updatesReturningTheStory() {
+        List<Long> counts = List.of(
+                statements.count(() -> StoryResponse.fromEntity(storyService.toggleFavorite(parent.getId(), user.getId()))),
+                statements.count(() -> StoryResponse.fromEntity(storyService.toggleUpvote(parent.getId()))),
+                statements.count(() -> StoryResponse.fromEntity(
+                        storyService.updateUserDrawing(parent.getId(), user.getId(), "/api/media/images/d.png"))));
+
+        // One select and one update each
+        assertThat(counts).containsOnly(2L);
+    }
+}